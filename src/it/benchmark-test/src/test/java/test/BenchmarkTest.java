@@ -0,0 +1,333 @@
+/*
+ * Copyright © 2020 Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package test;
+
+import com.google.j2cl.junit.apt.J2clTestInput;
+import jsinterop.annotations.JsMethod;
+import jsinterop.annotations.JsPackage;
+import jsinterop.annotations.JsProperty;
+import jsinterop.annotations.JsType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the time of the first encode, and the throughput and heap growth of each encoder and decoder in the
+ * browser for several input sizes, along with the cost of an encoder without metrics. Fails if the throughput as a
+ * fraction of native btoa or atob on the same input falls below its baseline. Baselines are ratios rather than
+ * absolute rates so they hold on any machine or browser.
+ * <pre>
+ * mvn install -Dinvoker.test=gwt-jar-test,benchmark-test
+ * </pre>
+ */
+@J2clTestInput(BenchmarkTest.class)
+public final class BenchmarkTest {
+
+    /**
+     * The time of the first encode, including initialising Base64, taken before anything else uses it.
+     */
+    private static String FIRST_ENCODE;
+
+    private final static double FIRST_ENCODE_MILLIS = firstEncodeMillis();
+
+    private static double firstEncodeMillis() {
+        final long start = System.nanoTime();
+        FIRST_ENCODE = Base64.getEncoder().encodeToString(new byte[]{1, 2, 3});
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    private final static int[] SIZES = {64, 4 * 1024, 1024 * 1024};
+
+    private final static double WARMUP_MILLIS = 100;
+    private final static double MEASURE_MILLIS = 500;
+
+    private final static String STANDARD = "standard";
+    private final static String URL = "url";
+    private final static String MIME = "mime";
+    private final static String STANDARD_BYTES = "standard byte[]";
+
+    /**
+     * The minimum throughput of each variant and size as a fraction of native btoa or atob. Raise these as the
+     * implementation gets faster, using the ratios printed by a run.
+     */
+    private final static Map<String, Double> BASELINES = new HashMap<>();
+
+    static {
+        for (final int size : SIZES) {
+            final boolean small = size < 1024;
+
+            // standard encodes and decodes of Strings are handed to the native functions
+            baseline("encode", STANDARD, size, small ? 0.2 : 0.5);
+            baseline("encode", URL, size, 0.05);
+            baseline("encode", MIME, size, 0.05);
+            baseline("encode", STANDARD_BYTES, size, 0.05);
+
+            baseline("decode", STANDARD, size, small ? 0.2 : 0.5);
+            baseline("decode", URL, size, 0.05);
+            baseline("decode", MIME, size, 0.05);
+            baseline("decode", STANDARD_BYTES, size, 0.05);
+        }
+    }
+
+    private static void baseline(final String operation,
+                                 final String variant,
+                                 final int size,
+                                 final double ratio) {
+        BASELINES.put(key(operation, variant, size), ratio);
+    }
+
+    private static String key(final String operation,
+                              final String variant,
+                              final int size) {
+        return operation + " " + variant + " " + size;
+    }
+
+    /**
+     * Results are added here so the optimiser cannot remove the work being measured.
+     */
+    private static int sink;
+
+    /**
+     * Only logs the time, which depends on the machine and browser, the encode itself is checked.
+     */
+    @Test
+    public void testFirstEncode() {
+        System.out.println("benchmark first encode " + round(FIRST_ENCODE_MILLIS) + " ms");
+        Assert.assertEquals("AQID", FIRST_ENCODE);
+    }
+
+    @Test
+    public void testEncode() {
+        final List<String> regressions = new ArrayList<>();
+
+        for (final int size : SIZES) {
+            final byte[] bytes = bytes(size);
+            final String binary = new String(bytes, StandardCharsets.ISO_8859_1);
+
+            final double nativeRate = measure("encode", "native btoa", size, () -> sink += btoa(binary).length());
+
+            this.check(regressions, "encode", STANDARD, size, nativeRate, () -> sink += Base64.getEncoder().encodeToString(bytes).length());
+            this.check(regressions, "encode", URL, size, nativeRate, () -> sink += Base64.getUrlEncoder().encodeToString(bytes).length());
+            this.check(regressions, "encode", MIME, size, nativeRate, () -> sink += Base64.getMimeEncoder().encodeToString(bytes).length());
+            this.check(regressions, "encode", STANDARD_BYTES, size, nativeRate, () -> sink += Base64.getEncoder().encode(bytes).length);
+        }
+
+        Assert.assertEquals("Regressions", new ArrayList<>(), regressions);
+    }
+
+    @Test
+    public void testDecode() {
+        final List<String> regressions = new ArrayList<>();
+
+        for (final int size : SIZES) {
+            final byte[] bytes = bytes(size);
+            final String standard = Base64.getEncoder().encodeToString(bytes);
+            final String url = Base64.getUrlEncoder().encodeToString(bytes);
+            final String mime = Base64.getMimeEncoder().encodeToString(bytes);
+            final byte[] standardBytes = Base64.getEncoder().encode(bytes);
+
+            final double nativeRate = measure("decode", "native atob", size, () -> sink += atob(standard).length());
+
+            this.check(regressions, "decode", STANDARD, size, nativeRate, () -> sink += Base64.getDecoder().decode(standard).length);
+            this.check(regressions, "decode", URL, size, nativeRate, () -> sink += Base64.getUrlDecoder().decode(url).length);
+            this.check(regressions, "decode", MIME, size, nativeRate, () -> sink += Base64.getMimeDecoder().decode(mime).length);
+            this.check(regressions, "decode", STANDARD_BYTES, size, nativeRate, () -> sink += Base64.getDecoder().decode(standardBytes).length);
+        }
+
+        Assert.assertEquals("Regressions", new ArrayList<>(), regressions);
+    }
+
+    /**
+     * The fraction of the throughput of an encoder given metrics that do nothing, which an encoder without metrics must
+     * reach. Without metrics only the null check is added, with metrics the clock is also read twice and the metrics
+     * called, so anything below this means the disabled path costs more than a single branch.
+     */
+    private final static double METRICS_DISABLED_BASELINE = 0.9;
+
+    /**
+     * Encodes of a single group, timed together so each read of the clock covers many of them.
+     */
+    private final static int METRICS_ENCODES = 1000;
+
+    @Test
+    public void testMetricsDisabled() {
+        final byte[] bytes = bytes(3);
+        final byte[] to = new byte[4];
+
+        // the public walkingkooka class, which becomes java.util.Base64 when shaded
+        final walkingkooka.j2cl.java.util.Base64.Encoder disabled = walkingkooka.j2cl.java.util.Base64.getEncoder();
+        final walkingkooka.j2cl.java.util.Base64.Encoder enabled = disabled.withMetrics(
+            new walkingkooka.j2cl.java.util.Base64.Metrics() {
+                @Override
+                public void encoded(final int bytes,
+                                    final int encoded,
+                                    final long nanos) {
+                    sink += bytes;
+                }
+
+                @Override
+                public void decoded(final int encoded,
+                                    final int bytes,
+                                    final long nanos) {
+                    sink += bytes;
+                }
+
+                @Override
+                public void failed(final walkingkooka.j2cl.java.util.Base64.DecodeFailure failure) {
+                    sink++;
+                }
+            }
+        );
+
+        final Runnable disabledWork = () -> {
+            for (int i = 0; i < METRICS_ENCODES; i++) {
+                sink += disabled.encode(bytes, to);
+            }
+        };
+        final Runnable enabledWork = () -> {
+            for (int i = 0; i < METRICS_ENCODES; i++) {
+                sink += enabled.encode(bytes, to);
+            }
+        };
+
+        run(disabledWork, WARMUP_MILLIS);
+        run(enabledWork, WARMUP_MILLIS);
+
+        // interleaved so both see the same load, keeping the fastest of each
+        double disabledNanos = Double.MAX_VALUE;
+        double enabledNanos = Double.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            disabledNanos = Math.min(disabledNanos, nanosPerEncode(disabledWork));
+            enabledNanos = Math.min(enabledNanos, nanosPerEncode(enabledWork));
+        }
+
+        System.out.println("benchmark metrics disabled " + round(disabledNanos) + " ns/encode, no-op metrics " +
+            round(enabledNanos) + " ns/encode, difference " + round(enabledNanos - disabledNanos) + " ns/encode");
+
+        final double ratio = enabledNanos / disabledNanos;
+        Assert.assertTrue(
+            "Metrics disabled " + round(ratio) + "x of no-op metrics < baseline " + METRICS_DISABLED_BASELINE + "x",
+            ratio >= METRICS_DISABLED_BASELINE
+        );
+    }
+
+    private static double nanosPerEncode(final Runnable work) {
+        final double[] result = run(work, MEASURE_MILLIS / 5);
+        return result[1] * 1e6 / (result[0] * METRICS_ENCODES);
+    }
+
+    private void check(final List<String> regressions,
+                       final String operation,
+                       final String variant,
+                       final int size,
+                       final double nativeRate,
+                       final Runnable work) {
+        final double ratio = measure(operation, variant, size, work) / nativeRate;
+        final String key = key(operation, variant, size);
+        final double baseline = BASELINES.get(key);
+
+        System.out.println("benchmark " + key + " " + round(ratio) + "x native");
+
+        if (ratio < baseline) {
+            regressions.add(key + " " + round(ratio) + "x native < baseline " + baseline + "x");
+        }
+    }
+
+    /**
+     * Runs the work repeatedly, printing and returning the throughput in MB/s of unencoded bytes, along with the
+     * growth of the heap per operation when the browser reports it.
+     */
+    private static double measure(final String operation,
+                                  final String variant,
+                                  final int size,
+                                  final Runnable work) {
+        run(work, WARMUP_MILLIS);
+
+        final double heapBefore = usedHeap();
+        final double[] result = run(work, MEASURE_MILLIS);
+        final double heapAfter = usedHeap();
+
+        final double operations = result[0];
+        final double millis = result[1];
+        final double rate = size * operations / millis / 1000;
+
+        System.out.println("benchmark " + key(operation, variant, size) + " " + round(rate) + " MB/s " +
+            (heapBefore < 0 ? "" : round(Math.max(0, heapAfter - heapBefore) / operations) + " heap bytes/op"));
+
+        return rate;
+    }
+
+    /**
+     * Returns the number of operations and the elapsed milliseconds.
+     */
+    private static double[] run(final Runnable work,
+                                final double millis) {
+        final long start = System.nanoTime();
+        double elapsed;
+        int operations = 0;
+
+        do {
+            work.run();
+            operations++;
+            elapsed = (System.nanoTime() - start) / 1e6;
+        } while (elapsed < millis);
+
+        return new double[]{operations, elapsed};
+    }
+
+    private static byte[] bytes(final int size) {
+        final byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (i * 31 + (i >> 8));
+        }
+        return bytes;
+    }
+
+    private static double round(final double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    /**
+     * Returns the used JS heap in bytes or -1 when the browser does not report it, only Chrome has performance.memory.
+     */
+    private static double usedHeap() {
+        final MemoryInfo memory = memory();
+        return null != memory ?
+            memory.usedJSHeapSize :
+            -1;
+    }
+
+    @JsMethod(namespace = JsPackage.GLOBAL)
+    private static native String btoa(final String binary);
+
+    @JsMethod(namespace = JsPackage.GLOBAL)
+    private static native String atob(final String encoded);
+
+    @JsProperty(namespace = "performance", name = "memory")
+    private static native MemoryInfo memory();
+
+    @JsType(isNative = true, namespace = JsPackage.GLOBAL, name = "Object")
+    private static final class MemoryInfo {
+        double usedJSHeapSize;
+    }
+}
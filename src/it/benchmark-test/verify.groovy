@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2020 Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+// Fails when the largest script produced by J2CL for the benchmark, which is mostly Base64 and the emulated JRE
+// classes it pulls in, grows beyond the limit. Lower the limit as the output shrinks.
+final long limit = 512 * 1024
+
+final List<File> scripts = []
+new File(basedir, "target").eachFileRecurse { file ->
+    if (file.name.endsWith(".js") && file.path.contains("BenchmarkTest")) {
+        scripts << file
+    }
+}
+
+if (scripts.isEmpty()) {
+    println "bundle size: no BenchmarkTest *.js found"
+    return true
+}
+
+final File largest = scripts.max { it.length() }
+println "bundle size: " + largest.length() + " bytes " + largest
+
+if (largest.length() > limit) {
+    throw new IllegalStateException("Bundle " + largest + " " + largest.length() + " bytes > limit " + limit)
+}
+return true
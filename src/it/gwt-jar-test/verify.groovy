@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2020 Miroslav Pokorny
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+// Fails when the compiled test module, which is mostly Base64 and the emulated JRE classes it pulls in, grows beyond
+// the limit. Lower the limit as the output shrinks.
+final long limit = 1024 * 1024
+
+final List<File> scripts = []
+// the test module is compiled in production mode, its war directory may be below target or the project itself
+basedir.eachFileRecurse { file ->
+    if (file.name.endsWith(".cache.js")) {
+        scripts << file
+    }
+}
+
+if (scripts.isEmpty()) {
+    throw new IllegalStateException("No *.cache.js found below " + basedir + ", the tests did not run in production mode")
+}
+
+final File largest = scripts.max { it.length() }
+println "bundle size: " + largest.length() + " bytes " + largest
+
+if (largest.length() > limit) {
+    throw new IllegalStateException("Bundle " + largest + " " + largest.length() + " bytes > limit " + limit)
+}
+return true
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package java.util;
+
+import java.nio.charset.Charset;
+
+/**
+ * The JavaScript version of {@code Base64CharsetEncoder}, which always declines because there is no
+ * {@code CharsetEncoder}, leaving {@link Base64.Encoder} to convert UTF-8 and ISO-8859-1 itself.
+ */
+final class Base64CharsetEncoder {
+
+    static Base64CharsetEncoder with(final CharSequence text,
+                                     final Charset charset,
+                                     final byte[] chunk) {
+        return null;
+    }
+
+    long estimatedLength() {
+        throw new UnsupportedOperationException();
+    }
+
+    int read(final int offset) {
+        throw new UnsupportedOperationException();
+    }
+
+    boolean isDone() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stop creation
+     */
+    private Base64CharsetEncoder() {
+        throw new UnsupportedOperationException();
+    }
+}
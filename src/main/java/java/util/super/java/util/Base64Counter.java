@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package java.util;
+
+/**
+ * The JavaScript version of {@code Base64Counter}, a plain long because there is only one thread.
+ */
+final class Base64Counter {
+
+    static Base64Counter with() {
+        return new Base64Counter();
+    }
+
+    private Base64Counter() {
+        super();
+    }
+
+    void increment() {
+        this.value++;
+    }
+
+    void add(final long value) {
+        this.value += value;
+    }
+
+    long sum() {
+        return this.value;
+    }
+
+    private long value;
+
+    @Override
+    public String toString() {
+        return String.valueOf(this.sum());
+    }
+}
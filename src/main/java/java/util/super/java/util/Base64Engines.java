@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package java.util;
+
+/**
+ * The JavaScript version of {@code Base64Engines}, with fixed thresholds. Long arithmetic is emulated in JavaScript
+ * which makes {@link Base64.Engine#SWAR} slower than the table, and there is a single thread, so every call uses
+ * {@link Base64.Engine#TABLE}.
+ */
+final class Base64Engines {
+
+    final static Base64.Engine FORCED = null;
+
+    final static int PARALLEL_MINIMUM = Integer.MAX_VALUE;
+
+    final static int SWAR = Integer.MAX_VALUE;
+
+    static final class Parallel {
+
+        final static int ENCODE = Integer.MAX_VALUE;
+
+        final static int DECODE = Integer.MAX_VALUE;
+
+        /**
+         * Stop creation
+         */
+        private Parallel() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Stop creation
+     */
+    private Base64Engines() {
+        throw new UnsupportedOperationException();
+    }
+}
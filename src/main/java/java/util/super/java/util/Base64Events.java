@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package java.util;
+
+/**
+ * The JavaScript version of {@code Base64Events}, which never emits events because there is no flight recorder.
+ */
+final class Base64Events {
+
+    /**
+     * No input is large enough, so the check before each operation is always false.
+     */
+    final static int THRESHOLD = Integer.MAX_VALUE;
+
+    static Object begin(final int length) {
+        return null;
+    }
+
+    static void end(final Object event,
+                    final String operation,
+                    final Object variant,
+                    final int input,
+                    final int output,
+                    final String engine) {
+    }
+
+    /**
+     * Stop creation
+     */
+    private Base64Events() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package java.util;
+
+import jsinterop.annotations.JsMethod;
+import jsinterop.annotations.JsPackage;
+import jsinterop.annotations.JsProperty;
+import jsinterop.annotations.JsType;
+
+/**
+ * The JavaScript version of {@code Base64Platform}, which hands whole standard padded encodes and decodes to
+ * {@code Uint8Array.prototype.toBase64} and {@code Uint8Array.fromBase64} when the engine has them, otherwise
+ * {@code btoa} and {@code atob}. Engines with neither, and any input the native functions would treat differently
+ * to {@link Base64.Decoder}, are declined and decoded by the portable Java code.
+ */
+final class Base64Platform {
+
+    private final static boolean TO_BASE64 = null != uint8ArrayToBase64();
+    private final static boolean FROM_BASE64 = null != uint8ArrayFromBase64();
+    private final static boolean BTOA = null != btoaFunction();
+    private final static boolean ATOB = null != atobFunction();
+
+    /**
+     * atob and fromBase64 skip whitespace and accept missing pads, so only padded standard encodings are given to them.
+     */
+    private final static RegExp PADDED = new RegExp("^[A-Za-z0-9+/]*={0,2}$");
+
+    static String encode(final byte[] from) {
+        String encoded = null;
+
+        try {
+            if (TO_BASE64) {
+                encoded = new Uint8Array(from).toBase64();
+            } else {
+                if (BTOA) {
+                    final int length = from.length;
+                    final char[] latin1 = new char[length];
+                    for (int i = 0; i < length; i++) {
+                        latin1[i] = (char) (from[i] & 0xff);
+                    }
+                    encoded = btoa(String.valueOf(latin1));
+                }
+            }
+        } catch (final Throwable cause) {
+            encoded = null;
+        }
+
+        return encoded;
+    }
+
+    static byte[] decode(final String encoded) {
+        final int length = encoded.length();
+
+        byte[] decoded = null;
+        if (length > 0 && 0 == (length & 3) && (FROM_BASE64 || ATOB) && PADDED.test(encoded)) {
+            try {
+                if (FROM_BASE64) {
+                    final Uint8Array bytes = Uint8Array.fromBase64(encoded);
+                    final int decodedLength = bytes.length;
+
+                    decoded = new byte[decodedLength];
+                    for (int i = 0; i < decodedLength; i++) {
+                        decoded[i] = (byte) bytes.at(i);
+                    }
+                } else {
+                    final String binary = atob(encoded);
+                    final int decodedLength = binary.length();
+
+                    decoded = new byte[decodedLength];
+                    for (int i = 0; i < decodedLength; i++) {
+                        decoded[i] = (byte) binary.charAt(i);
+                    }
+                }
+            } catch (final Throwable cause) {
+                decoded = null;
+            }
+        }
+
+        return decoded;
+    }
+
+    @JsProperty(namespace = "Uint8Array.prototype", name = "toBase64")
+    private static native Object uint8ArrayToBase64();
+
+    @JsProperty(namespace = "Uint8Array", name = "fromBase64")
+    private static native Object uint8ArrayFromBase64();
+
+    @JsProperty(namespace = "globalThis", name = "btoa")
+    private static native Object btoaFunction();
+
+    @JsProperty(namespace = "globalThis", name = "atob")
+    private static native Object atobFunction();
+
+    @JsMethod(namespace = JsPackage.GLOBAL)
+    private static native String btoa(final String binary);
+
+    @JsMethod(namespace = JsPackage.GLOBAL)
+    private static native String atob(final String encoded);
+
+    @JsType(isNative = true, namespace = JsPackage.GLOBAL)
+    private static final class Uint8Array {
+
+        static native Uint8Array fromBase64(final String encoded);
+
+        /**
+         * Signed bytes are wrapped to 0..255 as they are copied.
+         */
+        Uint8Array(final byte[] bytes) {
+        }
+
+        native int at(final int index);
+
+        native String toBase64();
+
+        int length;
+    }
+
+    @JsType(isNative = true, namespace = JsPackage.GLOBAL)
+    private static final class RegExp {
+
+        RegExp(final String pattern) {
+        }
+
+        native boolean test(final String text);
+    }
+
+    /**
+     * Stop creation
+     */
+    private Base64Platform() {
+        throw new UnsupportedOperationException();
+    }
+}
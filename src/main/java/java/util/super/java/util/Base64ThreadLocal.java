@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package java.util;
+
+import java.util.function.Supplier;
+
+/**
+ * The JavaScript version of {@code Base64ThreadLocal}, a single value because there is only one thread.
+ */
+final class Base64ThreadLocal<T> {
+
+    static <T> Base64ThreadLocal<T> with(final Supplier<T> initial) {
+        return new Base64ThreadLocal<>(initial);
+    }
+
+    private Base64ThreadLocal(final Supplier<T> initial) {
+        super();
+        this.initial = initial;
+    }
+
+    T get() {
+        if (null == this.value) {
+            this.value = this.initial.get();
+        }
+        return this.value;
+    }
+
+    private final Supplier<T> initial;
+
+    private T value;
+
+    @Override
+    public String toString() {
+        return String.valueOf(this.get());
+    }
+}
@@ -18,15 +18,21 @@
 
 package walkingkooka.j2cl.java.util;
 
-import walkingkooka.NeverError;
 import walkingkooka.reflect.PublicStaticHelper;
-import walkingkooka.text.CharSequences;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 /**
  * <a href="https://tools.ietf.org/html/rfc4648"></a>
@@ -51,11 +57,32 @@ public final class Base64 implements PublicStaticHelper {
 
         return lineLength / 4 <= 0 ?
             Encoder.RFC4648 :
-            getMimeEncoder0(lineLength, lineSeparator);
+            getMimeEncoder0(lineLength / 4 * 4, lineSeparator);
     }
 
-    private static Base64.Encoder getMimeEncoder0(final int lineLength,
+    /**
+     * A small direct mapped cache of MIME encoders, indexed by a hash of the line length and separator. A miss simply
+     * replaces the entry. No locks are needed, because an {@link Encoder} only has final fields, and so is safely
+     * seen fully constructed by any thread that reads it from the array.
+     */
+    private final static Base64.Encoder[] MIME_ENCODERS = new Base64.Encoder[16];
+
+    private static Base64.Encoder getMimeEncoder0(final int maxLineLength,
                                                   final byte[] lineSeparator) {
+        final Base64.Encoder[] encoders = MIME_ENCODERS;
+        final int hash = 31 * maxLineLength + Arrays.hashCode(lineSeparator);
+        final int index = (hash ^ hash >>> 16) & (encoders.length - 1);
+
+        Base64.Encoder encoder = encoders[index];
+        if (null == encoder || maxLineLength != encoder.maxLineLength || false == Arrays.equals(lineSeparator, encoder.separator)) {
+            encoder = newMimeEncoder(maxLineLength, lineSeparator);
+            encoders[index] = encoder;
+        }
+        return encoder;
+    }
+
+    private static Base64.Encoder newMimeEncoder(final int maxLineLength,
+                                                 final byte[] lineSeparator) {
         int at = 0;
         for (final byte value : lineSeparator) {
             if (-1 != RFC4648_ALPHABET.indexOf(value)) {
@@ -63,24 +90,57 @@ public final class Base64 implements PublicStaticHelper {
             }
             at++;
         }
+        // copied so the cached encoder cannot be changed by the caller
         return new Base64.Encoder(RFC4648_ALPHABET_CHARS,
-            lineLength / 4 * 4,
-            lineSeparator,
-            Base64EncoderPadding.WITH);
+            PAD,
+            maxLineLength,
+            lineSeparator.clone(),
+            Base64EncoderPadding.WITH,
+            false,
+            null);
+    }
+
+    /**
+     * Returns an {@link Encoder} for any alphabet of 64 distinct printable ASCII characters and pad character, such as
+     * the bcrypt, crypt(3) or IMAP alphabets. The alphabet is validated and its tables built once and then cached.
+     * {@link Encoder#withoutPadding()} may be used for alphabets that are never padded.
+     */
+    public static Encoder getEncoder(final String alphabet,
+                                     final char pad) {
+        final Base64Alphabet tables = Base64Alphabet.with(alphabet, pad);
+        return new Encoder(tables.chars, tables.pad, -1, new byte[0], Base64EncoderPadding.WITH, false, null);
     }
 
     public static Decoder getDecoder() {
         return Decoder.RFC4648;
     }
 
+    /**
+     * Returns a {@link Decoder} for any alphabet of 64 distinct printable ASCII characters and pad character, sharing
+     * the cached tables with {@link #getEncoder(String, char)}. Padding is optional when decoding.
+     */
+    public static Decoder getDecoder(final String alphabet,
+                                     final char pad) {
+        final Base64Alphabet tables = Base64Alphabet.with(alphabet, pad);
+        return new Decoder(tables.lookup, tables.swar, tables.pad, false, -1, -1, tables.toString());
+    }
+
     public static Decoder getUrlDecoder() {
-        return Decoder.RFC4648_URLSAFE;
+        return Decoder.UrlSafe.DECODER;
     }
 
     public static Decoder getMimeDecoder() {
         return Decoder.RFC2045;
     }
 
+    /**
+     * Returns a {@link Decoder} that accepts both the standard and the URL and filename safe alphabets in a single
+     * pass, with or without padding. See {@link Decoder#withoutMixing()} to reject input mixing both alphabets.
+     */
+    public static Decoder getStandardOrUrlDecoder() {
+        return Decoder.Either.DECODER;
+    }
+
     /**
      * <pre>
      *                       Table 1: The Base 64 Alphabet
@@ -105,10 +165,11 @@ public final class Base64 implements PublicStaticHelper {
      *         16 Q            33 h            50 y
      * </pre>
      */
+    static final byte PAD = '=';
+
     // @VisibleForTesting
     final static String RFC4648_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
     private final static char[] RFC4648_ALPHABET_CHARS = RFC4648_ALPHABET.toCharArray();
-    private final static int[] RFC4648_LOOKUP = makeDecoderLookup(RFC4648_ALPHABET_CHARS);
 
     /**
      * <pre>
@@ -135,196 +196,277 @@ public final class Base64 implements PublicStaticHelper {
      * </pre>
      */
     private final static char[] RFC4648_URLSAFE_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
-    private final static int[] RFC4648_URLSAFE_LOOKUP = makeDecoderLookup(RFC4648_URLSAFE_ALPHABET);
+
+    private static final int MIMELINEMAX = 76;
+    private static final byte[] CRLF = new byte[]{'\r', '\n'};
 
     /**
-     * Produces a lookup table using an alphabet character as the index.
+     * The size of the chunks used when encoding or decoding primitive arrays, a multiple of 3 and 8 so chunks hold
+     * whole groups and whole values.
      */
-    private static int[] makeDecoderLookup(final char[] alphabet) {
-        final int[] lookup = new int[256];
-        Arrays.fill(lookup, -1);
+    private static final int CHUNK_LENGTH = 384;
 
-        int value = 0;
+    /**
+     * The approximate number of bytes in each chunk given to a thread by {@link Engine#PARALLEL}.
+     */
+    private static final int PARALLEL_CHUNK_LENGTH = 64 * 1024;
 
-        for (final char c : alphabet) {
-            lookup[c] = value;
-            value++;
-        }
+    private static final byte MASK = 0x3f;
 
-        return lookup;
+    /**
+     * Receives the raw bytes block by block as they are encoded or decoded, so a checksum or digest may be computed in
+     * the same pass, eg {@code crc32::update} or {@code messageDigest::update}.
+     */
+    @FunctionalInterface
+    public interface Updater {
+        void update(final byte[] bytes,
+                    final int offset,
+                    final int length);
     }
 
-    private static final int MIMELINEMAX = 76;
-    private static final byte[] CRLF = new byte[]{'\r', '\n'};
+    /**
+     * Receives the sizes and times of encode and decode calls, and the reason for each decode failure. Given to a copy
+     * of an encoder or decoder by {@link Encoder#withMetrics(Metrics)} and {@link Decoder#withMetrics(Metrics)}, see
+     * {@link #counters()} for an implementation that keeps totals and a histogram of sizes.
+     * <br>
+     * Only {@code encode(byte[])}, {@code encode(byte[], byte[])}, {@code encodeToString(byte[])},
+     * {@code decode(byte[])}, {@code decode(byte[], byte[])} and {@code decode(String)} are timed, failures are
+     * reported by all decode methods.
+     */
+    public interface Metrics {
 
-    private static final byte MASK = 0x3f;
-    static final byte PAD = '=';
+        void encoded(final int bytes,
+                     final int encoded,
+                     final long nanos);
 
-    public static class Encoder {
+        void decoded(final int encoded,
+                     final int bytes,
+                     final long nanos);
 
-        final static Encoder RFC4648 = new Encoder(RFC4648_ALPHABET_CHARS, -1, new byte[0], Base64EncoderPadding.WITH);
-        final static Encoder RFC4648_URLSAFE = new Encoder(RFC4648_URLSAFE_ALPHABET, -1, new byte[0], Base64EncoderPadding.WITH);
-        final static Encoder RFC2045 = new Encoder(RFC4648_ALPHABET_CHARS, MIMELINEMAX, CRLF, Base64EncoderPadding.WITH);
+        void failed(final DecodeFailure failure);
+    }
 
-        private Encoder(final char[] alphabet,
-                        final int maxLineLength,
-                        final byte[] separator,
-                        final Base64EncoderPadding padding) {
-            super();
-            this.alphabet = alphabet;
-            this.maxLineLength = maxLineLength;
-            this.separator = separator;
-            this.padding = padding;
-        }
+    /**
+     * The reasons reported to {@link Metrics#failed(DecodeFailure)}.
+     */
+    public enum DecodeFailure {
+        /**
+         * A character that is not part of the alphabet.
+         */
+        INVALID_CHARACTER,
 
         /**
-         * <pre>
-         * 9.  Illustrations and Examples
-         *
-         *    To translate between binary and a base encoding, the input is stored
-         *    in a structure, and the output is extracted.  The case for base 64 is
-         *    displayed in the following figure, borrowed from [5].
-         *
-         *             +--first octet--+-second octet--+--third octet--+
-         *             |7 6 5 4 3 2 1 0|7 6 5 4 3 2 1 0|7 6 5 4 3 2 1 0|
-         *             +-----------+---+-------+-------+---+-----------+
-         *             |5 4 3 2 1 0|5 4 3 2 1 0|5 4 3 2 1 0|5 4 3 2 1 0|
-         *             +--1.index--+--2.index--+--3.index--+--4.index--+
-         * </pre>
+         * An alphabet character following a pad.
          */
-        public byte[] encode(final byte[] from) {
-            Objects.requireNonNull(from, "from");
+        BAD_PADDING,
 
-            try (final ByteArrayOutputStream bytes = new ByteArrayOutputStream()) {
+        /**
+         * The last group has a single character.
+         */
+        TRUNCATED_GROUP,
 
-                final int fromLength = from.length;
-                final int maxLineLength = this.maxLineLength;
-                final char[] alphabet = this.alphabet;
-                final Base64EncoderPadding padding = this.padding;
-                final byte[] separator = this.separator;
+        /**
+         * Characters from both the standard and URL and filename safe alphabets, see {@link Decoder#withoutMixing()}.
+         */
+        MIXED_ALPHABETS
+    }
 
-                int lineWidth = 0;
-                int offset = 0;
-                int previous = 0;
+    /**
+     * The loops that may encode or decode, picked for each call by the size of the input, see
+     * {@link Encoder#engine(int)} and {@link Decoder#engine(int)}, against fixed thresholds unless the properties file
+     * named by the walkingkooka.j2cl.java.util.Base64.engineThresholds system property replaces them. The
+     * walkingkooka.j2cl.java.util.Base64.engine system property forces a single engine, falling back to the nearest
+     * engine a variant supports.
+     */
+    public enum Engine {
+        /**
+         * One character at a time using a lookup table.
+         */
+        TABLE,
 
-                for (int i = 0; i < fromLength; i++) {
-                    final int value = from[i] & 0xFF;
+        /**
+         * Decodes 8 characters at a time, each held in a byte of a long.
+         */
+        SWAR,
 
-                    switch (offset) {
-                        case 0:
-                            if (lineWidth == maxLineLength) {
-                                padding.writeSeparator(bytes, separator);
-                                lineWidth = 0;
-                            }
+        /**
+         * Splits a large input into chunks encoded or decoded on the common fork join pool, with each chunk using
+         * the fastest of the other engines.
+         */
+        PARALLEL,
 
-                            bytes.write(alphabet[value >>> 2]);
-                            previous = (value & 0x3) << 4;
-                            offset = 1;
-                            lineWidth++;
-                            break;
-                        case 1:
-                            bytes.write(alphabet[previous | (value >>> 4)]);
-                            previous = (value & 0xf) << 2;
-                            offset = 2;
-                            lineWidth++;
-                            break;
-                        case 2:
-                            bytes.write(alphabet[previous | (value >>> 6)]);
-                            bytes.write(alphabet[value & MASK]);
-                            previous = 0;
-                            offset = 0;
-                            lineWidth++;
-                            lineWidth++;
-                            break;
-                        default:
-                            NeverError.unhandledCase(offset, 0, 1, 2);
-                            break;
-                    }
-                }
+        /**
+         * Arithmetic instead of table lookups, used by every call of {@link Encoder#constantTime()} and
+         * {@link Decoder#constantTime()}.
+         */
+        CONSTANT_TIME
+    }
 
-                switch (offset) {
-                    case 0:
-                        break;
-                    case 1:
-                        bytes.write(alphabet[previous]);
-                        lineWidth += 1 + padding.write1(bytes);
-                        break;
-                    case 2:
-                        bytes.write(alphabet[previous]);
+    /**
+     * Creates {@link Metrics} that count calls, bytes, time and failures, with counters striped per thread so cores
+     * counting at the same time do not contend.
+     */
+    public static Counters counters() {
+        return new Counters();
+    }
 
-                        lineWidth += 1 + padding.write2(bytes);
-                        break;
-                    default:
-                        NeverError.unhandledCase(offset, 0, 1, 2);
-                        break;
-                }
+    public final static class Counters implements Metrics {
 
-                bytes.flush();
-                return bytes.toByteArray();
-            } catch (final IOException cause) {
-                throw new Error(cause.getMessage(), cause); // shouldnt happen.
-            }
+        /**
+         * Sizes are counted in power of 2 buckets, bucket 0 holds 0, and bucket n lengths from 2^(n-1) to 2^n - 1.
+         */
+        public final static int BUCKETS = 32;
+
+        private Counters() {
+            super();
         }
 
-        public int encode(final byte[] from,
-                          final byte[] to) {
-            final byte[] encoded = this.encode(from);
-            final int length = encoded.length;
+        @Override
+        public void encoded(final int bytes,
+                            final int encoded,
+                            final long nanos) {
+            this.encodeCalls.increment();
+            this.encodeBytes.add(bytes);
+            this.encodeEncoded.add(encoded);
+            this.encodeNanos.add(nanos);
+            this.encodeSizes[bucket(bytes)].increment();
+        }
 
-            if (to.length < length) {
-                throw new IllegalArgumentException("To " + to.length + " < required " + length);
-            }
-            System.arraycopy(encoded, 0, to, 0, length);
-            return length;
+        @Override
+        public void decoded(final int encoded,
+                            final int bytes,
+                            final long nanos) {
+            this.decodeCalls.increment();
+            this.decodeEncoded.add(encoded);
+            this.decodeBytes.add(bytes);
+            this.decodeNanos.add(nanos);
+            this.decodeSizes[bucket(encoded)].increment();
         }
 
-        private final char[] alphabet;
-        private final int maxLineLength;
-        private final byte[] separator;
-        private final Base64EncoderPadding padding;
+        @Override
+        public void failed(final DecodeFailure failure) {
+            this.failures[failure.ordinal()].increment();
+        }
 
-        @SuppressWarnings("deprecation")
-        public String encodeToString(final byte[] src) {
-            final byte[] encoded = this.encode(src);
-            return new String(encoded);
+        static int bucket(final int length) {
+            return 32 - Integer.numberOfLeadingZeros(length);
         }
 
-        public Encoder withoutPadding() {
-            return Base64EncoderPadding.WITHOUT == this.padding ?
-                this :
-                new Encoder(this.alphabet, this.maxLineLength, this.separator, Base64EncoderPadding.WITHOUT);
+        public long encodeCalls() {
+            return this.encodeCalls.sum();
+        }
+
+        public long encodeBytes() {
+            return this.encodeBytes.sum();
+        }
+
+        public long encodeEncoded() {
+            return this.encodeEncoded.sum();
+        }
+
+        public long encodeNanos() {
+            return this.encodeNanos.sum();
+        }
+
+        /**
+         * Returns the number of encodes in each bucket of unencoded sizes.
+         */
+        public long[] encodeSizes() {
+            return sums(this.encodeSizes);
+        }
+
+        public long decodeCalls() {
+            return this.decodeCalls.sum();
+        }
+
+        public long decodeEncoded() {
+            return this.decodeEncoded.sum();
+        }
+
+        public long decodeBytes() {
+            return this.decodeBytes.sum();
+        }
+
+        public long decodeNanos() {
+            return this.decodeNanos.sum();
+        }
+
+        /**
+         * Returns the number of decodes in each bucket of encoded sizes.
+         */
+        public long[] decodeSizes() {
+            return sums(this.decodeSizes);
+        }
+
+        public long failures(final DecodeFailure failure) {
+            return this.failures[failure.ordinal()].sum();
+        }
+
+        private final Base64Counter encodeCalls = Base64Counter.with();
+        private final Base64Counter encodeBytes = Base64Counter.with();
+        private final Base64Counter encodeEncoded = Base64Counter.with();
+        private final Base64Counter encodeNanos = Base64Counter.with();
+        private final Base64Counter[] encodeSizes = counters(BUCKETS);
+
+        private final Base64Counter decodeCalls = Base64Counter.with();
+        private final Base64Counter decodeEncoded = Base64Counter.with();
+        private final Base64Counter decodeBytes = Base64Counter.with();
+        private final Base64Counter decodeNanos = Base64Counter.with();
+        private final Base64Counter[] decodeSizes = counters(BUCKETS);
+
+        private final Base64Counter[] failures = counters(DecodeFailure.values().length);
+
+        private static Base64Counter[] counters(final int count) {
+            final Base64Counter[] counters = new Base64Counter[count];
+            for (int i = 0; i < count; i++) {
+                counters[i] = Base64Counter.with();
+            }
+            return counters;
+        }
+
+        private static long[] sums(final Base64Counter[] counters) {
+            final int count = counters.length;
+            final long[] sums = new long[count];
+            for (int i = 0; i < count; i++) {
+                sums[i] = counters[i].sum();
+            }
+            return sums;
         }
 
         @Override
         public String toString() {
-            final String toString;
+            final StringBuilder b = new StringBuilder();
+            b.append("encode ").append(this.encodeCalls()).append(" calls ").append(this.encodeBytes()).append(" bytes ").append(this.encodeNanos()).append("ns");
+            b.append(", decode ").append(this.decodeCalls()).append(" calls ").append(this.decodeBytes()).append(" bytes ").append(this.decodeNanos()).append("ns");
 
-            if (RFC4648_ALPHABET_CHARS == this.alphabet) {
-                final int max = this.maxLineLength;
-                if (-1 == max) {
-                    toString = "RFC4648" + this.padding;
-                } else {
-                    toString = "RFC2045" + this.padding + " lineWidth=" + max;
-                }
-            } else {
-                toString = "RFC4648 URLSAFE" + this.padding;
+            for (final DecodeFailure failure : DecodeFailure.values()) {
+                b.append(", ").append(failure).append('=').append(this.failures(failure));
             }
-
-            return toString;
+            return b.toString();
         }
     }
 
-    public static class Decoder {
+    public static class Encoder {
 
-        final static Decoder RFC4648 = new Decoder(RFC4648_LOOKUP, "RFC4648");
-        final static Decoder RFC4648_URLSAFE = new Decoder(RFC4648_URLSAFE_LOOKUP, "RFC4648 URLSAFE");
-        final static Decoder RFC2045 = new Decoder(RFC4648_LOOKUP, "RFC2045");
+        final static Encoder RFC4648 = new Encoder(RFC4648_ALPHABET_CHARS, PAD, -1, new byte[0], Base64EncoderPadding.WITH, false, null);
+        final static Encoder RFC4648_URLSAFE = new Encoder(RFC4648_URLSAFE_ALPHABET, PAD, -1, new byte[0], Base64EncoderPadding.WITH, false, null);
+        final static Encoder RFC2045 = new Encoder(RFC4648_ALPHABET_CHARS, PAD, MIMELINEMAX, CRLF, Base64EncoderPadding.WITH, false, null);
 
-        private Decoder(final int[] lookup,
-                        final String toString) {
+        private Encoder(final char[] alphabet,
+                        final byte pad,
+                        final int maxLineLength,
+                        final byte[] separator,
+                        final Base64EncoderPadding padding,
+                        final boolean constantTime,
+                        final Metrics metrics) {
             super();
-            this.lookup = lookup;
-            this.toString = toString;
+            this.alphabet = alphabet;
+            this.pad = pad;
+            this.maxLineLength = maxLineLength;
+            this.separator = separator;
+            this.padding = padding;
+            this.constantTime = constantTime;
+            this.metrics = metrics;
         }
 
         /**
@@ -342,121 +484,3617 @@ public final class Base64 implements PublicStaticHelper {
          *             +--1.index--+--2.index--+--3.index--+--4.index--+
          * </pre>
          */
-        public byte[] decode(final byte[] from) {
+        public byte[] encode(final byte[] from) {
             Objects.requireNonNull(from, "from");
 
-            try (final ByteArrayOutputStream bytes = new ByteArrayOutputStream()) {
+            final Metrics metrics = this.metrics;
+            final int length = from.length;
+            if (null == metrics && length < Base64Events.THRESHOLD) {
+                return this.encode1(from);
+            }
 
-                final int fromLength = from.length;
-                final int[] lookup = this.lookup;
-                final boolean mime = this.isMime();
+            final Object event = Base64Events.begin(length);
+            final long start = System.nanoTime();
+            final byte[] to = this.encode1(from);
+            this.encoded(metrics, event, "encode", length, to.length, start);
+            return to;
+        }
 
-                int mode = MODE_OCTET_0;
-                int previous = 0;
+        private byte[] encode1(final byte[] from) {
+            final byte[] to = new byte[toArrayLength(this.encodedLength(from.length))];
+            this.encodeAll(from, to, this.engine(from.length));
+            return to;
+        }
 
-                for (int i = 0; i < fromLength; i++) {
-                    final byte c = from[i];
-                    if (PAD == c) {
-                        mode = MODE_PAD;
-                        continue;
-                    }
+        public int encode(final byte[] from,
+                          final byte[] to) {
+            Objects.requireNonNull(from, "from");
 
+            final Metrics metrics = this.metrics;
+            final int length = from.length;
+            if (null == metrics && length < Base64Events.THRESHOLD) {
+                return this.encode1(from, to);
+            }
 
-                    final int value = lookup[c];
-                    if (-1 == value) {
-                        if (mime) {
-                            continue;
-                        }
-                        throw new IllegalArgumentException("Invalid encoding got 0x" + Integer.toHexString(c) + " at " + i);
-                    }
+            final Object event = Base64Events.begin(length);
+            final long start = System.nanoTime();
+            final int written = this.encode1(from, to);
+            this.encoded(metrics, event, "encode", length, written, start);
+            return written;
+        }
 
-                    // read 4 bytes encoded gives 3 decoded
-                    switch (mode) {
-                        case MODE_OCTET_0:
-                            previous = value << 2;
-                            mode = MODE_OCTET_1;
-                            break;
-                        case MODE_OCTET_1:
-                            bytes.write(previous | value >> 4);
-                            previous = (value & 0xf) << 4;
-                            mode = MODE_OCTET_2;
-                            break;
-                        case MODE_OCTET_2:
-                            bytes.write(previous | value >> 2);
-                            previous = (value & 0x3) << 6;
-                            mode = MODE_OCTET_3;
-                            break;
-                        case MODE_OCTET_3:
-                            bytes.write(previous | value);
-                            previous = 0;
-                            mode = MODE_OCTET_0;
-                            break;
-                        case MODE_PAD:
-                            throw new IllegalArgumentException("Expected pad but got " + CharSequences.quoteIfChars((char) c) + " at " + i);
-                        default:
-                            NeverError.unhandledCase(mode, MODE_OCTET_0, MODE_OCTET_1, MODE_OCTET_2, MODE_OCTET_3, MODE_PAD);
-                            break;
-                    }
-                }
+        private int encode1(final byte[] from,
+                            final byte[] to) {
+            final int length = toArrayLength(this.encodedLength(from.length));
 
-                switch (mode) {
-                    case MODE_OCTET_0:
-                    case MODE_OCTET_2:
-                    case MODE_OCTET_3:
-                    case MODE_PAD:
-                        break;
-                    case MODE_OCTET_1:
-                        throw new IllegalArgumentException("Invalid encoding " + mode);
-                    default:
-                        NeverError.unhandledCase(mode, MODE_OCTET_0, MODE_OCTET_1, MODE_OCTET_2, MODE_OCTET_3, MODE_PAD);
-                        break;
-                }
+            if (to.length < length) {
+                throw new IllegalArgumentException("To " + to.length + " < required " + length);
+            }
+            return this.encodeAll(from, to, this.engine(from.length));
+        }
 
-                if (MODE_OCTET_1 == mode) {
+        /**
+         * Returns the engine that encodes an input of the given length.
+         */
+        public Engine engine(final int length) {
+            if (this.constantTime) {
+                return Engine.CONSTANT_TIME;
+            }
 
-                }
+            final Engine forced = Base64Engines.FORCED;
+            final boolean parallel = null != forced ?
+                Engine.PARALLEL == forced :
+                length >= Base64Engines.PARALLEL_MINIMUM && length >= Base64Engines.Parallel.ENCODE;
 
-                bytes.flush();
-                return bytes.toByteArray();
-            } catch (final IOException cause) {
-                throw new Error(cause.getMessage(), cause); // shouldnt happen.
-            }
+            return parallel ?
+                Engine.PARALLEL :
+                Engine.TABLE;
         }
 
-        private final static int MODE_OCTET_0 = 0;
-        private final static int MODE_OCTET_1 = MODE_OCTET_0 + 1;
-        private final static int MODE_OCTET_2 = MODE_OCTET_1 + 1;
-        private final static int MODE_OCTET_3 = MODE_OCTET_2 + 1;
-        private final static int MODE_PAD = MODE_OCTET_3 + 1;
+        /**
+         * Encodes all the bytes using the given engine, returning the number of characters written. Only
+         * {@link Engine#PARALLEL} differs, the others all use the table.
+         */
+        int encodeAll(final byte[] from,
+                      final byte[] to,
+                      final Engine engine) {
+            final int length = from.length;
+            if (Engine.PARALLEL != engine) {
+                return this.encode0(from, 0, length, to, 0, 0);
+            }
 
-        private boolean isMime() {
-            return this == RFC2045;
-        }
+            // chunks hold whole lines so each chunk after the first begins with a separator
+            final int lineLength = this.maxLineLength > 0 ?
+                this.groupsPerLine() * 3 :
+                3;
+            final int chunkLength = Math.max(1, PARALLEL_CHUNK_LENGTH / lineLength) * lineLength;
 
-        public byte[] decode(final String encoded) {
-            return decode(encoded.getBytes(StandardCharsets.ISO_8859_1));
+            IntStream.range(0, (length + chunkLength - 1) / chunkLength)
+                .parallel()
+                .forEach(c -> {
+                    final int start = c * chunkLength;
+                    this.encode0(
+                        from,
+                        start,
+                        Math.min(start + chunkLength, length),
+                        to,
+                        toArrayLength(this.encodedLength(start)),
+                        this.lineGroups(0, start / 3)
+                    );
+                });
+
+            return toArrayLength(this.encodedLength(length));
         }
 
-        public int decode(final byte[] from,
-                          final byte[] to) {
-            final byte[] decoded = this.decode(from);
-            final int length = decoded.length;
+        /**
+         * Encodes the bytes a chunk at a time, giving each chunk to the {@link Updater} just before it is encoded.
+         */
+        public byte[] encodeAndUpdate(final byte[] from,
+                                      final Updater updater) {
+            Objects.requireNonNull(from, "from");
+            Objects.requireNonNull(updater, "updater");
 
-            if (to.length < length) {
-                throw new IllegalArgumentException("To " + to.length + " < required " + length);
-            }
-            System.arraycopy(decoded, 0, to, 0, length);
-            return length;
-        }
+            final int length = from.length;
+            final Object event = Base64Events.begin(length);
+            final byte[] to = new byte[toArrayLength(this.encodedLength(length))];
 
-        private final int[] lookup;
+            int lineGroups = 0;
+            int t = 0;
 
-        @Override
-        public String toString() {
-            return this.toString;
+            for (int i = 0; i < length; i += CHUNK_LENGTH) {
+                final int chunkLength = Math.min(CHUNK_LENGTH, length - i);
+                updater.update(from, i, chunkLength);
+
+                t = this.encode0(from, i, i + chunkLength, to, t, lineGroups);
+                lineGroups = this.lineGroups(lineGroups, chunkLength / 3);
+            }
+
+            Base64Events.end(event, "encodeAndUpdate", this, length, to.length, ENGINE);
+            return to;
         }
 
-        private final String toString;
+        /**
+         * Encodes all arrays back to back into a single array sized exactly for all encodings. The offsets array must
+         * have room for one more element than there are arrays, and receives the offset of each encoding followed by
+         * the total length, so the encoding of array i is between offsets i and i + 1. When parallel is true the
+         * arrays are encoded in parallel, each into its own part of the single array.
+         */
+        public byte[] encodeBatch(final List<byte[]> from,
+                                  final int[] offsets,
+                                  final boolean parallel) {
+            Objects.requireNonNull(from, "from");
+            Objects.requireNonNull(offsets, "offsets");
+
+            final byte[][] arrays = from.toArray(new byte[0][]);
+            final int count = arrays.length;
+            if (offsets.length <= count) {
+                throw new IllegalArgumentException("Offsets " + offsets.length + " < required " + (count + 1));
+            }
+
+            long bytes = 0;
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                final byte[] array = arrays[i];
+                if (null == array) {
+                    throw new NullPointerException("from[" + i + "]");
+                }
+                offsets[i] = toArrayLength(total);
+                bytes += array.length;
+                total += this.encodedLength(array.length);
+            }
+            offsets[count] = toArrayLength(total);
+
+            final byte[] to = new byte[offsets[count]];
+            final Object event = Base64Events.begin(toArrayLength(bytes));
+
+            final IntStream range = IntStream.range(0, count);
+            (parallel ? range.parallel() : range).forEach(i -> {
+                final byte[] array = arrays[i];
+                this.encode0(array, 0, array.length, to, offsets[i], 0);
+            });
+
+            Base64Events.end(event, "encodeBatch", this, toArrayLength(bytes), to.length, ENGINE);
+            return to;
+        }
+
+        /**
+         * Encodes the bytes within the slice into the same array, with the encoded characters starting at offset.
+         * Groups are encoded back to front, so the array must have room after offset for {@link #encodedLength(long)}
+         * characters. Returns the number of encoded characters.
+         */
+        public int encodeInPlace(final byte[] buffer,
+                                 final int offset,
+                                 final int length) {
+            Objects.requireNonNull(buffer, "buffer");
+            checkSlice(offset, length, buffer.length);
+
+            final int encodedLength = toArrayLength(this.encodedLength(length));
+            final int available = buffer.length - offset;
+            if (available < encodedLength) {
+                throw new IllegalArgumentException("Buffer " + available + " < required " + encodedLength);
+            }
+
+            if (this.constantTime) {
+                this.encodeInPlaceConstantTime(buffer, offset, length, encodedLength);
+                return encodedLength;
+            }
+
+            final char[] alphabet = this.alphabet;
+            final byte[] separator = this.separator;
+            final int separatorLength = separator.length;
+            final int groupsPerLine = this.groupsPerLine();
+            final int groups = length / 3;
+            final int remaining = length % 3;
+
+            int t = offset + encodedLength;
+
+            if (remaining > 0) {
+                final int i = offset + groups * 3;
+                final int value = buffer[i] & 0xff;
+                final int value2 = 2 == remaining ?
+                    buffer[i + 1] & 0xff :
+                    0;
+
+                t = offset + groups * 4 + groups / groupsPerLine * separatorLength;
+                buffer[t] = (byte) alphabet[value >>> 2];
+
+                final Base64EncoderPadding padding = this.padding;
+                if (1 == remaining) {
+                    buffer[t + 1] = (byte) alphabet[(value & 0x3) << 4];
+                    padding.write1(buffer, t + 2, this.pad);
+                } else {
+                    buffer[t + 1] = (byte) alphabet[(value & 0x3) << 4 | value2 >>> 4];
+                    buffer[t + 2] = (byte) alphabet[(value2 & 0xf) << 2];
+                    padding.write2(buffer, t + 3, this.pad);
+                }
+
+                if (groups > 0 && 0 == groups % groupsPerLine) {
+                    t -= separatorLength;
+                    System.arraycopy(separator, 0, buffer, t, separatorLength);
+                }
+            }
+
+            // the output for a group always starts at or after its input, so reading the group first is safe.
+            for (int g = groups - 1; g >= 0; g--) {
+                final int i = offset + g * 3;
+                final int bits = (buffer[i] & 0xff) << 16 | (buffer[i + 1] & 0xff) << 8 | (buffer[i + 2] & 0xff);
+
+                t -= 4;
+                buffer[t] = (byte) alphabet[bits >>> 18];
+                buffer[t + 1] = (byte) alphabet[(bits >>> 12) & MASK];
+                buffer[t + 2] = (byte) alphabet[(bits >>> 6) & MASK];
+                buffer[t + 3] = (byte) alphabet[bits & MASK];
+
+                if (g > 0 && 0 == g % groupsPerLine) {
+                    t -= separatorLength;
+                    System.arraycopy(separator, 0, buffer, t, separatorLength);
+                }
+            }
+
+            return encodedLength;
+        }
+
+        /**
+         * The same as the back to front loop of {@link #encodeInPlace(byte[], int, int)} but each character is computed
+         * by {@link #constantTimeChar(int, int, int)}, so no copy of the secret is made. Only lengths and line positions
+         * decide branches.
+         */
+        private void encodeInPlaceConstantTime(final byte[] buffer,
+                                               final int offset,
+                                               final int length,
+                                               final int encodedLength) {
+            final int plus = this.alphabet[62];
+            final int slash = this.alphabet[63];
+            final byte[] separator = this.separator;
+            final int separatorLength = separator.length;
+            final int groupsPerLine = this.groupsPerLine();
+            final int groups = length / 3;
+            final int remaining = length % 3;
+
+            int t = offset + encodedLength;
+
+            if (remaining > 0) {
+                final int i = offset + groups * 3;
+                final int value = buffer[i] & 0xff;
+                final int value2 = 2 == remaining ?
+                    buffer[i + 1] & 0xff :
+                    0;
+
+                t = offset + groups * 4 + groups / groupsPerLine * separatorLength;
+                buffer[t] = (byte) constantTimeChar(value >>> 2, plus, slash);
+
+                final Base64EncoderPadding padding = this.padding;
+                if (1 == remaining) {
+                    buffer[t + 1] = (byte) constantTimeChar((value & 0x3) << 4, plus, slash);
+                    padding.write1(buffer, t + 2, this.pad);
+                } else {
+                    buffer[t + 1] = (byte) constantTimeChar((value & 0x3) << 4 | value2 >>> 4, plus, slash);
+                    buffer[t + 2] = (byte) constantTimeChar((value2 & 0xf) << 2, plus, slash);
+                    padding.write2(buffer, t + 3, this.pad);
+                }
+
+                if (groups > 0 && 0 == groups % groupsPerLine) {
+                    t -= separatorLength;
+                    System.arraycopy(separator, 0, buffer, t, separatorLength);
+                }
+            }
+
+            for (int g = groups - 1; g >= 0; g--) {
+                final int i = offset + g * 3;
+                final int bits = (buffer[i] & 0xff) << 16 | (buffer[i + 1] & 0xff) << 8 | (buffer[i + 2] & 0xff);
+
+                t -= 4;
+                buffer[t] = (byte) constantTimeChar(bits >>> 18, plus, slash);
+                buffer[t + 1] = (byte) constantTimeChar((bits >>> 12) & MASK, plus, slash);
+                buffer[t + 2] = (byte) constantTimeChar((bits >>> 6) & MASK, plus, slash);
+                buffer[t + 3] = (byte) constantTimeChar(bits & MASK, plus, slash);
+
+                if (g > 0 && 0 == g % groupsPerLine) {
+                    t -= separatorLength;
+                    System.arraycopy(separator, 0, buffer, t, separatorLength);
+                }
+            }
+        }
+
+        /**
+         * Returns the exact number of characters the given number of bytes will encode too, including any padding
+         * and line separators.
+         */
+        public long encodedLength(final long inputLength) {
+            if (inputLength < 0) {
+                throw new IllegalArgumentException("Invalid input length " + inputLength + " < 0");
+            }
+
+            final long remainder = inputLength % 3;
+            final long chars = inputLength / 3 * 4 +
+                (0 == remainder ?
+                    0 :
+                    1 + remainder + (1 == remainder ? this.padding.length1() : this.padding.length2()));
+
+            final int maxLineLength = this.maxLineLength;
+            return maxLineLength > 0 && chars > 0 ?
+                chars + (chars - 1) / maxLineLength * this.separator.length :
+                chars;
+        }
+
+        private static int toArrayLength(final long length) {
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Encoded length " + length + " too large");
+            }
+            return (int) length;
+        }
+
+        /**
+         * Encodes the range of bytes writing the characters to the given array, returning the offset after the last
+         * character. The given array must have room for {@link #encodedLength(long)} characters. Line groups is the
+         * number of groups already written to the current line, which is only non zero when continuing an earlier
+         * range, see {@link #lineGroups(int, int)}.
+         */
+        private int encode0(final byte[] from,
+                            final int fromStart,
+                            final int fromEnd,
+                            final byte[] to,
+                            final int toStart,
+                            final int lineGroups) {
+            if (this.constantTime) {
+                return this.encodeConstantTime(from, fromStart, fromEnd, to, toStart, lineGroups);
+            }
+
+            final char[] alphabet = this.alphabet;
+            final byte[] separator = this.separator;
+            final int groupsPerLine = this.groupsPerLine();
+            final int groupsEnd = fromEnd - (fromEnd - fromStart) % 3;
+
+            int groups = lineGroups;
+            int t = toStart;
+            int i = fromStart;
+
+            while (i < groupsEnd) {
+                if (groups == groupsPerLine) {
+                    t = writeSeparator(separator, to, t);
+                    groups = 0;
+                }
+
+                final int bits = (from[i] & 0xff) << 16 | (from[i + 1] & 0xff) << 8 | (from[i + 2] & 0xff);
+                to[t] = (byte) alphabet[bits >>> 18];
+                to[t + 1] = (byte) alphabet[(bits >>> 12) & MASK];
+                to[t + 2] = (byte) alphabet[(bits >>> 6) & MASK];
+                to[t + 3] = (byte) alphabet[bits & MASK];
+
+                groups++;
+                t += 4;
+                i += 3;
+            }
+
+            final int remaining = fromEnd - i;
+            if (remaining > 0) {
+                if (groups == groupsPerLine) {
+                    t = writeSeparator(separator, to, t);
+                }
+
+                final int value = from[i] & 0xff;
+                to[t++] = (byte) alphabet[value >>> 2];
+
+                final Base64EncoderPadding padding = this.padding;
+                if (1 == remaining) {
+                    to[t++] = (byte) alphabet[(value & 0x3) << 4];
+                    t += padding.write1(to, t, this.pad);
+                } else {
+                    final int value2 = from[i + 1] & 0xff;
+                    to[t++] = (byte) alphabet[(value & 0x3) << 4 | value2 >>> 4];
+                    to[t++] = (byte) alphabet[(value2 & 0xf) << 2];
+                    t += padding.write2(to, t, this.pad);
+                }
+            }
+
+            return t;
+        }
+
+        /**
+         * The same as {@link #encode0(byte[], int, int, byte[], int, int)} but each character is computed by
+         * {@link #constantTimeChar(int, int, int)}. Only lengths and line positions decide branches.
+         */
+        private int encodeConstantTime(final byte[] from,
+                                       final int fromStart,
+                                       final int fromEnd,
+                                       final byte[] to,
+                                       final int toStart,
+                                       final int lineGroups) {
+            final int plus = this.alphabet[62];
+            final int slash = this.alphabet[63];
+            final byte[] separator = this.separator;
+            final int groupsPerLine = this.groupsPerLine();
+            final int groupsEnd = fromEnd - (fromEnd - fromStart) % 3;
+
+            int groups = lineGroups;
+            int t = toStart;
+            int i = fromStart;
+
+            while (i < groupsEnd) {
+                if (groups == groupsPerLine) {
+                    t = writeSeparator(separator, to, t);
+                    groups = 0;
+                }
+
+                final int bits = (from[i] & 0xff) << 16 | (from[i + 1] & 0xff) << 8 | (from[i + 2] & 0xff);
+                to[t] = (byte) constantTimeChar(bits >>> 18, plus, slash);
+                to[t + 1] = (byte) constantTimeChar((bits >>> 12) & MASK, plus, slash);
+                to[t + 2] = (byte) constantTimeChar((bits >>> 6) & MASK, plus, slash);
+                to[t + 3] = (byte) constantTimeChar(bits & MASK, plus, slash);
+
+                groups++;
+                t += 4;
+                i += 3;
+            }
+
+            final int remaining = fromEnd - i;
+            if (remaining > 0) {
+                if (groups == groupsPerLine) {
+                    t = writeSeparator(separator, to, t);
+                }
+
+                final int value = from[i] & 0xff;
+                to[t++] = (byte) constantTimeChar(value >>> 2, plus, slash);
+
+                final Base64EncoderPadding padding = this.padding;
+                if (1 == remaining) {
+                    to[t++] = (byte) constantTimeChar((value & 0x3) << 4, plus, slash);
+                    t += padding.write1(to, t, this.pad);
+                } else {
+                    final int value2 = from[i + 1] & 0xff;
+                    to[t++] = (byte) constantTimeChar((value & 0x3) << 4 | value2 >>> 4, plus, slash);
+                    to[t++] = (byte) constantTimeChar((value2 & 0xf) << 2, plus, slash);
+                    t += padding.write2(to, t, this.pad);
+                }
+            }
+
+            return t;
+        }
+
+        /**
+         * Returns the character for a 6 bit value of the standard or URL and filename safe alphabet, starting at 'A'
+         * and adding the distance to the next range for each range the value is past, using masks that are all ones
+         * when the value is greater than the last value of a range.
+         */
+        static int constantTimeChar(final int value,
+                                    final int plus,
+                                    final int slash) {
+            int c = 'A' + value;
+            c += ((25 - value) >> 31) & ('a' - 26 - 'A');
+            c += ((51 - value) >> 31) & ('0' - 52 - ('a' - 26));
+            c += ((61 - value) >> 31) & (plus - 62 - ('0' - 52));
+            c += ((62 - value) >> 31) & (slash - plus - 1);
+            return c;
+        }
+
+        /**
+         * The number of groups in each line, which is effectively unlimited when there are no lines.
+         */
+        private int groupsPerLine() {
+            return this.maxLineLength > 0 ?
+                this.maxLineLength / 4 :
+                Integer.MAX_VALUE;
+        }
+
+        /**
+         * Returns the number of groups on the current line after writing the given number of whole groups, starting
+         * with line groups already on the line.
+         */
+        private int lineGroups(final int lineGroups,
+                               final int groups) {
+            return 0 == groups ?
+                lineGroups :
+                (lineGroups + groups - 1) % this.groupsPerLine() + 1;
+        }
+
+        private static int writeSeparator(final byte[] separator,
+                                          final byte[] to,
+                                          final int offset) {
+            final int length = separator.length;
+            System.arraycopy(separator, 0, to, offset, length);
+            return offset + length;
+        }
+
+        private static int writeSeparator(final byte[] separator,
+                                          final char[] to,
+                                          final int offset) {
+            final int length = separator.length;
+            for (int i = 0; i < length; i++) {
+                to[offset + i] = (char) separator[i];
+            }
+            return offset + length;
+        }
+
+        private final char[] alphabet;
+        private final byte pad;
+        private final int maxLineLength;
+        private final byte[] separator;
+        private final Base64EncoderPadding padding;
+
+        /**
+         * When true characters are computed by {@link #constantTimeChar(int, int, int)} instead of read from the alphabet.
+         */
+        private final boolean constantTime;
+
+        /**
+         * When null, which is the default, each instrumented method only pays for one branch.
+         */
+        private final Metrics metrics;
+
+        /**
+         * The standard encoder gives the bytes to {@link Base64Platform} first, which in the browser uses the native
+         * base64 support.
+         */
+        public String encodeToString(final byte[] src) {
+            Objects.requireNonNull(src, "from");
+
+            final Metrics metrics = this.metrics;
+            final int length = src.length;
+            if (null == metrics && length < Base64Events.THRESHOLD) {
+                return this.encodeToString1(src);
+            }
+
+            final Object event = Base64Events.begin(length);
+            final long start = System.nanoTime();
+            final String encoded = this.encodeToString1(src);
+            this.encoded(metrics, event, "encodeToString", length, encoded.length(), start);
+            return encoded;
+        }
+
+        @SuppressWarnings("deprecation")
+        private String encodeToString1(final byte[] src) {
+            final String platform = this.isRfc4648() ?
+                Base64Platform.encode(src) :
+                null;
+            if (null != platform) {
+                return platform;
+            }
+
+            final byte[] encoded = this.encode1(src);
+            return new String(encoded);
+        }
+
+        /**
+         * True for the standard encoder, including a copy with {@link Metrics}.
+         */
+        private boolean isRfc4648() {
+            return RFC4648_ALPHABET_CHARS == this.alphabet &&
+                -1 == this.maxLineLength &&
+                Base64EncoderPadding.WITH == this.padding &&
+                false == this.constantTime;
+        }
+
+        /**
+         * Reports a timed encode to the {@link Metrics} and flight recorder event when present.
+         */
+        private void encoded(final Metrics metrics,
+                             final Object event,
+                             final String operation,
+                             final int bytes,
+                             final int encoded,
+                             final long start) {
+            if (null != metrics) {
+                metrics.encoded(bytes, encoded, System.nanoTime() - start);
+            }
+            Base64Events.end(event, operation, this, bytes, encoded, this.engine(bytes).name());
+        }
+
+        /**
+         * The name of the encoding loop given to flight recorder events by the methods that always encode sequentially.
+         */
+        private final static String ENGINE = Engine.TABLE.name();
+
+        /**
+         * Encodes the bytes within the slice writing the characters to the given char array, returning the number of
+         * characters written. Short values such as 16 byte session ids or 32 byte HMACs are encoded directly into the
+         * char array without any intermediate byte array.
+         */
+        public int encode(final byte[] from,
+                          final int offset,
+                          final int length,
+                          final char[] to,
+                          final int toOffset) {
+            Objects.requireNonNull(from, "from");
+            checkSlice(offset, length, from.length);
+            Objects.requireNonNull(to, "to");
+
+            final int encodedLength = toArrayLength(this.encodedLength(length));
+            checkSlice(toOffset, encodedLength, to.length);
+
+            final byte[] separator = this.separator;
+            final int groupsPerLine = this.groupsPerLine();
+            final int end = offset + length;
+            final int groupsEnd = end - length % 3;
+
+            int groups = 0;
+            int t = toOffset;
+            int i = offset;
+            while (i < groupsEnd) {
+                if (groups == groupsPerLine) {
+                    t = writeSeparator(separator, to, t);
+                    groups = 0;
+                }
+
+                t = this.writeGroup(
+                    (from[i] & 0xff) << 16 | (from[i + 1] & 0xff) << 8 | (from[i + 2] & 0xff),
+                    to,
+                    t
+                );
+                groups++;
+                i += 3;
+            }
+
+            if (i < end && groups == groupsPerLine) {
+                t = writeSeparator(separator, to, t);
+            }
+
+            switch (end - i) {
+                case 1:
+                    this.write1(from[i] & 0xff, to, t);
+                    break;
+                case 2:
+                    this.write2((from[i] & 0xff) << 8 | (from[i + 1] & 0xff), to, t);
+                    break;
+                default:
+                    break;
+            }
+
+            return encodedLength;
+        }
+
+        /**
+         * Encodes the 4 bytes of each int in the given byte order.
+         */
+        public byte[] encode(final int[] values,
+                             final boolean bigEndian) {
+            Objects.requireNonNull(values, "values");
+            return this.encodeArray(values, values.length, 4, bigEndian);
+        }
+
+        /**
+         * Encodes the 8 bytes of each long in the given byte order.
+         */
+        public byte[] encode(final long[] values,
+                             final boolean bigEndian) {
+            Objects.requireNonNull(values, "values");
+            return this.encodeArray(values, values.length, 8, bigEndian);
+        }
+
+        /**
+         * Encodes the 4 bytes of the raw bits of each float in the given byte order.
+         */
+        public byte[] encode(final float[] values,
+                             final boolean bigEndian) {
+            Objects.requireNonNull(values, "values");
+            return this.encodeArray(values, values.length, 4, bigEndian);
+        }
+
+        /**
+         * Encodes the 8 bytes of the raw bits of each double in the given byte order.
+         */
+        public byte[] encode(final double[] values,
+                             final boolean bigEndian) {
+            Objects.requireNonNull(values, "values");
+            return this.encodeArray(values, values.length, 8, bigEndian);
+        }
+
+        @SuppressWarnings("deprecation")
+        public String encodeToString(final int[] values,
+                                     final boolean bigEndian) {
+            return new String(this.encode(values, bigEndian));
+        }
+
+        @SuppressWarnings("deprecation")
+        public String encodeToString(final long[] values,
+                                     final boolean bigEndian) {
+            return new String(this.encode(values, bigEndian));
+        }
+
+        @SuppressWarnings("deprecation")
+        public String encodeToString(final float[] values,
+                                     final boolean bigEndian) {
+            return new String(this.encode(values, bigEndian));
+        }
+
+        @SuppressWarnings("deprecation")
+        public String encodeToString(final double[] values,
+                                     final boolean bigEndian) {
+            return new String(this.encode(values, bigEndian));
+        }
+
+        /**
+         * Encodes a primitive array, copying the bytes of a few values at a time into a small chunk which is then
+         * encoded, so the bytes of the entire array are never held in a byte array.
+         */
+        private byte[] encodeArray(final Object values,
+                                   final int count,
+                                   final int size,
+                                   final boolean bigEndian) {
+            final byte[] to = new byte[toArrayLength(this.encodedLength((long) count * size))];
+            final byte[] chunk = new byte[CHUNK_LENGTH];
+            final int perChunk = CHUNK_LENGTH / size;
+
+            int lineGroups = 0;
+            int t = 0;
+
+            for (int i = 0; i < count; i += perChunk) {
+                final int length = fillChunk(values, i, Math.min(perChunk, count - i), bigEndian, chunk);
+
+                t = this.encode0(chunk, 0, length, to, t, lineGroups);
+                lineGroups = this.lineGroups(lineGroups, length / 3);
+            }
+
+            return to;
+        }
+
+        /**
+         * Copies the bytes of count values starting at from into the chunk, returning the number of bytes.
+         */
+        private static int fillChunk(final Object values,
+                                     final int from,
+                                     final int count,
+                                     final boolean bigEndian,
+                                     final byte[] chunk) {
+            final int end = from + count;
+            int c = 0;
+
+            if (values instanceof int[]) {
+                final int[] ints = (int[]) values;
+                for (int i = from; i < end; i++) {
+                    c = putInt(ints[i], bigEndian, chunk, c);
+                }
+            } else if (values instanceof long[]) {
+                final long[] longs = (long[]) values;
+                for (int i = from; i < end; i++) {
+                    c = putLong(longs[i], bigEndian, chunk, c);
+                }
+            } else if (values instanceof float[]) {
+                final float[] floats = (float[]) values;
+                for (int i = from; i < end; i++) {
+                    c = putInt(Float.floatToRawIntBits(floats[i]), bigEndian, chunk, c);
+                }
+            } else {
+                final double[] doubles = (double[]) values;
+                for (int i = from; i < end; i++) {
+                    c = putLong(Double.doubleToRawLongBits(doubles[i]), bigEndian, chunk, c);
+                }
+            }
+
+            return c;
+        }
+
+        private static int putInt(final int value,
+                                  final boolean bigEndian,
+                                  final byte[] to,
+                                  final int offset) {
+            if (bigEndian) {
+                to[offset] = (byte) (value >>> 24);
+                to[offset + 1] = (byte) (value >>> 16);
+                to[offset + 2] = (byte) (value >>> 8);
+                to[offset + 3] = (byte) value;
+            } else {
+                to[offset] = (byte) value;
+                to[offset + 1] = (byte) (value >>> 8);
+                to[offset + 2] = (byte) (value >>> 16);
+                to[offset + 3] = (byte) (value >>> 24);
+            }
+            return offset + 4;
+        }
+
+        private static int putLong(final long value,
+                                   final boolean bigEndian,
+                                   final byte[] to,
+                                   final int offset) {
+            final int high = (int) (value >>> 32);
+            final int low = (int) value;
+
+            return bigEndian ?
+                putInt(low, true, to, putInt(high, true, to, offset)) :
+                putInt(high, false, to, putInt(low, false, to, offset));
+        }
+
+        /**
+         * Encodes the 8 bytes of a long, most significant first.
+         */
+        public String encodeLong(final long value) {
+            final char[] chars = new char[this.fixedLength(8)];
+            this.encodeLong(value, chars, 0);
+            return new String(chars);
+        }
+
+        /**
+         * Encodes the 8 bytes of a long, most significant first, into the char array, returning the number of chars
+         * written.
+         */
+        public int encodeLong(final long value,
+                              final char[] to,
+                              final int offset) {
+            Objects.requireNonNull(to, "to");
+            final int length = this.fixedLength(8);
+            checkSlice(offset, length, to.length);
+
+            if (length > this.maxLineLength && this.maxLineLength > 0) {
+                return this.encode(longsToBytes(value), 0, 8, to, offset);
+            }
+
+            int t = this.writeGroup((int) (value >>> 40) & 0xffffff, to, offset);
+            t = this.writeGroup((int) (value >>> 16) & 0xffffff, to, t);
+            this.write2((int) value & 0xffff, to, t);
+
+            return length;
+        }
+
+        /**
+         * Encodes the 16 bytes of two longs, high first, which is the same as encoding the 16 bytes of a UUID using
+         * its most and least significant bits.
+         */
+        public String encodeLongs(final long high,
+                                  final long low) {
+            final char[] chars = new char[this.fixedLength(16)];
+            this.encodeLongs(high, low, chars, 0);
+            return new String(chars);
+        }
+
+        /**
+         * Encodes the 16 bytes of two longs, high first, into the char array, returning the number of chars written.
+         */
+        public int encodeLongs(final long high,
+                               final long low,
+                               final char[] to,
+                               final int offset) {
+            Objects.requireNonNull(to, "to");
+            final int length = this.fixedLength(16);
+            checkSlice(offset, length, to.length);
+
+            if (length > this.maxLineLength && this.maxLineLength > 0) {
+                return this.encode(longsToBytes(high, low), 0, 16, to, offset);
+            }
+
+            int t = this.writeGroup((int) (high >>> 40) & 0xffffff, to, offset);
+            t = this.writeGroup((int) (high >>> 16) & 0xffffff, to, t);
+            t = this.writeGroup(((int) high & 0xffff) << 8 | (int) (low >>> 56) & 0xff, to, t);
+            t = this.writeGroup((int) (low >>> 32) & 0xffffff, to, t);
+            t = this.writeGroup((int) (low >>> 8) & 0xffffff, to, t);
+            this.write1((int) low & 0xff, to, t);
+
+            return length;
+        }
+
+        /**
+         * The encoded length of a short fixed number of bytes.
+         */
+        private int fixedLength(final int byteCount) {
+            return (int) this.encodedLength(byteCount);
+        }
+
+        private static byte[] longsToBytes(final long... values) {
+            final byte[] bytes = new byte[values.length * 8];
+
+            int i = 0;
+            for (final long value : values) {
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    bytes[i++] = (byte) (value >>> shift);
+                }
+            }
+
+            return bytes;
+        }
+
+        /**
+         * Writes the 4 characters for a 24 bit group.
+         */
+        private int writeGroup(final int bits,
+                               final char[] to,
+                               final int offset) {
+            to[offset] = this.character(bits >>> 18);
+            to[offset + 1] = this.character((bits >>> 12) & MASK);
+            to[offset + 2] = this.character((bits >>> 6) & MASK);
+            to[offset + 3] = this.character(bits & MASK);
+            return offset + 4;
+        }
+
+        /**
+         * Returns the character for a 6 bit value, computed by {@link #constantTimeChar(int, int, int)} when constant
+         * time, otherwise read from the alphabet.
+         */
+        private char character(final int value) {
+            final char[] alphabet = this.alphabet;
+
+            return this.constantTime ?
+                (char) constantTimeChar(value, alphabet[62], alphabet[63]) :
+                alphabet[value];
+        }
+
+        /**
+         * Writes the 2 characters and any padding for a final single byte.
+         */
+        private void write1(final int value,
+                            final char[] to,
+                            final int offset) {
+            to[offset] = this.character(value >>> 2);
+            to[offset + 1] = this.character((value & 0x3) << 4);
+
+            if (Base64EncoderPadding.WITH == this.padding) {
+                to[offset + 2] = (char) this.pad;
+                to[offset + 3] = (char) this.pad;
+            }
+        }
+
+        /**
+         * Writes the 3 characters and any padding for a final two bytes.
+         */
+        private void write2(final int value,
+                            final char[] to,
+                            final int offset) {
+            to[offset] = this.character(value >>> 10);
+            to[offset + 1] = this.character((value >>> 4) & MASK);
+            to[offset + 2] = this.character((value & 0xf) << 2);
+
+            if (Base64EncoderPadding.WITH == this.padding) {
+                to[offset + 3] = (char) this.pad;
+            }
+        }
+
+        /**
+         * Encodes the text converted to bytes using the given charset, giving the same result as
+         * {@link String#getBytes(Charset)}. The text is converted a chunk at a time by a {@code CharsetEncoder} and
+         * each chunk is then encoded, so the bytes of the entire text are never held in a byte array.
+         */
+        public String encodeString(final CharSequence text,
+                                   final Charset charset) {
+            Objects.requireNonNull(text, "text");
+            Objects.requireNonNull(charset, "charset");
+
+            final byte[] chunk = new byte[8 * CHUNK_LENGTH];
+            final Base64CharsetEncoder bytes = Base64CharsetEncoder.with(text, charset, chunk);
+            return null != bytes ?
+                this.encodeString(bytes, chunk) :
+                this.encodeCodePoints(text, charset);
+        }
+
+        private String encodeString(final Base64CharsetEncoder bytes,
+                                    final byte[] chunk) {
+            byte[] to = new byte[toArrayLength(this.encodedLength(bytes.estimatedLength()))];
+
+            int lineGroups = 0;
+            long total = 0;
+            int c = 0;
+            int t = 0;
+
+            for (; ; ) {
+                final int end = bytes.read(c);
+                total += end - c;
+                c = end;
+
+                // only the last chunk may end with a partial group, which is encoded with any padding
+                final boolean last = bytes.isDone();
+                final int groupsLength = last ?
+                    c :
+                    c - c % 3;
+
+                final int required = toArrayLength(this.encodedLength(total));
+                if (to.length < required) {
+                    to = Arrays.copyOf(to, toArrayLength(Math.max(required, 2L * to.length)));
+                }
+
+                t = this.encode0(chunk, 0, groupsLength, to, t, lineGroups);
+                if (last) {
+                    break;
+                }
+                lineGroups = this.lineGroups(lineGroups, groupsLength / 3);
+
+                c -= groupsLength;
+                System.arraycopy(chunk, groupsLength, chunk, 0, c);
+            }
+
+            return new String(to, 0, t, StandardCharsets.ISO_8859_1);
+        }
+
+        /**
+         * Used by J2CL and GWT, which have no {@code CharsetEncoder}. UTF-8 and ISO-8859-1, the only
+         * charsets they support, are converted a few characters at a time into a small chunk which is then encoded.
+         * Any other charset uses {@link String#getBytes(Charset)}.
+         */
+        String encodeCodePoints(final CharSequence text,
+                                final Charset charset) {
+            final boolean utf8 = StandardCharsets.UTF_8.equals(charset);
+            if (false == utf8 && false == StandardCharsets.ISO_8859_1.equals(charset)) {
+                return this.encodeToString(text.toString().getBytes(charset));
+            }
+
+            final int length = text.length();
+            final byte[] to = new byte[toArrayLength(this.encodedLength(byteLength(text, utf8)))];
+            // room for the last code point which may take 4 bytes
+            final byte[] chunk = new byte[CHUNK_LENGTH + 3];
+
+            int lineGroups = 0;
+            int c = 0;
+            int t = 0;
+            int i = 0;
+
+            while (i < length) {
+                while (i < length && c < CHUNK_LENGTH) {
+                    final int codePoint = codePoint(text, i, length);
+                    c = putCodePoint(codePoint, utf8, chunk, c);
+                    i += Character.charCount(codePoint);
+                }
+
+                // encode whole groups, leaving the bytes of a partial group for the next chunk.
+                final int groupsLength = c - c % 3;
+                t = this.encode0(chunk, 0, groupsLength, to, t, lineGroups);
+                lineGroups = this.lineGroups(lineGroups, groupsLength / 3);
+
+                c -= groupsLength;
+                System.arraycopy(chunk, groupsLength, chunk, 0, c);
+            }
+
+            this.encode0(chunk, 0, c, to, t, lineGroups);
+            return new String(to, StandardCharsets.ISO_8859_1);
+        }
+
+        /**
+         * Returns the number of bytes the text takes in UTF-8 or ISO-8859-1.
+         */
+        private static long byteLength(final CharSequence text,
+                                       final boolean utf8) {
+            final int length = text.length();
+            long byteLength = 0;
+            int i = 0;
+
+            while (i < length) {
+                final int codePoint = codePoint(text, i, length);
+                byteLength += utf8 ?
+                    codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4 :
+                    1;
+                i += Character.charCount(codePoint);
+            }
+
+            return byteLength;
+        }
+
+        /**
+         * Returns the code point at the given index, replacing a surrogate without its pair with '?' just like
+         * {@link String#getBytes(Charset)}.
+         */
+        private static int codePoint(final CharSequence text,
+                                     final int i,
+                                     final int length) {
+            final char c = text.charAt(i);
+            final int codePoint;
+
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+            } else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+                codePoint = '?';
+            } else {
+                codePoint = c;
+            }
+
+            return codePoint;
+        }
+
+        /**
+         * Writes the UTF-8 or ISO-8859-1 bytes of the code point, where ISO-8859-1 replaces code points after 0xff
+         * with '?'. Returns the offset after the last byte.
+         */
+        private static int putCodePoint(final int codePoint,
+                                        final boolean utf8,
+                                        final byte[] to,
+                                        final int offset) {
+            int t = offset;
+
+            if (codePoint < 0x80) {
+                to[t++] = (byte) codePoint;
+            } else if (false == utf8) {
+                to[t++] = (byte) (codePoint <= 0xff ? codePoint : '?');
+            } else if (codePoint < 0x800) {
+                to[t++] = (byte) (0xc0 | codePoint >>> 6);
+                to[t++] = (byte) (0x80 | codePoint & 0x3f);
+            } else if (codePoint < 0x10000) {
+                to[t++] = (byte) (0xe0 | codePoint >>> 12);
+                to[t++] = (byte) (0x80 | codePoint >>> 6 & 0x3f);
+                to[t++] = (byte) (0x80 | codePoint & 0x3f);
+            } else {
+                to[t++] = (byte) (0xf0 | codePoint >>> 18);
+                to[t++] = (byte) (0x80 | codePoint >>> 12 & 0x3f);
+                to[t++] = (byte) (0x80 | codePoint >>> 6 & 0x3f);
+                to[t++] = (byte) (0x80 | codePoint & 0x3f);
+            }
+
+            return t;
+        }
+
+        /**
+         * Returns a {@link CharSequence} view of the encoded bytes, computing each character on demand when read,
+         * rather than encoding all bytes up front. The bytes are not copied.
+         */
+        public CharSequence encodeToCharSequence(final byte[] from) {
+            Objects.requireNonNull(from, "from");
+
+            return Base64EncoderCharSequence.with(
+                from,
+                this.alphabet,
+                this.pad,
+                this.maxLineLength,
+                this.separator,
+                toArrayLength(this.encodedLength(from.length)),
+                this.constantTime
+            );
+        }
+
+        /**
+         * Returns an {@link OutputStream} that encodes the bytes written to it, writing the characters to the given
+         * {@link Writer}. Bytes are encoded a chunk of whole lines at a time, so memory stays constant, and the last
+         * partial chunk and any padding are only written when the stream is closed, which also closes the
+         * {@link Writer}.
+         */
+        public OutputStream wrap(final Writer writer) {
+            Objects.requireNonNull(writer, "writer");
+
+            return Base64EncoderOutputStream.with(
+                this,
+                this.maxLineLength > 0 ?
+                    this.groupsPerLine() * 3 :
+                    0,
+                this.separator,
+                writer
+            );
+        }
+
+        /**
+         * Returns an {@link EncoderCache} that remembers the Strings encoded by this encoder, holding at most maxSize
+         * cached bytes and encoded characters.
+         */
+        public EncoderCache cache(final long maxSize) {
+            if (maxSize < 0) {
+                throw new IllegalArgumentException("Invalid max size " + maxSize + " < 0");
+            }
+            return new EncoderCache(this, maxSize);
+        }
+
+        /**
+         * Returns an {@link Encoder} that gives the {@link Metrics} every encode, or with null an encoder that reports
+         * nothing. Copies made by {@link #withoutPadding()} and {@link #constantTime()} keep the metrics.
+         */
+        public Encoder withMetrics(final Metrics metrics) {
+            return this.metrics == metrics ?
+                this :
+                new Encoder(this.alphabet, this.pad, this.maxLineLength, this.separator, this.padding, this.constantTime, metrics);
+        }
+
+        public Encoder withoutPadding() {
+            return Base64EncoderPadding.WITHOUT == this.padding ?
+                this :
+                new Encoder(this.alphabet, this.pad, this.maxLineLength, this.separator, Base64EncoderPadding.WITHOUT, this.constantTime, this.metrics);
+        }
+
+        /**
+         * Returns an {@link Encoder} that maps each 6 bit value to its character with arithmetic instead of a table
+         * lookup, so the time taken and the memory read do not depend on the bytes, for encoding secrets such as keys.
+         * Every method of the returned encoder, including {@link #encodeLong(long)} and
+         * {@link #encodeToCharSequence(byte[])}, computes characters this way. It is slower, so should only be used
+         * for secrets. Only the standard and URL and filename safe alphabets are supported, with or without lines and
+         * padding.
+         */
+        public Encoder constantTime() {
+            if (RFC4648_ALPHABET_CHARS != this.alphabet && RFC4648_URLSAFE_ALPHABET != this.alphabet) {
+                throw new UnsupportedOperationException("Constant time encoding is not supported by " + this);
+            }
+            return this.constantTime ?
+                this :
+                new Encoder(this.alphabet, this.pad, this.maxLineLength, this.separator, this.padding, true, this.metrics);
+        }
+
+        @Override
+        public String toString() {
+            final String toString;
+
+            if (RFC4648_ALPHABET_CHARS == this.alphabet) {
+                final int max = this.maxLineLength;
+                if (-1 == max) {
+                    toString = "RFC4648" + this.padding;
+                } else {
+                    toString = "RFC2045" + this.padding + " lineWidth=" + max;
+                }
+            } else if (RFC4648_URLSAFE_ALPHABET == this.alphabet) {
+                toString = "RFC4648 URLSAFE" + this.padding;
+            } else {
+                toString = new String(this.alphabet) + " " + quote((char) this.pad) + this.padding;
+            }
+
+            return this.constantTime ?
+                toString + " CONSTANT TIME" :
+                toString;
+        }
+    }
+
+    /**
+     * Remembers the Strings encoded by an {@link Encoder}, so the same bytes or key are only encoded once while they
+     * remain cached. Bytes are matched by their hash and then compared in full, so a collision never returns the
+     * encoding of other bytes, looked up with a probe key reused by each thread so a lookup allocates nothing. Hits
+     * take no locks, they read a {@link ConcurrentHashMap} and mark the entry as used if it is not already.
+     * Misses encode outside any lock, then add the entry and evict others using CLOCK, an approximation of least
+     * recently used that gives each used entry a second chance, until everything fits within the maximum size.
+     */
+    public final static class EncoderCache {
+
+        private EncoderCache(final Encoder encoder,
+                             final long maxSize) {
+            super();
+            this.encoder = encoder;
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * Returns the encoding of the bytes, which are copied when they are cached.
+         */
+        public String encodeToString(final byte[] from) {
+            Objects.requireNonNull(from, "from");
+
+            final int hash = Arrays.hashCode(from);
+            final BytesKey probe = PROBE.get();
+            final Entry entry;
+            try {
+                entry = this.entries.get(probe.set(from, hash));
+            } finally {
+                probe.set(null, 0);
+            }
+            return null != entry ?
+                this.hit(entry) :
+                this.miss(null, from, hash);
+        }
+
+        /**
+         * Returns the encoding cached for the key, only encoding the bytes when the key is not cached. The caller must
+         * always give the same bytes with the same key. The bytes are not copied or counted in the size.
+         */
+        public String encodeToString(final Object key,
+                                     final byte[] from) {
+            Objects.requireNonNull(key, "key");
+            Objects.requireNonNull(from, "from");
+
+            final Entry entry = this.entries.get(key);
+            return null != entry ?
+                this.hit(entry) :
+                this.miss(key, from, 0);
+        }
+
+        private String hit(final Entry entry) {
+            // only written once per pass of the clock, so hot entries are read by every thread but not written
+            if (!entry.used) {
+                entry.used = true;
+            }
+            this.hits.increment();
+            return entry.encoded;
+        }
+
+        /**
+         * Encodes the bytes and caches the encoding if it fits, keyed by a copy of the bytes when the key is null.
+         */
+        private String miss(final Object key,
+                            final byte[] from,
+                            final int hash) {
+            this.misses.increment();
+
+            final String encoded = this.encoder.encodeToString(from);
+            final long size = (null == key ? from.length : 0) + encoded.length();
+
+            if (size <= this.maxSize) {
+                final Entry entry = new Entry(
+                    null != key ?
+                        key :
+                        new BytesKey(from.clone(), hash),
+                    encoded,
+                    size
+                );
+
+                final ArrayDeque<Entry> clock = this.clock;
+                synchronized (clock) {
+                    if (null == this.entries.putIfAbsent(entry.key, entry)) {
+                        clock.addLast(entry);
+                        this.size += size;
+                        this.evict(clock);
+                    }
+                }
+            }
+
+            return encoded;
+        }
+
+        /**
+         * Takes entries from the head of the clock until the size fits, a used entry has its flag cleared and goes to
+         * the tail instead of being evicted, unless every entry has already had its second chance.
+         */
+        private void evict(final ArrayDeque<Entry> clock) {
+            int chances = clock.size();
+
+            while (this.size > this.maxSize) {
+                final Entry entry = clock.removeFirst();
+
+                if (entry.used && chances > 0) {
+                    entry.used = false;
+                    clock.addLast(entry);
+                    chances--;
+                } else {
+                    this.entries.remove(entry.key);
+                    this.size -= entry.size;
+                    this.evictions.increment();
+                }
+            }
+        }
+
+        public long hits() {
+            return this.hits.sum();
+        }
+
+        public long misses() {
+            return this.misses.sum();
+        }
+
+        public long evictions() {
+            return this.evictions.sum();
+        }
+
+        public int entries() {
+            return this.entries.size();
+        }
+
+        /**
+         * The cached bytes and encoded characters.
+         */
+        public long size() {
+            synchronized (this.clock) {
+                return this.size;
+            }
+        }
+
+        public long maxSize() {
+            return this.maxSize;
+        }
+
+        private final Encoder encoder;
+        private final long maxSize;
+
+        private final ConcurrentHashMap<Object, Entry> entries = new ConcurrentHashMap<>();
+
+        /**
+         * The key given to lookups by bytes, which holds the bytes only until the lookup returns.
+         */
+        private final static Base64ThreadLocal<BytesKey> PROBE = Base64ThreadLocal.with(() -> new BytesKey(null, 0));
+
+        /**
+         * The entries in the order they are visited when evicting, which is also the lock for any change.
+         */
+        private final ArrayDeque<Entry> clock = new ArrayDeque<>();
+
+        /**
+         * Guarded by {@link #clock}.
+         */
+        private long size;
+
+        private final Base64Counter hits = Base64Counter.with();
+        private final Base64Counter misses = Base64Counter.with();
+        private final Base64Counter evictions = Base64Counter.with();
+
+        @Override
+        public String toString() {
+            return this.encoder +
+                " hits " + this.hits() +
+                " misses " + this.misses() +
+                " evictions " + this.evictions() +
+                " entries " + this.entries() +
+                " size " + this.size() + "/" + this.maxSize;
+        }
+
+        private final static class Entry {
+
+            Entry(final Object key,
+                  final String encoded,
+                  final long size) {
+                super();
+                this.key = key;
+                this.encoded = encoded;
+                this.size = size;
+            }
+
+            final Object key;
+            final String encoded;
+            final long size;
+
+            /**
+             * Set by the first hit after the clock clears it, without a lock, volatile so the clock sees hits by other
+             * threads.
+             */
+            volatile boolean used = true;
+        }
+
+        /**
+         * A key holding bytes, which are only equal to the same bytes. Keys in the cache are never changed, only the
+         * probe given to lookups is {@link #set(byte[], int)}.
+         */
+        private final static class BytesKey {
+
+            BytesKey(final byte[] bytes,
+                     final int hash) {
+                super();
+                this.bytes = bytes;
+                this.hash = hash;
+            }
+
+            @Override
+            public int hashCode() {
+                return this.hash;
+            }
+
+            @Override
+            public boolean equals(final Object other) {
+                return this == other ||
+                    other instanceof BytesKey && this.equals0((BytesKey) other);
+            }
+
+            private boolean equals0(final BytesKey other) {
+                return this.hash == other.hash &&
+                    Arrays.equals(this.bytes, other.bytes);
+            }
+
+            BytesKey set(final byte[] bytes,
+                         final int hash) {
+                this.bytes = bytes;
+                this.hash = hash;
+                return this;
+            }
+
+            private byte[] bytes;
+            private int hash;
+        }
+    }
+
+    public static class Decoder {
+
+        final static Base64Alphabet RFC4648_TABLES = Base64Alphabet.builtIn(RFC4648_ALPHABET_CHARS, PAD);
+
+        final static Decoder RFC4648 = new Decoder(RFC4648_TABLES.lookup, RFC4648_TABLES.swar, PAD, false, -1, -1, "RFC4648");
+        final static Decoder RFC2045 = new Decoder(RFC4648_TABLES.lookup, RFC4648_TABLES.swar, PAD, false, -1, -1, "RFC2045");
+
+        /**
+         * Holds the URL and filename safe decoder, so its tables are only built on first use.
+         */
+        static final class UrlSafe {
+            final static Base64Alphabet TABLES = Base64Alphabet.builtIn(RFC4648_URLSAFE_ALPHABET, PAD);
+
+            final static Decoder DECODER = new Decoder(TABLES.lookup, TABLES.swar, PAD, false, -1, -1, "RFC4648 URLSAFE");
+        }
+
+        /**
+         * Holds the constant time decoders, which are rarely used. They have no lookup table, so any method that reads
+         * the table instead of using {@link #constantTimeValue(int, int, int)} fails.
+         */
+        private static final class ConstantTime {
+            final static Decoder RFC4648 = new Decoder(null, null, PAD, false, '+', '/', "RFC4648 CONSTANT TIME");
+            final static Decoder RFC2045 = new Decoder(null, null, PAD, false, '+', '/', "RFC2045 CONSTANT TIME");
+            final static Decoder URLSAFE = new Decoder(null, null, PAD, false, '-', '_', "RFC4648 URLSAFE CONSTANT TIME");
+        }
+
+        /**
+         * Holds the decoders for either alphabet, so their tables are only built on first use. The lookup decodes both
+         * '+' and '-' to 62, and both '/' and '_' to 63.
+         */
+        private static final class Either {
+            private final static int[] LOOKUP = eitherLookup();
+            private final static Base64Swar SWAR = Base64Swar.with(LOOKUP);
+
+            private static int[] eitherLookup() {
+                final int[] lookup = RFC4648_TABLES.lookup.clone();
+                lookup['-'] = 62;
+                lookup['_'] = 63;
+                return lookup;
+            }
+
+            final static Decoder DECODER = new Decoder(LOOKUP, SWAR, PAD, false, -1, -1, "RFC4648 or RFC4648 URLSAFE");
+            final static Decoder WITHOUT_MIXING = new Decoder(LOOKUP, SWAR, PAD, true, -1, -1, "RFC4648 or RFC4648 URLSAFE without mixing");
+        }
+
+        private Decoder(final int[] lookup,
+                        final Base64Swar swar,
+                        final byte pad,
+                        final boolean withoutMixing,
+                        final int plus,
+                        final int slash,
+                        final String toString) {
+            super();
+            this.lookup = lookup;
+            this.swar = swar;
+            this.pad = pad;
+            this.withoutMixing = withoutMixing;
+            this.plus = plus;
+            this.slash = slash;
+            this.toString = toString;
+            this.metrics = null;
+            this.variant = this;
+        }
+
+        /**
+         * Copies a decoder giving it {@link Metrics}.
+         */
+        private Decoder(final Decoder decoder,
+                        final Metrics metrics) {
+            super();
+            this.lookup = decoder.lookup;
+            this.swar = decoder.swar;
+            this.pad = decoder.pad;
+            this.withoutMixing = decoder.withoutMixing;
+            this.plus = decoder.plus;
+            this.slash = decoder.slash;
+            this.toString = decoder.toString;
+            this.metrics = metrics;
+            this.variant = decoder.variant;
+        }
+
+        /**
+         * Returns a {@link Decoder} that gives the {@link Metrics} every decode and failure, or with null a decoder that
+         * reports nothing. Copies made by {@link #withoutMixing()} and {@link #constantTime()} keep the metrics.
+         */
+        public Decoder withMetrics(final Metrics metrics) {
+            return this.metrics == metrics ?
+                this :
+                null == metrics ?
+                    this.variant :
+                    new Decoder(this.variant, metrics);
+        }
+
+        /**
+         * The table decoder of a constant time decoder, which decodes invalid input again to find the failure.
+         */
+        private Decoder table() {
+            final Decoder variant = this.variant;
+            return ConstantTime.RFC4648 == variant ?
+                RFC4648 :
+                ConstantTime.RFC2045 == variant ?
+                    RFC2045 :
+                    UrlSafe.DECODER;
+        }
+
+        /**
+         * Returns an {@link InputStream} that decodes the characters read from the given {@link Reader}. Characters are
+         * decoded a chunk at a time, so memory stays constant, and an invalid encoding fails with an
+         * {@link IOException} holding the same message as {@link #decode(String)}, with offsets counted from the start
+         * of the {@link Reader}. Closing the stream closes the {@link Reader}.
+         */
+        public InputStream wrap(final Reader reader) {
+            Objects.requireNonNull(reader, "reader");
+
+            return Base64DecoderInputStream.with(
+                this,
+                this.pad,
+                this.isMime(),
+                this.withoutMixing,
+                reader
+            );
+        }
+
+        /**
+         * Returns a {@link Decoder} that also fails if the input uses characters from both the standard and the URL
+         * and filename safe alphabets. Decoders that only accept a single alphabet are returned unchanged.
+         */
+        public Decoder withoutMixing() {
+            return Either.DECODER == this.variant ?
+                Either.WITHOUT_MIXING.withMetrics(this.metrics) :
+                this;
+        }
+
+        /**
+         * Returns a {@link Decoder} that computes the value of each character with arithmetic instead of a table
+         * lookup, and checks for invalid characters once at the end, so the time taken and the memory read do not
+         * depend on the characters of valid input, for decoding secrets such as keys. Invalid input is decoded again
+         * by the table decoder to report the same failure. The returned decoder has no lookup table, so every method
+         * including {@link #decodedLength(CharSequence)} and {@link #decodeLong(CharSequence)} uses the arithmetic, and
+         * MIME separators are counted without reading a table. It is slower, so should only be used for secrets. Only
+         * the standard, URL and filename safe and MIME decoders are supported.
+         */
+        public Decoder constantTime() {
+            final Decoder variant = this.variant;
+            final Decoder decoder;
+
+            if (RFC4648 == variant) {
+                decoder = ConstantTime.RFC4648.withMetrics(this.metrics);
+            } else if (RFC2045 == variant) {
+                decoder = ConstantTime.RFC2045.withMetrics(this.metrics);
+            } else if (UrlSafe.DECODER == variant) {
+                decoder = ConstantTime.URLSAFE.withMetrics(this.metrics);
+            } else if (-1 != this.plus) {
+                decoder = this;
+            } else {
+                throw new UnsupportedOperationException("Constant time decoding is not supported by " + this);
+            }
+
+            return decoder;
+        }
+
+        /**
+         * <pre>
+         * 9.  Illustrations and Examples
+         *
+         *    To translate between binary and a base encoding, the input is stored
+         *    in a structure, and the output is extracted.  The case for base 64 is
+         *    displayed in the following figure, borrowed from [5].
+         *
+         *             +--first octet--+-second octet--+--third octet--+
+         *             |7 6 5 4 3 2 1 0|7 6 5 4 3 2 1 0|7 6 5 4 3 2 1 0|
+         *             +-----------+---+-------+-------+---+-----------+
+         *             |5 4 3 2 1 0|5 4 3 2 1 0|5 4 3 2 1 0|5 4 3 2 1 0|
+         *             +--1.index--+--2.index--+--3.index--+--4.index--+
+         * </pre>
+         */
+        public byte[] decode(final byte[] from) {
+            Objects.requireNonNull(from, "from");
+
+            final Metrics metrics = this.metrics;
+            final int length = from.length;
+            if (null == metrics && length < Base64Events.THRESHOLD) {
+                return this.decode1(from);
+            }
+
+            final Object event = Base64Events.begin(length);
+            final long start = System.nanoTime();
+            final byte[] to = this.decode1(from);
+            this.decoded(metrics, event, "decode", length, to.length, start);
+            return to;
+        }
+
+        private byte[] decode1(final byte[] from) {
+            final int fromLength = from.length;
+            final byte[] to = new byte[this.decodeArrayLength(from, null, fromLength)];
+            final int length = this.decodeAll(from, null, fromLength, to, this.engine(fromLength));
+
+            return to.length == length ?
+                to :
+                Arrays.copyOf(to, length);
+        }
+
+        /**
+         * Decodes the encoded bytes within the slice into the same array, with the decoded bytes starting at offset,
+         * returning the number of decoded bytes. Decoding happens front to back and never overtakes the encoded
+         * bytes still to be read, because every decoded byte needs at least one encoded character.
+         */
+        public int decodeInPlace(final byte[] buffer,
+                                 final int offset,
+                                 final int length) {
+            Objects.requireNonNull(buffer, "buffer");
+            checkSlice(offset, length, buffer.length);
+
+            return this.decode0(buffer, offset, offset + length, buffer, offset) - offset;
+        }
+
+        /**
+         * Decodes only the decoded bytes between from and to without decoding the groups before or after them.
+         * RFC4648 and URLSAFE compute the offsets of the groups directly, MIME counts alphabet characters to find them,
+         * see {@link #decodeRange(byte[], int, int, int, int)} when the line length is known.
+         */
+        public byte[] decodeRange(final byte[] encoded,
+                                  final int from,
+                                  final int to) {
+            Objects.requireNonNull(encoded, "encoded");
+            checkRange(from, to);
+            if (from == to) {
+                return new byte[0];
+            }
+
+            final int length = encoded.length;
+            final int groupStart = from / 3;
+            final int groupEnd = groupEnd(to);
+
+            final int start;
+            final int end;
+
+            if (this.isMime()) {
+                start = this.skipAlphabet(encoded, 0, length, groupStart * 4L);
+                end = this.skipAlphabet(encoded, start, length, (groupEnd - groupStart) * 4L);
+            } else {
+                start = (int) Math.min(groupStart * 4L, length);
+                end = (int) Math.min(groupEnd * 4L, length);
+            }
+
+            return this.decodeRange0(encoded, start, end, from, to);
+        }
+
+        /**
+         * Decodes only the decoded bytes between from and to, when the encoded characters are broken into lines of
+         * a known length each followed by a separator, such as those produced by {@link Encoder#RFC2045}.
+         */
+        public byte[] decodeRange(final byte[] encoded,
+                                  final int from,
+                                  final int to,
+                                  final int lineLength,
+                                  final int separatorLength) {
+            Objects.requireNonNull(encoded, "encoded");
+            checkRange(from, to);
+            if (from == to) {
+                return new byte[0];
+            }
+            checkLine(lineLength, separatorLength);
+
+            final int length = encoded.length;
+            final int groupStart = from / 3;
+            final int groupEnd = groupEnd(to);
+
+            return this.decodeRange0(
+                encoded,
+                (int) Math.min(groupOffset(groupStart, lineLength, separatorLength), length),
+                (int) Math.min(groupOffset(groupEnd - 1, lineLength, separatorLength) + 4, length),
+                from,
+                to
+            );
+        }
+
+        /**
+         * Decodes only the decoded bytes between from and to, copying only the encoded characters for the groups
+         * holding them.
+         */
+        public byte[] decodeRange(final CharSequence encoded,
+                                  final int from,
+                                  final int to) {
+            Objects.requireNonNull(encoded, "encoded");
+            checkRange(from, to);
+            if (from == to) {
+                return new byte[0];
+            }
+
+            final int length = encoded.length();
+            final int groupStart = from / 3;
+            final int groupEnd = groupEnd(to);
+
+            final int start;
+            final int end;
+
+            if (this.isMime()) {
+                start = this.skipAlphabet(encoded, 0, length, groupStart * 4L);
+                end = this.skipAlphabet(encoded, start, length, (groupEnd - groupStart) * 4L);
+            } else {
+                start = (int) Math.min(groupStart * 4L, length);
+                end = (int) Math.min(groupEnd * 4L, length);
+            }
+
+            final byte[] bytes = latin1(encoded, start, end);
+            return this.decodeRange0(bytes, 0, bytes.length, from, to);
+        }
+
+        /**
+         * Decodes only the decoded bytes between from and to, when the encoded characters are broken into lines of
+         * a known length each followed by a separator.
+         */
+        public byte[] decodeRange(final CharSequence encoded,
+                                  final int from,
+                                  final int to,
+                                  final int lineLength,
+                                  final int separatorLength) {
+            Objects.requireNonNull(encoded, "encoded");
+            checkRange(from, to);
+            if (from == to) {
+                return new byte[0];
+            }
+            checkLine(lineLength, separatorLength);
+
+            final int length = encoded.length();
+            final int groupStart = from / 3;
+            final int groupEnd = groupEnd(to);
+
+            final byte[] bytes = latin1(
+                encoded,
+                (int) Math.min(groupOffset(groupStart, lineLength, separatorLength), length),
+                (int) Math.min(groupOffset(groupEnd - 1, lineLength, separatorLength) + 4, length)
+            );
+            return this.decodeRange0(bytes, 0, bytes.length, from, to);
+        }
+
+        private static void checkRange(final int from,
+                                       final int to) {
+            if (from < 0 || to < from) {
+                throw new IndexOutOfBoundsException("Invalid range " + from + ".." + to);
+            }
+        }
+
+        private static void checkLine(final int lineLength,
+                                      final int separatorLength) {
+            if (lineLength <= 0 || 0 != lineLength % 4) {
+                throw new IllegalArgumentException("Invalid line length " + lineLength + " not a positive multiple of 4");
+            }
+            if (separatorLength < 0) {
+                throw new IllegalArgumentException("Invalid separator length " + separatorLength + " < 0");
+            }
+        }
+
+        /**
+         * The group after the group holding the last decoded byte before to.
+         */
+        private static int groupEnd(final int to) {
+            return to / 3 + (0 == to % 3 ? 0 : 1);
+        }
+
+        /**
+         * The offset of the first character of the given group.
+         */
+        private static long groupOffset(final int group,
+                                        final int lineLength,
+                                        final int separatorLength) {
+            final int groupsPerLine = lineLength / 4;
+            return (long) (group / groupsPerLine) * (lineLength + separatorLength) + group % groupsPerLine * 4;
+        }
+
+        private byte[] decodeRange0(final byte[] encoded,
+                                    final int start,
+                                    final int end,
+                                    final int from,
+                                    final int to) {
+            final int count = to - from;
+            final byte[] decoded = new byte[decodedLength0(end - start)];
+            final int length = this.decode0(encoded, start, end, decoded, 0);
+
+            final int skip = from % 3;
+            if (length < skip + count) {
+                throw new IndexOutOfBoundsException("Invalid range " + from + ".." + to + " past end of decoded");
+            }
+
+            return 0 == skip && decoded.length == count ?
+                decoded :
+                Arrays.copyOfRange(decoded, skip, skip + count);
+        }
+
+        /**
+         * Returns the offset after skipping the given number of alphabet characters, or end if there are fewer.
+         */
+        private int skipAlphabet(final byte[] encoded,
+                                 final int start,
+                                 final int end,
+                                 final long count) {
+            if (-1 != this.plus) {
+                return this.skipConstantTime(encoded, null, start, end, count);
+            }
+
+            final int[] lookup = this.lookup;
+            final Base64Swar swar = this.swar;
+
+            long remaining = count;
+            int i = start;
+
+            while (remaining > 0 && i < end) {
+                if (null != swar && remaining >= 8 && i + 8 <= end && swar.isValid(Base64Swar.load(encoded, i))) {
+                    remaining -= 8;
+                    i += 8;
+                    continue;
+                }
+
+                if (-1 != lookup[encoded[i] & 0xff]) {
+                    remaining--;
+                }
+                i++;
+            }
+
+            return i;
+        }
+
+        /**
+         * Returns the offset after skipping the given number of alphabet characters, or end if there are fewer.
+         */
+        private int skipAlphabet(final CharSequence encoded,
+                                 final int start,
+                                 final int end,
+                                 final long count) {
+            if (-1 != this.plus) {
+                return this.skipConstantTime(null, encoded, start, end, count);
+            }
+
+            final int[] lookup = this.lookup;
+            final Base64Swar swar = this.swar;
+
+            long remaining = count;
+            int i = start;
+
+            while (remaining > 0 && i < end) {
+                if (null != swar && remaining >= 8 && i + 8 <= end && swar.isValid(Base64Swar.load(encoded, i))) {
+                    remaining -= 8;
+                    i += 8;
+                    continue;
+                }
+
+                if (-1 != value(lookup, encoded.charAt(i))) {
+                    remaining--;
+                }
+                i++;
+            }
+
+            return i;
+        }
+
+        /**
+         * Copies the chars between start and end to bytes, replacing chars that are not ISO-8859-1 with '?' just like
+         * {@link #decode(String)}.
+         */
+        private static byte[] latin1(final CharSequence chars,
+                                     final int start,
+                                     final int end) {
+            final byte[] bytes = new byte[end - start];
+
+            for (int i = start; i < end; i++) {
+                final char c = chars.charAt(i);
+                bytes[i - start] = (byte) (c <= 0xff ? c : '?');
+            }
+
+            return bytes;
+        }
+
+        /**
+         * Returns true if the encoded bytes would decode without error, performing the same checks as
+         * {@link #decode(byte[])} without writing any decoded bytes.
+         */
+        public boolean isValid(final byte[] encoded) {
+            return -1 == this.validate(encoded);
+        }
+
+        /**
+         * Validates the encoded bytes returning -1 if they are valid or the offset of the first invalid byte. The
+         * length is returned when the last group is incomplete.
+         */
+        public int validate(final byte[] encoded) {
+            Objects.requireNonNull(encoded, "encoded");
+
+            return this.validate(encoded, 0, encoded.length);
+        }
+
+        /**
+         * Validates the encoded bytes within the slice returning -1 if they are valid or the offset of the first
+         * invalid byte. The offset after the slice is returned when the last group is incomplete.
+         */
+        public int validate(final byte[] encoded,
+                            final int offset,
+                            final int length) {
+            Objects.requireNonNull(encoded, "encoded");
+            checkSlice(offset, length, encoded.length);
+
+            final int result = this.decodeOrValidate(encoded, null, offset, offset + length, null, 0);
+            return result < 0 ?
+                -result - 1 :
+                -1;
+        }
+
+        /**
+         * Returns the number of bytes the encoded bytes will decode too, assuming they are valid. For RFC4648 and
+         * URLSAFE only the trailing padding is examined, for MIME all characters are examined counting those in the
+         * alphabet.
+         */
+        public int decodedLength(final byte[] encoded) {
+            Objects.requireNonNull(encoded, "encoded");
+
+            return this.decodedLength(encoded, 0, encoded.length);
+        }
+
+        /**
+         * Returns the number of bytes the encoded bytes within the slice will decode too, assuming they are valid.
+         */
+        public int decodedLength(final byte[] encoded,
+                                 final int offset,
+                                 final int length) {
+            Objects.requireNonNull(encoded, "encoded");
+            checkSlice(offset, length, encoded.length);
+
+            final int end = offset + length;
+            final int characters;
+
+            if (this.isMime()) {
+                characters = this.countAlphabet(encoded, offset, end);
+            } else {
+                int padStart = end;
+                while (padStart > offset && this.pad == encoded[padStart - 1]) {
+                    padStart--;
+                }
+                characters = padStart - offset;
+            }
+
+            return decodedLength0(characters);
+        }
+
+        /**
+         * Returns the number of bytes the encoded characters will decode too, assuming they are valid.
+         */
+        public int decodedLength(final CharSequence encoded) {
+            Objects.requireNonNull(encoded, "encoded");
+
+            return this.decodedLength(encoded, 0, encoded.length());
+        }
+
+        /**
+         * Returns the number of bytes the encoded characters between start and end will decode too, assuming they
+         * are valid.
+         */
+        public int decodedLength(final CharSequence encoded,
+                                 final int start,
+                                 final int end) {
+            Objects.requireNonNull(encoded, "encoded");
+            checkSlice(start, end - start, encoded.length());
+
+            final int characters;
+
+            if (this.isMime()) {
+                characters = this.countAlphabet(encoded, start, end);
+            } else {
+                int padStart = end;
+                while (padStart > start && this.pad == encoded.charAt(padStart - 1)) {
+                    padStart--;
+                }
+                characters = padStart - start;
+            }
+
+            return decodedLength0(characters);
+        }
+
+        /**
+         * Returns the length of the array to decode into, which is exact for valid input whose only characters outside
+         * the alphabet are padding and CR LF line separators. Any other ignored characters only make it too long, in
+         * which case the decoded bytes are copied to an array of the right length.
+         */
+        private int decodeArrayLength(final byte[] from,
+                                      final CharSequence fromChars,
+                                      final int length) {
+            int end = length;
+            while (end > 0) {
+                final int c = null != from ?
+                    from[end - 1] & 0xff :
+                    fromChars.charAt(end - 1);
+                if (this.pad != c && '\r' != c && '\n' != c) {
+                    break;
+                }
+                end--;
+            }
+
+            int separators = 0;
+            int i = 0;
+
+            if (this.isMime()) {
+                if (null != from) {
+                    while (i + 8 <= end) {
+                        final long word = Base64Swar.load(from, i);
+                        separators += Long.bitCount(Base64Swar.matches(word, '\r') | Base64Swar.matches(word, '\n'));
+                        i += 8;
+                    }
+                }
+                while (i < end) {
+                    final int c = null != from ?
+                        from[i] & 0xff :
+                        fromChars.charAt(i);
+                    if ('\r' == c || '\n' == c) {
+                        separators++;
+                    }
+                    i++;
+                }
+            }
+
+            return decodedLength0(end - separators);
+        }
+
+        /**
+         * The number of bytes decoded from the given number of alphabet characters.
+         */
+        private static int decodedLength0(final int characters) {
+            return characters / 4 * 3 + characters % 4 * 3 / 4;
+        }
+
+        private int countAlphabet(final byte[] encoded,
+                                  final int start,
+                                  final int end) {
+            if (-1 != this.plus) {
+                return this.countConstantTime(encoded, null, start, end);
+            }
+
+            final int[] lookup = this.lookup;
+            final Base64Swar swar = this.swar;
+
+            int count = 0;
+            int i = start;
+
+            while (i < end) {
+                if (null != swar && i + 8 <= end && swar.isValid(Base64Swar.load(encoded, i))) {
+                    count += 8;
+                    i += 8;
+                    continue;
+                }
+
+                final int wordEnd = Math.min(i + 8, end);
+                while (i < wordEnd) {
+                    if (-1 != lookup[encoded[i] & 0xff]) {
+                        count++;
+                    }
+                    i++;
+                }
+            }
+
+            return count;
+        }
+
+        private int countAlphabet(final CharSequence encoded,
+                                  final int start,
+                                  final int end) {
+            if (-1 != this.plus) {
+                return this.countConstantTime(null, encoded, start, end);
+            }
+
+            final int[] lookup = this.lookup;
+            final Base64Swar swar = this.swar;
+
+            int count = 0;
+            int i = start;
+
+            while (i < end) {
+                if (null != swar && i + 8 <= end && swar.isValid(Base64Swar.load(encoded, i))) {
+                    count += 8;
+                    i += 8;
+                    continue;
+                }
+
+                final int wordEnd = Math.min(i + 8, end);
+                while (i < wordEnd) {
+                    if (-1 != value(lookup, encoded.charAt(i))) {
+                        count++;
+                    }
+                    i++;
+                }
+            }
+
+            return count;
+        }
+
+        /**
+         * Returns the 6 bit value of the given character or -1 if it is not in the alphabet.
+         */
+        private static int value(final int[] lookup,
+                                 final char c) {
+            return c < lookup.length ?
+                lookup[c] :
+                -1;
+        }
+
+        /**
+         * Returns the 6 bit value of the given character or -1, using {@link #constantTimeValue(int, int, int)} for
+         * constant time decoders.
+         */
+        int value(final int c) {
+            return -1 != this.plus ?
+                constantTimeValue(c, this.plus, this.slash) :
+                c < this.lookup.length ?
+                    this.lookup[c] :
+                    -1;
+        }
+
+        /**
+         * {@link #countAlphabet(byte[], int, int)} for constant time decoders, adding one for each member of the
+         * alphabet without a branch.
+         */
+        private int countConstantTime(final byte[] from,
+                                      final CharSequence fromChars,
+                                      final int start,
+                                      final int end) {
+            final int plus = this.plus;
+            final int slash = this.slash;
+
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                count += 1 + (constantTimeValue(read(from, fromChars, i), plus, slash) >> 31);
+            }
+            return count;
+        }
+
+        /**
+         * {@link #skipAlphabet(byte[], int, int, long)} for constant time decoders. Only the loop end depends on where
+         * the separators are.
+         */
+        private int skipConstantTime(final byte[] from,
+                                     final CharSequence fromChars,
+                                     final int start,
+                                     final int end,
+                                     final long count) {
+            final int plus = this.plus;
+            final int slash = this.slash;
+
+            long remaining = count;
+            int i = start;
+
+            while (remaining > 0 && i < end) {
+                remaining -= 1 + (constantTimeValue(read(from, fromChars, i), plus, slash) >> 31);
+                i++;
+            }
+
+            return i;
+        }
+
+        /**
+         * Decodes the range of encoded characters writing the decoded bytes to the given array, returning the offset
+         * after the last decoded byte, or throwing {@link IllegalArgumentException} if the encoding is invalid.
+         */
+        private int decode0(final byte[] from,
+                            final int fromStart,
+                            final int fromEnd,
+                            final byte[] to,
+                            final int toStart) {
+            return this.decode0(from, null, fromStart, fromEnd, to, toStart);
+        }
+
+        /**
+         * Decodes the range of encoded bytes or when from is null the encoded characters.
+         */
+        private int decode0(final byte[] from,
+                            final CharSequence fromChars,
+                            final int fromStart,
+                            final int fromEnd,
+                            final byte[] to,
+                            final int toStart) {
+            final int result = this.decodeOrValidate(from, fromChars, fromStart, fromEnd, to, toStart);
+            if (result < 0) {
+                throw this.invalidEncoding(from, fromChars, fromEnd, -result - 1);
+            }
+            return result;
+        }
+
+        /**
+         * Decodes the characters buffered by a {@link Base64DecoderInputStream}, where position is the offset of the
+         * first character within the stream, used for the offsets in any failure.
+         */
+        int decodeStream(final CharSequence from,
+                         final int fromEnd,
+                         final byte[] to,
+                         final long position) {
+            // mixed alphabets span chunks, so the stream finds them itself.
+            final Decoder decoder = this.withoutMixing ?
+                Either.DECODER :
+                this;
+            final int result = decoder.decodeOrValidate(null, from, 0, fromEnd, to, 0);
+            if (result < 0) {
+                throw decoder.withMetrics(this.metrics)
+                    .invalidEncoding(null, from, fromEnd, -result - 1, position);
+            }
+            return result;
+        }
+
+        /**
+         * Creates the failure for a {@link Base64DecoderInputStream} that read characters from both the standard and
+         * URL and filename safe alphabets.
+         */
+        IllegalArgumentException mixedAlphabets(final char c,
+                                                final long offset) {
+            return this.failure(
+                DecodeFailure.MIXED_ALPHABETS,
+                "Mixed alphabets got " + quote(c) + " at " + offset
+            );
+        }
+
+        /**
+         * Creates the exception for an error returned by
+         * {@link #decodeOrValidate(byte[], CharSequence, int, int, byte[], int)}. Messages are only built here, so
+         * validating never pays for them.
+         */
+        private IllegalArgumentException invalidEncoding(final byte[] from,
+                                                         final CharSequence fromChars,
+                                                         final int fromEnd,
+                                                         final int offset) {
+            return this.invalidEncoding(from, fromChars, fromEnd, offset, 0);
+        }
+
+        /**
+         * Position is added to the offset in messages, when the characters are part of a longer stream.
+         */
+        private IllegalArgumentException invalidEncoding(final byte[] from,
+                                                         final CharSequence fromChars,
+                                                         final int fromEnd,
+                                                         final int offset,
+                                                         final long position) {
+            if (-1 != this.plus) {
+                return this.table()
+                    .withMetrics(this.metrics)
+                    .invalidEncoding(from, fromChars, fromEnd, offset, position);
+            }
+
+            final DecodeFailure failure;
+            final String message;
+
+            if (fromEnd == offset) {
+                failure = DecodeFailure.TRUNCATED_GROUP;
+                message = "Invalid encoding " + MODE_OCTET_1;
+            } else {
+                final int c = read(from, fromChars, offset);
+                if (-1 == this.lookup[c]) {
+                    failure = DecodeFailure.INVALID_CHARACTER;
+                    message = "Invalid encoding got 0x" + Integer.toHexString(c) + " at " + (position + offset);
+                } else {
+                    // without mixing only fails otherwise valid input, where no character follows a pad.
+                    if (this.withoutMixing && offset > 0 && this.pad != read(from, fromChars, offset - 1)) {
+                        failure = DecodeFailure.MIXED_ALPHABETS;
+                        message = "Mixed alphabets got " + quote((char) c) + " at " + (position + offset);
+                    } else {
+                        failure = DecodeFailure.BAD_PADDING;
+                        message = "Expected pad but got " + quote((char) c) + " at " + (position + offset);
+                    }
+                }
+            }
+
+            return this.failure(failure, message);
+        }
+
+        /**
+         * Reports the failure to any {@link Metrics} and creates its exception.
+         */
+        private IllegalArgumentException failure(final DecodeFailure failure,
+                                                 final String message) {
+            final Metrics metrics = this.metrics;
+            if (null != metrics) {
+                metrics.failed(failure);
+            }
+
+            return new IllegalArgumentException(message);
+        }
+
+        /**
+         * Decodes or when to is null only validates the range of encoded characters. Whenever a group boundary is
+         * reached and 8 characters remain, they are given to the {@link Base64Swar}, only falling back to the per
+         * character table lookups for the 8 characters when they contain padding, separators or invalid characters.
+         * <br>
+         * Returns the offset after the last decoded byte, or if the encoding is invalid, the negative offset of the
+         * first bad character minus one, where the end offset means the last group is incomplete.
+         * <br>
+         * The encoded characters are read from the byte array, or when it is null from the {@link CharSequence}.
+         */
+        private int decodeOrValidate(final byte[] from,
+                                     final CharSequence fromChars,
+                                     final int fromStart,
+                                     final int fromEnd,
+                                     final byte[] to,
+                                     final int toStart) {
+            return this.decodeOrValidate(
+                from,
+                fromChars,
+                fromStart,
+                fromEnd,
+                to,
+                toStart,
+                Engine.TABLE != this.engine(fromEnd - fromStart) ?
+                    this.swar :
+                    null
+            );
+        }
+
+        /**
+         * Decodes or validates using the given {@link Base64Swar}, or when null one character at a time.
+         */
+        private int decodeOrValidate(final byte[] from,
+                                     final CharSequence fromChars,
+                                     final int fromStart,
+                                     final int fromEnd,
+                                     final byte[] to,
+                                     final int toStart,
+                                     final Base64Swar swar) {
+            if (-1 != this.plus) {
+                // decoding in place overwrites the input the table decoder would read, so it is validated first.
+                final boolean inPlace = null != to && from == to;
+                int decoded = this.decodeConstantTime(from, fromChars, fromStart, fromEnd, inPlace ? null : to, toStart);
+                if (inPlace && decoded >= 0) {
+                    decoded = this.decodeConstantTime(from, fromChars, fromStart, fromEnd, to, toStart);
+                }
+
+                // invalid input is decoded again by the table decoder, only to find the failure
+                return decoded >= 0 ?
+                    decoded :
+                    this.table().decodeOrValidate(from, fromChars, fromStart, fromEnd, to, toStart, null);
+            }
+
+            final int[] lookup = this.lookup;
+            final int pad = this.pad;
+            final boolean mime = this.isMime();
+            final int swarEnd = null != swar ?
+                fromEnd - 8 :
+                -1;
+
+            int mode = MODE_OCTET_0;
+            int previous = 0;
+            int scalarEnd = fromStart;
+            int t = toStart;
+            int i = fromStart;
+
+            while (i < fromEnd) {
+                if (MODE_OCTET_0 == mode && i >= scalarEnd && i <= swarEnd) {
+                    final long word = null != from ?
+                        Base64Swar.load(from, i) :
+                        Base64Swar.load(fromChars, i);
+
+                    if (null == to) {
+                        if (swar.isValid(word)) {
+                            t += 6;
+                            i += 8;
+                            continue;
+                        }
+                    } else {
+                        final long sextets = swar.translate(word);
+                        if (Base64Swar.INVALID != sextets) {
+                            Base64Swar.store(Base64Swar.pack(sextets), to, t);
+                            t += 6;
+                            i += 8;
+                            continue;
+                        }
+                    }
+                    scalarEnd = i + 8;
+                }
+
+                final int c = read(from, fromChars, i);
+                if (pad == c) {
+                    mode = MODE_PAD;
+                    i++;
+                    continue;
+                }
+
+                final int value = lookup[c];
+                if (-1 == value) {
+                    if (mime) {
+                        i++;
+                        continue;
+                    }
+                    return -i - 1;
+                }
+
+                // read 4 bytes encoded gives 3 decoded
+                switch (mode) {
+                    case MODE_OCTET_0:
+                        previous = value << 2;
+                        mode = MODE_OCTET_1;
+                        break;
+                    case MODE_OCTET_1:
+                        if (null != to) {
+                            to[t] = (byte) (previous | value >> 4);
+                        }
+                        t++;
+                        previous = (value & 0xf) << 4;
+                        mode = MODE_OCTET_2;
+                        break;
+                    case MODE_OCTET_2:
+                        if (null != to) {
+                            to[t] = (byte) (previous | value >> 2);
+                        }
+                        t++;
+                        previous = (value & 0x3) << 6;
+                        mode = MODE_OCTET_3;
+                        break;
+                    case MODE_OCTET_3:
+                        if (null != to) {
+                            to[t] = (byte) (previous | value);
+                        }
+                        t++;
+                        previous = 0;
+                        mode = MODE_OCTET_0;
+                        break;
+                    case MODE_PAD:
+                        return -i - 1;
+                    default:
+                        throw new IllegalStateException("Unhandled mode " + mode);
+                }
+                i++;
+            }
+
+            switch (mode) {
+                case MODE_OCTET_0:
+                case MODE_OCTET_2:
+                case MODE_OCTET_3:
+                case MODE_PAD:
+                    break;
+                case MODE_OCTET_1:
+                    return -fromEnd - 1;
+                default:
+                    throw new IllegalStateException("Unhandled mode " + mode);
+            }
+
+            if (this.withoutMixing) {
+                final int mixed = mixedAlphabets(from, fromChars, fromStart, fromEnd);
+                if (-1 != mixed) {
+                    return -mixed - 1;
+                }
+            }
+
+            return t;
+        }
+
+        /**
+         * Decodes or validates using {@link #constantTimeValue(int, int, int)}, returning -1 for invalid input or
+         * a final group of a single character. Invalid characters are remembered and only checked at the end.
+         * Groups of 4 characters are decoded without any branches, MIME instead tests each character to skip
+         * separators, which only depends on where the separators are. Trailing padding is removed first, so the
+         * branches only depend on the length and where the padding and separators are.
+         */
+        private int decodeConstantTime(final byte[] from,
+                                       final CharSequence fromChars,
+                                       final int fromStart,
+                                       final int fromEnd,
+                                       final byte[] to,
+                                       final int toStart) {
+            final int plus = this.plus;
+            final int slash = this.slash;
+            final int pad = this.pad;
+
+            int end = fromEnd;
+            if (false == this.isMime()) {
+                while (end > fromStart && pad == read(from, fromChars, end - 1)) {
+                    end--;
+                }
+            }
+
+            // invalid input may decode past the end of an array sized for valid input, the length is not secret.
+            final int toEnd = null != to ?
+                to.length :
+                0;
+            int invalid = 0;
+            int bits = 0;
+            int count = 0;
+            int t = toStart;
+            int i = fromStart;
+
+            if (this.isMime()) {
+                boolean padded = false;
+
+                while (i < end) {
+                    final int c = read(from, fromChars, i);
+                    final int value = constantTimeValue(c, plus, slash);
+
+                    if (value >= 0) {
+                        invalid |= padded ? -1 : 0;
+                        bits = bits << 6 | value;
+                        count++;
+
+                        if (0 == (count & 3)) {
+                            if (null != to && t + 3 <= toEnd) {
+                                to[t] = (byte) (bits >> 16);
+                                to[t + 1] = (byte) (bits >> 8);
+                                to[t + 2] = (byte) bits;
+                            }
+                            t += 3;
+                        }
+                    } else if (pad == c) {
+                        padded = true;
+                    }
+                    i++;
+                }
+            } else {
+                final int groupsEnd = end - (end - fromStart) % 4;
+
+                while (i < groupsEnd) {
+                    final int value = constantTimeValue(read(from, fromChars, i), plus, slash);
+                    final int value1 = constantTimeValue(read(from, fromChars, i + 1), plus, slash);
+                    final int value2 = constantTimeValue(read(from, fromChars, i + 2), plus, slash);
+                    final int value3 = constantTimeValue(read(from, fromChars, i + 3), plus, slash);
+                    invalid |= value | value1 | value2 | value3;
+
+                    final int group = value << 18 | value1 << 12 | value2 << 6 | value3;
+                    if (null != to && t + 3 <= toEnd) {
+                        to[t] = (byte) (group >> 16);
+                        to[t + 1] = (byte) (group >> 8);
+                        to[t + 2] = (byte) group;
+                    }
+                    t += 3;
+                    i += 4;
+                }
+
+                while (i < end) {
+                    final int value = constantTimeValue(read(from, fromChars, i), plus, slash);
+                    invalid |= value;
+                    bits = bits << 6 | value;
+                    count++;
+                    i++;
+                }
+            }
+
+            switch (count & 3) {
+                case 0:
+                    break;
+                case 1:
+                    invalid = -1;
+                    break;
+                case 2:
+                    if (null != to && t < toEnd) {
+                        to[t] = (byte) (bits >> 4);
+                    }
+                    t++;
+                    break;
+                case 3:
+                    if (null != to && t + 2 <= toEnd) {
+                        to[t] = (byte) (bits >> 10);
+                        to[t + 1] = (byte) (bits >> 2);
+                    }
+                    t += 2;
+                    break;
+                default:
+                    throw new IllegalStateException("Unhandled count " + count);
+            }
+
+            return invalid < 0 ?
+                -1 :
+                t;
+        }
+
+        /**
+         * Returns the 6 bit value of a character of the standard or URL and filename safe alphabet or -1, without
+         * branches or memory reads. Each range adds its offset masked by a test that is all ones only when the
+         * character is within the range, to a starting value of -1.
+         */
+        static int constantTimeValue(final int c,
+                                     final int plus,
+                                     final int slash) {
+            int value = -1;
+            value += (('A' - 1 - c) & (c - 'Z' - 1)) >> 31 & (c - 'A' + 1);
+            value += (('a' - 1 - c) & (c - 'z' - 1)) >> 31 & (c - 'a' + 26 + 1);
+            value += (('0' - 1 - c) & (c - '9' - 1)) >> 31 & (c - '0' + 52 + 1);
+            value += ((plus - 1 - c) & (c - plus - 1)) >> 31 & (62 + 1);
+            value += ((slash - 1 - c) & (c - slash - 1)) >> 31 & (63 + 1);
+            return value;
+        }
+
+        /**
+         * Returns the offset of the first character that belongs only to the standard or only to the URL and filename
+         * safe alphabet, when an earlier character belongs only to the other, or -1. Words of 8 characters without
+         * any of '+', '/', '-' or '_' are skipped.
+         */
+        private static int mixedAlphabets(final byte[] from,
+                                          final CharSequence fromChars,
+                                          final int fromStart,
+                                          final int fromEnd) {
+            boolean standard = false;
+            boolean urlSafe = false;
+            int i = fromStart;
+
+            while (i < fromEnd) {
+                if (i + 8 <= fromEnd) {
+                    final long word = null != from ?
+                        Base64Swar.load(from, i) :
+                        Base64Swar.load(fromChars, i);
+                    if (0 == (Base64Swar.matches(word, '+') |
+                        Base64Swar.matches(word, '/') |
+                        Base64Swar.matches(word, '-') |
+                        Base64Swar.matches(word, '_'))) {
+                        i += 8;
+                        continue;
+                    }
+                }
+
+                final int wordEnd = Math.min(i + 8, fromEnd);
+                while (i < wordEnd) {
+                    final int c = read(from, fromChars, i);
+                    if ('+' == c || '/' == c) {
+                        if (urlSafe) {
+                            return i;
+                        }
+                        standard = true;
+                    } else if ('-' == c || '_' == c) {
+                        if (standard) {
+                            return i;
+                        }
+                        urlSafe = true;
+                    }
+                    i++;
+                }
+            }
+
+            return -1;
+        }
+
+        /**
+         * Reads the encoded character at the offset from the byte array or when null the {@link CharSequence},
+         * replacing chars that are not ISO-8859-1 with '?' just like {@link #decode(String)}.
+         */
+        private static int read(final byte[] from,
+                                final CharSequence fromChars,
+                                final int offset) {
+            final int c;
+
+            if (null != from) {
+                c = from[offset] & 0xff;
+            } else {
+                final char value = fromChars.charAt(offset);
+                c = value <= 0xff ? value : '?';
+            }
+
+            return c;
+        }
+
+        private final static int MODE_OCTET_0 = 0;
+        private final static int MODE_OCTET_1 = MODE_OCTET_0 + 1;
+        private final static int MODE_OCTET_2 = MODE_OCTET_1 + 1;
+        private final static int MODE_OCTET_3 = MODE_OCTET_2 + 1;
+        private final static int MODE_PAD = MODE_OCTET_3 + 1;
+
+        private boolean isMime() {
+            final Decoder variant = this.variant;
+            return RFC2045 == variant || ConstantTime.RFC2045 == variant;
+        }
+
+        /**
+         * Reports a timed decode to the {@link Metrics} and flight recorder event when present.
+         */
+        private void decoded(final Metrics metrics,
+                             final Object event,
+                             final String operation,
+                             final int encoded,
+                             final int bytes,
+                             final long start) {
+            if (null != metrics) {
+                metrics.decoded(encoded, bytes, System.nanoTime() - start);
+            }
+            Base64Events.end(event, operation, this, encoded, bytes, this.engine(encoded).name());
+        }
+
+        /**
+         * Decodes the characters of the String directly, without first copying them to an ISO-8859-1 byte array. The
+         * standard decoder gives the String to {@link Base64Platform} first, which in the browser uses the native
+         * base64 support.
+         */
+        public byte[] decode(final String encoded) {
+            Objects.requireNonNull(encoded, "encoded");
+
+            final Metrics metrics = this.metrics;
+            final int length = encoded.length();
+            if (null == metrics && length < Base64Events.THRESHOLD) {
+                return this.decode1(encoded);
+            }
+
+            final Object event = Base64Events.begin(length);
+            final long start = System.nanoTime();
+            final byte[] to = this.decode1(encoded);
+            this.decoded(metrics, event, "decode", length, to.length, start);
+            return to;
+        }
+
+        private byte[] decode1(final String encoded) {
+            final byte[] platform = RFC4648 == this.variant ?
+                Base64Platform.decode(encoded) :
+                null;
+            return null != platform ?
+                platform :
+                this.decodeChars(encoded);
+        }
+
+        private byte[] decodeChars(final CharSequence encoded) {
+            final int length = encoded.length();
+            final byte[] to = new byte[this.decodeArrayLength(null, encoded, length)];
+            final int decodedLength = this.decodeAll(null, encoded, length, to, this.engine(length));
+
+            return to.length == decodedLength ?
+                to :
+                Arrays.copyOf(to, decodedLength);
+        }
+
+        /**
+         * Decodes the encoded characters converting the decoded bytes to a String using the given charset, giving the
+         * same result as {@link String#String(byte[], Charset)}. A chunk of groups is decoded at a time and its bytes
+         * converted by a {@code CharsetDecoder}, so the decoded bytes are never held in a byte array.
+         */
+        public String decodeToString(final CharSequence encoded,
+                                     final Charset charset) {
+            Objects.requireNonNull(encoded, "encoded");
+            Objects.requireNonNull(charset, "charset");
+
+            final int length = encoded.length();
+            final int decodedLength = this.decodeOrValidate(null, encoded, 0, length, null, 0);
+            if (decodedLength < 0) {
+                throw this.invalidEncoding(null, encoded, length, -decodedLength - 1);
+            }
+
+            // room for the bytes of a sequence continued by the next chunk
+            final byte[] chunk = new byte[8 * CHUNK_LENGTH];
+            final Base64CharsetDecoder chars = Base64CharsetDecoder.with(charset, decodedLength, chunk);
+            return null != chars ?
+                this.decodeToString(encoded, chars, chunk) :
+                this.decodeCodePoints(encoded, decodedLength, charset);
+        }
+
+        private String decodeToString(final CharSequence encoded,
+                                      final Base64CharsetDecoder chars,
+                                      final byte[] chunk) {
+            final int length = encoded.length();
+            final boolean mime = this.isMime();
+
+            int carry = 0;
+            int i = 0;
+
+            // at least once, so the last read always finishes the conversion
+            do {
+                final int chunkCharacters = (chunk.length - carry) / 3 * 4;
+                final int end = mime ?
+                    this.skipAlphabet(encoded, i, length, chunkCharacters) :
+                    Math.min(i + chunkCharacters, length);
+                final int chunkEnd = this.decode0(null, encoded, i, end, chunk, carry);
+                i = end;
+
+                carry = chars.read(chunkEnd, i == length);
+            } while (i < length);
+
+            return chars.toString();
+        }
+
+        /**
+         * Used by J2CL and GWT, which have no {@code CharsetDecoder}. UTF-8 and ISO-8859-1, the only
+         * charsets they support, decode a chunk of groups at a time converting the decoded bytes in the chunk to chars.
+         * Malformed UTF-8 and any other charset are converted using {@link String#String(byte[], Charset)}, which also
+         * takes care of any replacement characters. The encoded characters must already be valid.
+         */
+        String decodeCodePoints(final CharSequence encoded,
+                                final int decodedLength,
+                                final Charset charset) {
+            final boolean utf8 = StandardCharsets.UTF_8.equals(charset);
+            if (false == utf8 && false == StandardCharsets.ISO_8859_1.equals(charset)) {
+                return new String(this.decodeChars(encoded), charset);
+            }
+
+            final int length = encoded.length();
+
+            // UTF-8 never has more chars than bytes
+            final char[] chars = new char[decodedLength];
+            // room for the bytes of a UTF-8 sequence continued by the next chunk
+            final byte[] chunk = new byte[CHUNK_LENGTH + 3];
+            final int chunkCharacters = CHUNK_LENGTH / 3 * 4;
+            final boolean mime = this.isMime();
+
+            int carry = 0;
+            int count = 0;
+            int i = 0;
+
+            while (i < length) {
+                final int end = mime ?
+                    this.skipAlphabet(encoded, i, length, chunkCharacters) :
+                    Math.min(i + chunkCharacters, length);
+                final int chunkEnd = this.decode0(null, encoded, i, end, chunk, carry);
+                i = end;
+
+                int c = 0;
+                if (utf8) {
+                    while (c < chunkEnd) {
+                        final int sequenceLength = utf8SequenceLength(chunk[c]);
+                        if (c + sequenceLength > chunkEnd) {
+                            break;
+                        }
+
+                        final int codePoint = utf8CodePoint(chunk, c, sequenceLength);
+                        if (codePoint < 0) {
+                            return new String(this.decodeChars(encoded), charset);
+                        }
+
+                        if (codePoint < 0x10000) {
+                            chars[count++] = (char) codePoint;
+                        } else {
+                            chars[count++] = (char) (0xd800 + (codePoint - 0x10000 >>> 10));
+                            chars[count++] = (char) (0xdc00 + (codePoint & 0x3ff));
+                        }
+                        c += sequenceLength;
+                    }
+                } else {
+                    while (c < chunkEnd) {
+                        chars[count++] = (char) (chunk[c++] & 0xff);
+                    }
+                }
+
+                carry = chunkEnd - c;
+                System.arraycopy(chunk, c, chunk, 0, carry);
+            }
+
+            return 0 == carry ?
+                new String(chars, 0, count) :
+                new String(this.decodeChars(encoded), charset);
+        }
+
+        /**
+         * Returns the number of bytes in the UTF-8 sequence starting with the given byte, which is 1 for bytes that
+         * can never start a sequence, which are then rejected by {@link #utf8CodePoint(byte[], int, int)}.
+         */
+        private static int utf8SequenceLength(final byte first) {
+            final int value = first & 0xff;
+
+            return value < 0xe0 ?
+                value < 0xc2 ? 1 : 2 :
+                value < 0xf0 ? 3 : value < 0xf5 ? 4 : 1;
+        }
+
+        /**
+         * Returns the code point of the UTF-8 sequence or -1 if it is malformed, overlong or a surrogate.
+         */
+        private static int utf8CodePoint(final byte[] bytes,
+                                         final int offset,
+                                         final int length) {
+            final int first = bytes[offset] & 0xff;
+            int codePoint;
+
+            switch (length) {
+                case 1:
+                    codePoint = first < 0x80 ?
+                        first :
+                        -1;
+                    break;
+                case 2:
+                    codePoint = continuation(bytes[offset + 1]);
+                    if (codePoint >= 0) {
+                        codePoint |= (first & 0x1f) << 6;
+                    }
+                    break;
+                case 3:
+                    codePoint = continuation(bytes[offset + 1]) << 6 | continuation(bytes[offset + 2]);
+                    if (codePoint >= 0) {
+                        codePoint |= (first & 0xf) << 12;
+                        if (codePoint < 0x800 || (codePoint >= 0xd800 && codePoint <= 0xdfff)) {
+                            codePoint = -1;
+                        }
+                    }
+                    break;
+                default:
+                    codePoint = continuation(bytes[offset + 1]) << 12 |
+                        continuation(bytes[offset + 2]) << 6 |
+                        continuation(bytes[offset + 3]);
+                    if (codePoint >= 0) {
+                        codePoint |= (first & 0x7) << 18;
+                        if (codePoint < 0x10000 || codePoint > 0x10ffff) {
+                            codePoint = -1;
+                        }
+                    }
+                    break;
+            }
+
+            return codePoint;
+        }
+
+        /**
+         * Returns the 6 bits of a UTF-8 continuation byte or -1.
+         */
+        private static int continuation(final byte value) {
+            return 0x80 == (value & 0xc0) ?
+                value & 0x3f :
+                -1;
+        }
+
+        /**
+         * Decodes ints encoded by {@link Encoder#encode(int[], boolean)}.
+         */
+        public int[] decodeIntArray(final byte[] encoded,
+                                    final boolean bigEndian) {
+            return (int[]) this.decodeArray(encoded, INT_ARRAY, bigEndian);
+        }
+
+        public int[] decodeIntArray(final String encoded,
+                                    final boolean bigEndian) {
+            return this.decodeIntArray(encoded.getBytes(StandardCharsets.ISO_8859_1), bigEndian);
+        }
+
+        /**
+         * Decodes longs encoded by {@link Encoder#encode(long[], boolean)}.
+         */
+        public long[] decodeLongArray(final byte[] encoded,
+                                      final boolean bigEndian) {
+            return (long[]) this.decodeArray(encoded, LONG_ARRAY, bigEndian);
+        }
+
+        public long[] decodeLongArray(final String encoded,
+                                      final boolean bigEndian) {
+            return this.decodeLongArray(encoded.getBytes(StandardCharsets.ISO_8859_1), bigEndian);
+        }
+
+        /**
+         * Decodes floats encoded by {@link Encoder#encode(float[], boolean)}.
+         */
+        public float[] decodeFloatArray(final byte[] encoded,
+                                        final boolean bigEndian) {
+            return (float[]) this.decodeArray(encoded, FLOAT_ARRAY, bigEndian);
+        }
+
+        public float[] decodeFloatArray(final String encoded,
+                                        final boolean bigEndian) {
+            return this.decodeFloatArray(encoded.getBytes(StandardCharsets.ISO_8859_1), bigEndian);
+        }
+
+        /**
+         * Decodes doubles encoded by {@link Encoder#encode(double[], boolean)}.
+         */
+        public double[] decodeDoubleArray(final byte[] encoded,
+                                          final boolean bigEndian) {
+            return (double[]) this.decodeArray(encoded, DOUBLE_ARRAY, bigEndian);
+        }
+
+        public double[] decodeDoubleArray(final String encoded,
+                                          final boolean bigEndian) {
+            return this.decodeDoubleArray(encoded.getBytes(StandardCharsets.ISO_8859_1), bigEndian);
+        }
+
+        private final static int INT_ARRAY = 0;
+        private final static int LONG_ARRAY = INT_ARRAY + 1;
+        private final static int FLOAT_ARRAY = LONG_ARRAY + 1;
+        private final static int DOUBLE_ARRAY = FLOAT_ARRAY + 1;
+
+        /**
+         * Validates the encoded bytes, which also gives the exact decoded length, and then decodes a chunk of groups
+         * at a time copying the values from the chunk into the primitive array.
+         */
+        private Object decodeArray(final byte[] encoded,
+                                   final int type,
+                                   final boolean bigEndian) {
+            Objects.requireNonNull(encoded, "encoded");
+
+            final int length = encoded.length;
+            final int decodedLength = this.decodeOrValidate(encoded, null, 0, length, null, 0);
+            if (decodedLength < 0) {
+                throw this.invalidEncoding(encoded, null, length, -decodedLength - 1);
+            }
+
+            final int size = INT_ARRAY == type || FLOAT_ARRAY == type ?
+                4 :
+                8;
+            if (0 != decodedLength % size) {
+                throw new IllegalArgumentException("Invalid decoded length " + decodedLength + " not a multiple of " + size);
+            }
+
+            final int count = decodedLength / size;
+            final Object values;
+            switch (type) {
+                case INT_ARRAY:
+                    values = new int[count];
+                    break;
+                case LONG_ARRAY:
+                    values = new long[count];
+                    break;
+                case FLOAT_ARRAY:
+                    values = new float[count];
+                    break;
+                default:
+                    values = new double[count];
+                    break;
+            }
+
+            final byte[] chunk = new byte[CHUNK_LENGTH];
+            final int chunkCharacters = CHUNK_LENGTH / 3 * 4;
+            final boolean mime = this.isMime();
+
+            int i = 0;
+            int index = 0;
+
+            while (index < count) {
+                final int end = mime ?
+                    this.skipAlphabet(encoded, i, length, chunkCharacters) :
+                    Math.min(i + chunkCharacters, length);
+                final int chunkLength = this.decode0(encoded, i, end, chunk, 0);
+
+                index = emptyChunk(chunk, chunkLength, bigEndian, values, index);
+                i = end;
+            }
+
+            return values;
+        }
+
+        /**
+         * Copies the values in the chunk into the primitive array starting at index, returning the index after the
+         * last value.
+         */
+        private static int emptyChunk(final byte[] chunk,
+                                      final int chunkLength,
+                                      final boolean bigEndian,
+                                      final Object values,
+                                      final int index) {
+            int j = index;
+
+            if (values instanceof int[]) {
+                final int[] ints = (int[]) values;
+                for (int c = 0; c < chunkLength; c += 4) {
+                    ints[j++] = getInt(chunk, c, bigEndian);
+                }
+            } else if (values instanceof long[]) {
+                final long[] longs = (long[]) values;
+                for (int c = 0; c < chunkLength; c += 8) {
+                    longs[j++] = getLong(chunk, c, bigEndian);
+                }
+            } else if (values instanceof float[]) {
+                final float[] floats = (float[]) values;
+                for (int c = 0; c < chunkLength; c += 4) {
+                    floats[j++] = Float.intBitsToFloat(getInt(chunk, c, bigEndian));
+                }
+            } else {
+                final double[] doubles = (double[]) values;
+                for (int c = 0; c < chunkLength; c += 8) {
+                    doubles[j++] = Double.longBitsToDouble(getLong(chunk, c, bigEndian));
+                }
+            }
+
+            return j;
+        }
+
+        private static int getInt(final byte[] from,
+                                  final int offset,
+                                  final boolean bigEndian) {
+            return bigEndian ?
+                (from[offset] & 0xff) << 24 | (from[offset + 1] & 0xff) << 16 | (from[offset + 2] & 0xff) << 8 | (from[offset + 3] & 0xff) :
+                (from[offset + 3] & 0xff) << 24 | (from[offset + 2] & 0xff) << 16 | (from[offset + 1] & 0xff) << 8 | (from[offset] & 0xff);
+        }
+
+        private static long getLong(final byte[] from,
+                                    final int offset,
+                                    final boolean bigEndian) {
+            final int first = getInt(from, offset, bigEndian);
+            final int second = getInt(from, offset + 4, bigEndian);
+
+            return bigEndian ?
+                (long) first << 32 | (second & 0xffffffffL) :
+                (long) second << 32 | (first & 0xffffffffL);
+        }
+
+        /**
+         * Decodes the 11 characters or 12 with padding, produced by {@link Encoder#encodeLong(long)}.
+         */
+        public long decodeLong(final CharSequence encoded) {
+            this.checkFixedLength(encoded, 11);
+
+            final int a = this.group(encoded, 0);
+            final int b = this.group(encoded, 4);
+            final int c = this.value(encoded.charAt(8)) << 12 |
+                this.value(encoded.charAt(9)) << 6 |
+                this.value(encoded.charAt(10));
+
+            if ((a | b | c) < 0) {
+                throw this.invalidFixed(encoded);
+            }
+
+            return (long) a << 40 |
+                (long) b << 16 |
+                c >>> 2;
+        }
+
+        /**
+         * Decodes the 22 characters or 24 with padding, produced by {@link Encoder#encodeLongs(long, long)}, returning
+         * the high and low longs. A UUID may be created from the two longs, most significant first.
+         */
+        public long[] decodeLongs(final CharSequence encoded) {
+            this.checkFixedLength(encoded, 22);
+
+            final int a = this.group(encoded, 0);
+            final int b = this.group(encoded, 4);
+            final int c = this.group(encoded, 8);
+            final int d = this.group(encoded, 12);
+            final int e = this.group(encoded, 16);
+            final int f = this.value(encoded.charAt(20)) << 6 |
+                this.value(encoded.charAt(21));
+
+            if ((a | b | c | d | e | f) < 0) {
+                throw this.invalidFixed(encoded);
+            }
+
+            return new long[]{
+                (long) a << 40 | (long) b << 16 | c >>> 8,
+                (long) (c & 0xff) << 56 | (long) d << 32 | (long) e << 8 | f >>> 4
+            };
+        }
+
+        /**
+         * Checks the length of a fixed width encoding, which may be followed by enough padding to complete the last
+         * group.
+         */
+        private void checkFixedLength(final CharSequence encoded,
+                                             final int length) {
+            Objects.requireNonNull(encoded, "encoded");
+
+            final int encodedLength = encoded.length();
+            if (length != encodedLength) {
+                final int padded = (length + 3) / 4 * 4;
+                boolean valid = padded == encodedLength;
+
+                for (int i = length; valid && i < padded; i++) {
+                    valid = this.pad == encoded.charAt(i);
+                }
+
+                if (false == valid) {
+                    throw new IllegalArgumentException("Invalid length " + encodedLength + " expected " + length + " or " + padded + " with padding");
+                }
+            }
+        }
+
+        /**
+         * Decodes the 4 characters of a group into 24 bits, returning a negative value if any character is invalid.
+         */
+        private int group(final CharSequence encoded,
+                          final int offset) {
+            return this.value(encoded.charAt(offset)) << 18 |
+                this.value(encoded.charAt(offset + 1)) << 12 |
+                this.value(encoded.charAt(offset + 2)) << 6 |
+                this.value(encoded.charAt(offset + 3));
+        }
+
+        private IllegalArgumentException invalidFixed(final CharSequence encoded) {
+            int i = 0;
+            while (-1 != this.value(encoded.charAt(i))) {
+                i++;
+            }
+            return new IllegalArgumentException("Invalid encoding got 0x" + Integer.toHexString(encoded.charAt(i)) + " at " + i);
+        }
+
+        /**
+         * Decodes a chunk of groups at a time, giving the decoded bytes of each chunk to the {@link Updater} right
+         * after they are decoded. If the encoding is invalid the {@link Updater} may have already received the bytes
+         * of the chunks before the error.
+         */
+        public byte[] decodeAndUpdate(final byte[] encoded,
+                                      final Updater updater) {
+            Objects.requireNonNull(encoded, "encoded");
+
+            return this.decodeAndUpdate(encoded, null, encoded.length, updater);
+        }
+
+        public byte[] decodeAndUpdate(final String encoded,
+                                      final Updater updater) {
+            Objects.requireNonNull(encoded, "encoded");
+
+            return this.decodeAndUpdate(null, encoded, encoded.length(), updater);
+        }
+
+        private byte[] decodeAndUpdate(final byte[] from,
+                                       final CharSequence fromChars,
+                                       final int length,
+                                       final Updater updater) {
+            Objects.requireNonNull(updater, "updater");
+
+            final Object event = Base64Events.begin(length);
+            final byte[] to = new byte[this.decodeArrayLength(from, fromChars, length)];
+            final int chunkCharacters = CHUNK_LENGTH / 3 * 4;
+            final boolean mime = this.isMime();
+
+            int t = 0;
+            int i = 0;
+
+            while (i < length) {
+                int end = mime ?
+                    null != from ?
+                        this.skipAlphabet(from, i, length, chunkCharacters) :
+                        this.skipAlphabet(fromChars, i, length, chunkCharacters) :
+                    Math.min(i + chunkCharacters, length);
+
+                int chunkEnd = this.decode0(from, fromChars, i, end, to, t);
+
+                // a short chunk before the end holds padding, decode everything left so it is checked as a whole.
+                if (end < length && chunkEnd - t != CHUNK_LENGTH) {
+                    end = length;
+                    chunkEnd = this.decode0(from, fromChars, i, end, to, t);
+                }
+
+                updater.update(to, t, chunkEnd - t);
+                t = chunkEnd;
+                i = end;
+            }
+
+            Base64Events.end(event, "decodeAndUpdate", this, length, t, this.engine(chunkCharacters).name());
+            return to.length == t ?
+                to :
+                Arrays.copyOf(to, t);
+        }
+
+        /**
+         * Returns the number of records within the slice, where records are separated by a newline and a final
+         * newline does not begin another record.
+         */
+        public int recordCount(final byte[] encoded,
+                               final int offset,
+                               final int length) {
+            Objects.requireNonNull(encoded, "encoded");
+            checkSlice(offset, length, encoded.length);
+
+            return records(encoded, offset, offset + length, null);
+        }
+
+        /**
+         * Decodes the newline separated records within the slice back to back into a single array. A carriage
+         * return before a newline is ignored. The offsets array must have room for one more element than
+         * {@link #recordCount(byte[], int, int)}, and receives the offset of each decoded record followed by the
+         * total length. When parallel is true records are decoded in parallel, each into its own part of the single
+         * array. Invalid records are reported with their record number starting at 1, along with the offset of the
+         * bad character within encoded.
+         */
+        public byte[] decodeRecords(final byte[] encoded,
+                                    final int offset,
+                                    final int length,
+                                    final int[] offsets,
+                                    final boolean parallel) {
+            Objects.requireNonNull(encoded, "encoded");
+            checkSlice(offset, length, encoded.length);
+            Objects.requireNonNull(offsets, "offsets");
+
+            final int end = offset + length;
+            final int count = records(encoded, offset, end, null);
+            if (offsets.length <= count) {
+                throw new IllegalArgumentException("Offsets " + offsets.length + " < required " + (count + 1));
+            }
+
+            // the offset after the last character of each record, after which comes its newline.
+            final int[] recordEnds = new int[count];
+            records(encoded, offset, end, recordEnds);
+
+            int total = 0;
+            for (int r = 0; r < count; r++) {
+                offsets[r] = total;
+                final int recordStart = recordStart(recordEnds, r, offset);
+                total += this.decodedLength(encoded, recordStart, recordEnd(encoded, recordStart, recordEnds[r]) - recordStart);
+            }
+            offsets[count] = total;
+
+            final Object event = Base64Events.begin(length);
+            final byte[] to = new byte[total];
+            final IntStream range = IntStream.range(0, count);
+
+            try {
+                (parallel ? range.parallel() : range).forEach(r -> this.decodeRecord(encoded, offset, recordEnds, r, to, offsets[r]));
+            } catch (final IllegalArgumentException cause) {
+                if (parallel) {
+                    // find the first invalid record, as any record may have failed first when decoding in parallel.
+                    for (int r = 0; r < count; r++) {
+                        this.decodeRecord(encoded, offset, recordEnds, r, null, 0);
+                    }
+                }
+                throw cause;
+            }
+
+            Base64Events.end(
+                event,
+                "decodeRecords",
+                this,
+                length,
+                total,
+                parallel ?
+                    Engine.PARALLEL.name() :
+                    this.engine(0 == count ? 0 : length / count).name()
+            );
+            return to;
+        }
+
+        /**
+         * Counts the records between start and end, recording the end of each when recordEnds is not null. A word
+         * of 8 bytes at a time is tested for newlines.
+         */
+        private static int records(final byte[] encoded,
+                                   final int start,
+                                   final int end,
+                                   final int[] recordEnds) {
+            int count = 0;
+            int i = start;
+
+            while (i < end) {
+                if (i + 8 <= end) {
+                    long newlines = Base64Swar.matches(Base64Swar.load(encoded, i), '\n');
+
+                    if (null == recordEnds) {
+                        count += Long.bitCount(newlines);
+                    } else {
+                        while (0 != newlines) {
+                            final long lane = Long.highestOneBit(newlines);
+                            recordEnds[count++] = i + Long.numberOfLeadingZeros(lane) / 8;
+                            newlines ^= lane;
+                        }
+                    }
+                    i += 8;
+                    continue;
+                }
+
+                if ('\n' == encoded[i]) {
+                    if (null != recordEnds) {
+                        recordEnds[count] = i;
+                    }
+                    count++;
+                }
+                i++;
+            }
+
+            // the last record is not followed by a newline
+            if (end > start && '\n' != encoded[end - 1]) {
+                if (null != recordEnds) {
+                    recordEnds[count] = end;
+                }
+                count++;
+            }
+
+            return count;
+        }
+
+        private static int recordStart(final int[] recordEnds,
+                                       final int record,
+                                       final int offset) {
+            return 0 == record ?
+                offset :
+                recordEnds[record - 1] + 1;
+        }
+
+        /**
+         * Returns the end of the record ignoring a carriage return before the newline.
+         */
+        private static int recordEnd(final byte[] encoded,
+                                     final int start,
+                                     final int end) {
+            return end > start && '\r' == encoded[end - 1] ?
+                end - 1 :
+                end;
+        }
+
+        /**
+         * Decodes or when to is null only validates a single record.
+         */
+        private void decodeRecord(final byte[] encoded,
+                                  final int offset,
+                                  final int[] recordEnds,
+                                  final int record,
+                                  final byte[] to,
+                                  final int toOffset) {
+            final int start = recordStart(recordEnds, record, offset);
+            final int end = recordEnd(encoded, start, recordEnds[record]);
+
+            final int result = this.decodeOrValidate(encoded, null, start, end, to, toOffset);
+            if (result < 0) {
+                throw new IllegalArgumentException(
+                    "Invalid record " + (record + 1) + " " + this.invalidEncoding(encoded, null, end, -result - 1).getMessage()
+                );
+            }
+        }
+
+        public int decode(final byte[] from,
+                          final byte[] to) {
+            Objects.requireNonNull(from, "from");
+
+            final Metrics metrics = this.metrics;
+            final int length = from.length;
+            if (null == metrics && length < Base64Events.THRESHOLD) {
+                return this.decode1(from, to);
+            }
+
+            final Object event = Base64Events.begin(length);
+            final long start = System.nanoTime();
+            final int written = this.decode1(from, to);
+            this.decoded(metrics, event, "decode", length, written, start);
+            return written;
+        }
+
+        private int decode1(final byte[] from,
+                            final byte[] to) {
+            final int length = this.decodedLength(from);
+
+            if (to.length < length) {
+                throw new IllegalArgumentException("To " + to.length + " < required " + length);
+            }
+            return this.decodeAll(from, null, from.length, to, this.engine(from.length));
+        }
+
+        /**
+         * Returns the engine that decodes an input of the given length. MIME is never decoded in parallel, because
+         * the offsets of its groups are not known without first counting the separators.
+         */
+        public Engine engine(final int length) {
+            if (-1 != this.plus) {
+                return Engine.CONSTANT_TIME;
+            }
+
+            final Engine forced = Base64Engines.FORCED;
+            Engine engine = null != forced ?
+                forced :
+                length >= Base64Engines.PARALLEL_MINIMUM && length >= Base64Engines.Parallel.DECODE ?
+                    Engine.PARALLEL :
+                    length >= Base64Engines.SWAR ?
+                        Engine.SWAR :
+                        Engine.TABLE;
+
+            if (Engine.PARALLEL == engine && this.isMime()) {
+                engine = Engine.SWAR;
+            }
+            if (Engine.SWAR == engine && null == this.swar) {
+                engine = Engine.TABLE;
+            }
+            return engine;
+        }
+
+        /**
+         * Decodes all the encoded bytes or when from is null the encoded characters using the given engine, returning
+         * the number of decoded bytes. When decoding in parallel, a chunk that fails or holds padding before the last
+         * chunk is decoded again sequentially, so failures are reported exactly as they would be without chunks.
+         */
+        int decodeAll(final byte[] from,
+                      final CharSequence fromChars,
+                      final int length,
+                      final byte[] to,
+                      final Engine engine) {
+            if (Engine.PARALLEL != engine || this.isMime() || 0 == length) {
+                final int result = this.decodeOrValidate(
+                    from,
+                    fromChars,
+                    0,
+                    length,
+                    to,
+                    0,
+                    Engine.TABLE != engine ? this.swar : null
+                );
+                if (result < 0) {
+                    throw this.invalidEncoding(from, fromChars, length, -result - 1);
+                }
+                return result;
+            }
+
+            final int chunkLength = PARALLEL_CHUNK_LENGTH / 3 * 4;
+            final int chunks = (length + chunkLength - 1) / chunkLength;
+            final int[] results = new int[chunks];
+
+            IntStream.range(0, chunks)
+                .parallel()
+                .forEach(c -> {
+                    final int start = c * chunkLength;
+                    results[c] = this.decodeOrValidate(
+                        from,
+                        fromChars,
+                        start,
+                        Math.min(start + chunkLength, length),
+                        to,
+                        start / 4 * 3,
+                        this.swar
+                    );
+                });
+
+            for (int c = 0; c < chunks - 1; c++) {
+                if (results[c] != (c + 1) * chunkLength / 4 * 3) {
+                    return this.decodeAll(from, fromChars, length, to, Engine.SWAR);
+                }
+            }
+
+            final int last = results[chunks - 1];
+            return last >= 0 ?
+                last :
+                this.decodeAll(from, fromChars, length, to, Engine.SWAR);
+        }
+
+        private final int[] lookup;
+
+        /**
+         * When null the alphabet is decoded one character at a time.
+         */
+        private final Base64Swar swar;
+
+        private final byte pad;
+
+        /**
+         * When true input using characters from both the standard and URL and filename safe alphabets is invalid.
+         */
+        private final boolean withoutMixing;
+
+        /**
+         * The characters for 62 and 63 used by {@link #constantTimeValue(int, int, int)}, or -1 when decoding uses
+         * the lookup table.
+         */
+        private final int plus;
+        private final int slash;
+
+        /**
+         * When null, which is the default, each instrumented method only pays for one branch.
+         */
+        private final Metrics metrics;
+
+        /**
+         * The decoder this is a copy of, or this decoder, which the methods that behave differently for each built in
+         * decoder compare against, so a copy with {@link Metrics} behaves the same.
+         */
+        private final Decoder variant;
+
+        @Override
+        public String toString() {
+            return this.toString;
+        }
+
+        private final String toString;
+    }
+
+    /**
+     * Checks the slice given by an offset and length fits within an array or {@link CharSequence} of the given length.
+     */
+    static void checkSlice(final int offset,
+                           final int length,
+                           final int arrayLength) {
+        if (offset < 0 || length < 0 || offset > arrayLength - length) {
+            throw new IndexOutOfBoundsException("Invalid offset " + offset + " length " + length + " not within 0.." + arrayLength);
+        }
+    }
+
+    /**
+     * Quotes a character for messages, without depending on any text helpers that would add to the J2CL and GWT output.
+     */
+    static String quote(final char c) {
+        return "'" + c + "'";
     }
 
     /**
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.j2cl.java.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The encode and decode tables for an alphabet of 64 characters and its pad character. An alphabet is validated and
+ * its tables built once, and then cached, so encoders and decoders for the same alphabet share them.
+ */
+final class Base64Alphabet {
+
+    /**
+     * Once the cache holds this many alphabets, further alphabets are built every time, so the cache cannot grow
+     * without limit.
+     */
+    private final static int MAX_CACHED = 32;
+
+    /**
+     * Holds the cache, so it is only created when a custom alphabet is used, and not while the built in decoders create
+     * their tables.
+     */
+    private static final class Cache {
+        private final static Map<String, Base64Alphabet> CACHE = new ConcurrentHashMap<>();
+
+        static {
+            // the built in alphabets share their tables, so encoders and decoders for them are recognised as built in
+            cache(Base64.Decoder.RFC4648_TABLES);
+            cache(Base64.Decoder.UrlSafe.TABLES);
+        }
+
+        private static void cache(final Base64Alphabet tables) {
+            CACHE.put((char) tables.pad + new String(tables.chars), tables);
+        }
+    }
+
+    /**
+     * Returns the cached tables for the alphabet and pad, validating and building them if necessary.
+     */
+    static Base64Alphabet with(final String alphabet,
+                               final char pad) {
+        Objects.requireNonNull(alphabet, "alphabet");
+
+        final Map<String, Base64Alphabet> cache = Cache.CACHE;
+        final String key = pad + alphabet;
+        Base64Alphabet tables = cache.get(key);
+        if (null == tables) {
+            tables = create(alphabet, pad);
+
+            if (cache.size() < MAX_CACHED) {
+                final Base64Alphabet previous = cache.putIfAbsent(key, tables);
+                if (null != previous) {
+                    tables = previous;
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Builds the tables for one of the built in alphabets, which are known to be valid, without any validation or
+     * caching.
+     */
+    static Base64Alphabet builtIn(final char[] chars,
+                                  final byte pad) {
+        final int[] lookup = new int[256];
+        Arrays.fill(lookup, -1);
+
+        final int length = chars.length;
+        for (int i = 0; i < length; i++) {
+            lookup[chars[i]] = i;
+        }
+
+        return new Base64Alphabet(
+            chars,
+            lookup,
+            Base64Swar.with(lookup),
+            pad
+        );
+    }
+
+    private static Base64Alphabet create(final String alphabet,
+                                         final char pad) {
+        final int length = alphabet.length();
+        if (64 != length) {
+            throw new IllegalArgumentException("Invalid alphabet length " + length + " expected 64");
+        }
+        if (false == isPrintableAscii(pad)) {
+            throw new IllegalArgumentException("Invalid pad 0x" + Integer.toHexString(pad) + " not printable ASCII");
+        }
+
+        final char[] chars = alphabet.toCharArray();
+        final int[] lookup = new int[256];
+        Arrays.fill(lookup, -1);
+
+        for (int i = 0; i < length; i++) {
+            final char c = chars[i];
+            if (false == isPrintableAscii(c)) {
+                throw new IllegalArgumentException("Invalid alphabet character 0x" + Integer.toHexString(c) + " at " + i + " not printable ASCII");
+            }
+            if (pad == c) {
+                throw new IllegalArgumentException("Invalid alphabet character " + Base64.quote(c) + " at " + i + " is pad");
+            }
+            if (-1 != lookup[c]) {
+                throw new IllegalArgumentException("Invalid alphabet character " + Base64.quote(c) + " at " + i + " duplicate");
+            }
+            lookup[c] = i;
+        }
+
+        return new Base64Alphabet(
+            chars,
+            lookup,
+            Base64Swar.with(lookup),
+            (byte) pad
+        );
+    }
+
+    private static boolean isPrintableAscii(final char c) {
+        return c > ' ' && c < 0x7f;
+    }
+
+    private Base64Alphabet(final char[] chars,
+                           final int[] lookup,
+                           final Base64Swar swar,
+                           final byte pad) {
+        super();
+        this.chars = chars;
+        this.lookup = lookup;
+        this.swar = swar;
+        this.pad = pad;
+    }
+
+    /**
+     * The character for each 6 bit value.
+     */
+    final char[] chars;
+
+    /**
+     * The 6 bit value for each character or -1.
+     */
+    final int[] lookup;
+
+    /**
+     * The SWAR decoder, or null when the alphabet has too many runs.
+     */
+    final Base64Swar swar;
+
+    final byte pad;
+
+    @Override
+    public String toString() {
+        return new String(this.chars) + " " + Base64.quote((char) this.pad);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.j2cl.java.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Converts decoded bytes to text a chunk at a time with a {@link CharsetDecoder}, for
+ * {@link Base64.Decoder#decodeToString(CharSequence, Charset)}. Malformed and unmappable bytes are replaced, just like
+ * {@link String#String(byte[], Charset)}. The J2CL and GWT builds replace this with a version in the super source
+ * directory that always declines.
+ */
+final class Base64CharsetDecoder {
+
+    /**
+     * The size of the fixed buffer of characters copied to the text each time it fills.
+     */
+    private final static int BUFFER_LENGTH = 2048;
+
+    /**
+     * Returns a {@link Base64CharsetDecoder} that converts the bytes given a chunk at a time, or null if the platform
+     * has no {@link CharsetDecoder}.
+     */
+    static Base64CharsetDecoder with(final Charset charset,
+                                     final int length,
+                                     final byte[] chunk) {
+        return new Base64CharsetDecoder(charset, length, chunk);
+    }
+
+    private Base64CharsetDecoder(final Charset charset,
+                                 final int length,
+                                 final byte[] chunk) {
+        super();
+
+        final CharsetDecoder decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        this.decoder = decoder;
+        this.bytes = ByteBuffer.wrap(chunk);
+        this.text = new StringBuilder(
+            (int) Math.min(Integer.MAX_VALUE - 8, (long) Math.ceil(length * (double) decoder.averageCharsPerByte()))
+        );
+    }
+
+    /**
+     * Converts the bytes in the chunk before end, moving any bytes of a sequence continued by the next chunk to the
+     * start of the chunk, and returns their count. The last chunk also flushes the {@link CharsetDecoder}.
+     */
+    int read(final int end,
+             final boolean last) {
+        final ByteBuffer bytes = this.bytes;
+        bytes.clear()
+            .limit(end);
+
+        final CharsetDecoder decoder = this.decoder;
+        final CharBuffer chars = this.chars;
+
+        // replacing means the result is either an underflow, when the bytes are done, or an overflow
+        while (decoder.decode(bytes, chars, last).isOverflow()) {
+            this.drain();
+        }
+        if (last) {
+            while (decoder.flush(chars).isOverflow()) {
+                this.drain();
+            }
+        }
+        this.drain();
+
+        final int carry = bytes.remaining();
+        bytes.compact();
+        return carry;
+    }
+
+    /**
+     * Copies the chars converted so far to the text.
+     */
+    private void drain() {
+        final CharBuffer chars = this.chars;
+        this.text.append(chars.array(), 0, chars.position());
+        chars.clear();
+    }
+
+    private final CharsetDecoder decoder;
+
+    /**
+     * Wraps the chunk once, so reading allocates nothing.
+     */
+    private final ByteBuffer bytes;
+
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_LENGTH);
+
+    private final StringBuilder text;
+
+    /**
+     * Returns the text converted so far.
+     */
+    @Override
+    public String toString() {
+        return this.text.toString();
+    }
+}
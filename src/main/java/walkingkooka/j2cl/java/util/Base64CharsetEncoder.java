@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.j2cl.java.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Converts text to bytes a chunk at a time with a {@link CharsetEncoder}, for
+ * {@link Base64.Encoder#encodeString(CharSequence, Charset)}. Malformed and unmappable characters are replaced, just
+ * like {@link String#getBytes(Charset)}. The J2CL and GWT builds replace this with a version in the super source
+ * directory that always declines.
+ */
+final class Base64CharsetEncoder {
+
+    /**
+     * The size of the fixed buffer of characters copied from the text.
+     */
+    private final static int BUFFER_LENGTH = 1024;
+
+    /**
+     * Returns a {@link Base64CharsetEncoder} that writes the bytes of the text into the chunk, or null if the
+     * platform has no {@link CharsetEncoder}.
+     */
+    static Base64CharsetEncoder with(final CharSequence text,
+                                     final Charset charset,
+                                     final byte[] chunk) {
+        return new Base64CharsetEncoder(text, charset, chunk);
+    }
+
+    private Base64CharsetEncoder(final CharSequence text,
+                                 final Charset charset,
+                                 final byte[] chunk) {
+        super();
+
+        final CharsetEncoder encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        this.text = text;
+        this.bytes = ByteBuffer.wrap(chunk);
+        this.encoder = encoder;
+        this.estimatedLength = (long) Math.ceil(text.length() * (double) encoder.averageBytesPerChar());
+
+        // starts empty
+        this.chars.flip();
+    }
+
+    /**
+     * The number of bytes the text is expected to take, used to size the encoded array.
+     */
+    long estimatedLength() {
+        return this.estimatedLength;
+    }
+
+    private final long estimatedLength;
+
+    /**
+     * Writes the next bytes into the chunk after the given offset until it is full or the text is done, returning the
+     * offset after the last byte.
+     */
+    int read(final int offset) {
+        final ByteBuffer bytes = this.bytes;
+        bytes.clear()
+            .position(offset);
+
+        final CharsetEncoder encoder = this.encoder;
+        final CharBuffer chars = this.chars;
+
+        while (false == this.encoded) {
+            final boolean last = this.fill();
+
+            // replacing means the result is either an underflow, when the chars are done, or an overflow
+            if (encoder.encode(chars, bytes, last).isOverflow()) {
+                return bytes.position();
+            }
+            this.encoded = last;
+        }
+
+        this.done = encoder.flush(bytes).isUnderflow();
+        return bytes.position();
+    }
+
+    /**
+     * Copies the next chars of the text after any left by the last encode, such as the first of a surrogate pair,
+     * returning true when the text is done.
+     */
+    private boolean fill() {
+        final CharBuffer chars = this.chars;
+        chars.compact();
+
+        final CharSequence text = this.text;
+        final char[] array = chars.array();
+        final int start = this.next;
+        final int end = Math.min(start + chars.remaining(), text.length());
+        int c = chars.position();
+
+        if (text instanceof String) {
+            ((String) text).getChars(start, end, array, c);
+            c += end - start;
+        } else {
+            for (int i = start; i < end; i++) {
+                array[c++] = text.charAt(i);
+            }
+        }
+
+        chars.position(c)
+            .flip();
+        this.next = end;
+        return text.length() == end;
+    }
+
+    /**
+     * True once every byte has been returned by {@link #read(int)}.
+     */
+    boolean isDone() {
+        return this.done;
+    }
+
+    private final CharSequence text;
+
+    /**
+     * The offset of the next char of the text to be copied to {@link #chars}.
+     */
+    private int next;
+
+    /**
+     * A fixed chunk of the text, so the {@link CharsetEncoder} reads an array.
+     */
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_LENGTH);
+
+    /**
+     * Wraps the chunk once, so reading allocates nothing.
+     */
+    private final ByteBuffer bytes;
+
+    private final CharsetEncoder encoder;
+
+    private boolean encoded;
+
+    private boolean done;
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.j2cl.java.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter used by {@link Base64.Counters}, striped per thread by a {@link LongAdder} so threads adding at the same
+ * time do not contend. The J2CL and GWT builds replace it with a plain long in the super source directory.
+ */
+final class Base64Counter {
+
+    static Base64Counter with() {
+        return new Base64Counter();
+    }
+
+    private Base64Counter() {
+        super();
+    }
+
+    void increment() {
+        this.adder.increment();
+    }
+
+    void add(final long value) {
+        this.adder.add(value);
+    }
+
+    long sum() {
+        return this.adder.sum();
+    }
+
+    private final LongAdder adder = new LongAdder();
+
+    @Override
+    public String toString() {
+        return String.valueOf(this.sum());
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.j2cl.java.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * An {@link InputStream} that reads encoded characters from a {@link Reader} into a fixed char buffer, returning the
+ * decoded bytes from a fixed byte buffer. Each buffer of characters is decoded up to the end of its last whole group,
+ * with the characters of an incomplete group carried to the start of the buffer, so memory is constant however long
+ * the encoding is. MIME separators are dropped from carried characters, and once padding is seen only a pad is
+ * carried, so anything but more padding or separators after it still fails. Failures are thrown as
+ * {@link IOException} with offsets counted from the start of the {@link Reader}, in the same order as
+ * {@link Base64.Decoder#decode(String)}, so mixed alphabets are only reported at the end.
+ */
+final class Base64DecoderInputStream extends InputStream {
+
+    /**
+     * The number of characters decoded at a time, a multiple of 4.
+     */
+    private final static int BUFFER_LENGTH = 4 * 1024;
+
+    static Base64DecoderInputStream with(final Base64.Decoder decoder,
+                                         final byte pad,
+                                         final boolean mime,
+                                         final boolean withoutMixing,
+                                         final Reader reader) {
+        return new Base64DecoderInputStream(
+            decoder,
+            pad,
+            mime,
+            withoutMixing,
+            reader
+        );
+    }
+
+    private Base64DecoderInputStream(final Base64.Decoder decoder,
+                                     final byte pad,
+                                     final boolean mime,
+                                     final boolean withoutMixing,
+                                     final Reader reader) {
+        super();
+        this.decoder = decoder;
+        this.pad = pad;
+        this.mime = mime;
+        this.withoutMixing = withoutMixing;
+        this.reader = reader;
+    }
+
+    @Override
+    public int read() throws IOException {
+        this.checkOpen();
+
+        return this.fill() ?
+            this.bytes[this.next++] & 0xff :
+            -1;
+    }
+
+    @Override
+    public int read(final byte[] to,
+                    final int offset,
+                    final int length) throws IOException {
+        Base64.checkSlice(offset, length, to.length);
+        this.checkOpen();
+
+        if (0 == length) {
+            return 0;
+        }
+
+        int count = 0;
+        while (count < length && this.fill()) {
+            final int copy = Math.min(length - count, this.end - this.next);
+            System.arraycopy(this.bytes, this.next, to, offset + count, copy);
+            this.next += copy;
+            count += copy;
+        }
+
+        return 0 == count ?
+            -1 :
+            count;
+    }
+
+    @Override
+    public int available() throws IOException {
+        this.checkOpen();
+        return this.end - this.next;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (false == this.closed) {
+            this.closed = true;
+            this.reader.close();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream is closed");
+        }
+    }
+
+    /**
+     * Returns true when there are decoded bytes waiting, decoding more characters when empty, or false at the end.
+     */
+    private boolean fill() throws IOException {
+        while (this.next == this.end) {
+            if (this.eof) {
+                return false;
+            }
+            this.decodeChunk();
+        }
+        return true;
+    }
+
+    /**
+     * Reads characters after those carried, decodes up to the end of the last whole group and carries the rest.
+     */
+    private void decodeChunk() throws IOException {
+        final char[] chars = this.chars;
+        final int pad = this.pad;
+        final boolean mime = this.mime;
+
+        int limit = this.carry;
+        final int read = this.reader.read(chars, limit, chars.length - limit);
+        if (read < 0) {
+            this.eof = true;
+        } else {
+            limit += read;
+        }
+
+        boolean padded = false;
+        int cut = limit;
+
+        if (false == this.eof) {
+            cut = 0;
+            int count = 0;
+
+            for (int i = 0; i < limit; i++) {
+                final int c = chars[i];
+                if (pad == c) {
+                    padded = true;
+                    cut = limit;
+                    break;
+                }
+                // invalid characters are counted unless MIME, so the decoder finds them.
+                if (false == mime || this.isAlphabet(c)) {
+                    count++;
+                }
+                if (0 == (count & 3)) {
+                    cut = i + 1;
+                }
+            }
+        }
+
+        final int decoded;
+        try {
+            decoded = this.decoder.decodeStream(this.view, cut, this.bytes, this.position);
+
+            if (this.withoutMixing) {
+                this.mixedAlphabets(cut);
+            }
+        } catch (final IllegalArgumentException cause) {
+            throw new IOException(cause.getMessage(), cause);
+        }
+
+        this.next = 0;
+        this.end = decoded;
+
+        int carry = 0;
+
+        if (false == this.eof) {
+            if (padded) {
+                chars[0] = (char) pad;
+                carry = 1;
+            } else {
+                for (int i = cut; i < limit; i++) {
+                    final char c = chars[i];
+                    if (false == mime || this.isAlphabet(c)) {
+                        chars[carry++] = c;
+                    }
+                }
+            }
+        }
+
+        this.position += limit - carry;
+        this.carry = carry;
+    }
+
+    /**
+     * Remembers the first character that belongs only to the standard or only to the URL and filename safe alphabet,
+     * when an earlier character belongs only to the other. It is only reported at the end, after any other failure,
+     * just like {@link Base64.Decoder#decode(String)}.
+     */
+    private void mixedAlphabets(final int end) {
+        final char[] chars = this.chars;
+
+        for (int i = 0; i < end && -1 == this.mixed; i++) {
+            final char c = chars[i];
+            final boolean standard = '+' == c || '/' == c;
+            if (standard || '-' == c || '_' == c) {
+                if (0 == this.alphabet) {
+                    this.alphabet = c;
+                } else if (standard != ('+' == this.alphabet || '/' == this.alphabet)) {
+                    this.mixed = this.position + i;
+                    this.mixedCharacter = c;
+                }
+            }
+        }
+
+        if (this.eof && -1 != this.mixed) {
+            throw this.decoder.mixedAlphabets(this.mixedCharacter, this.mixed);
+        }
+    }
+
+    private boolean isAlphabet(final int c) {
+        // the decoder replaces chars that are not ISO-8859-1 with '?'
+        return -1 != this.decoder.value(
+            c <= 0xff ?
+                c :
+                '?'
+        );
+    }
+
+    private final Base64.Decoder decoder;
+    private final byte pad;
+    private final boolean mime;
+
+    /**
+     * When true characters from both the standard and URL and filename safe alphabets fail at the end.
+     */
+    private final boolean withoutMixing;
+
+    private final Reader reader;
+
+    private final char[] chars = new char[BUFFER_LENGTH];
+
+    private final CharSequence view = new CharArray(this.chars);
+
+    /**
+     * The number of characters at the start of {@link #chars} carried from the last chunk.
+     */
+    private int carry;
+
+    /**
+     * The first character only found in one alphabet, or 0.
+     */
+    private char alphabet;
+
+    /**
+     * The offset of the first character from the other alphabet or -1.
+     */
+    private long mixed = -1;
+    private char mixedCharacter;
+
+    /**
+     * The offset within the {@link Reader} of the first character in {@link #chars}, used to report failures.
+     */
+    private long position;
+
+    private final byte[] bytes = new byte[BUFFER_LENGTH / 4 * 3];
+
+    private int next;
+    private int end;
+
+    private boolean eof;
+    private boolean closed;
+
+    @Override
+    public String toString() {
+        return this.decoder + " " + this.reader;
+    }
+
+    /**
+     * A {@link CharSequence} view of the char buffer given to the decoder, which avoids copying it to a String.
+     */
+    private final static class CharArray implements CharSequence {
+
+        CharArray(final char[] chars) {
+            super();
+            this.chars = chars;
+        }
+
+        @Override
+        public int length() {
+            return this.chars.length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return this.chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(final int start,
+                                        final int end) {
+            return new String(this.chars, start, end - start);
+        }
+
+        private final char[] chars;
+
+        @Override
+        public String toString() {
+            return new String(this.chars);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.j2cl.java.util;
+
+/**
+ * A {@link CharSequence} view of the encoded form of some bytes, with each character computed on demand from the
+ * group of 3 bytes holding it, and line separators placed by position. The bytes are not copied, so changes to them
+ * will be visible.
+ */
+final class Base64EncoderCharSequence implements CharSequence {
+
+    static Base64EncoderCharSequence with(final byte[] bytes,
+                                          final char[] alphabet,
+                                          final byte pad,
+                                          final int maxLineLength,
+                                          final byte[] separator,
+                                          final int length,
+                                          final boolean constantTime) {
+        return new Base64EncoderCharSequence(
+            bytes,
+            alphabet,
+            pad,
+            maxLineLength,
+            separator,
+            0,
+            length,
+            constantTime
+        );
+    }
+
+    private Base64EncoderCharSequence(final byte[] bytes,
+                                      final char[] alphabet,
+                                      final byte pad,
+                                      final int maxLineLength,
+                                      final byte[] separator,
+                                      final int start,
+                                      final int end,
+                                      final boolean constantTime) {
+        super();
+        this.bytes = bytes;
+        this.alphabet = alphabet;
+        this.pad = pad;
+        this.maxLineLength = maxLineLength;
+        this.separator = separator;
+        this.start = start;
+        this.end = end;
+        this.constantTime = constantTime;
+    }
+
+    @Override
+    public int length() {
+        return this.end - this.start;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= this.length()) {
+            throw new StringIndexOutOfBoundsException("Invalid index " + index + " not within 0.." + this.length());
+        }
+
+        int position = this.start + index;
+
+        final int maxLineLength = this.maxLineLength;
+        if (maxLineLength > 0) {
+            final byte[] separator = this.separator;
+            final int stride = maxLineLength + separator.length;
+            final int column = position % stride;
+
+            if (column >= maxLineLength) {
+                return (char) separator[column - maxLineLength];
+            }
+            position = position / stride * maxLineLength + column;
+        }
+
+        final byte[] bytes = this.bytes;
+        final int i = position / 4 * 3;
+        final int available = bytes.length - i;
+        final int k = position % 4;
+
+        // 1 byte fills 2 characters, 2 bytes 3 and 3 bytes 4, anything after is padding. Without padding the length
+        // stops before any pad.
+        if (k > available) {
+            return (char) this.pad;
+        }
+
+        final int bits = (bytes[i] & 0xff) << 16 |
+            (available > 1 ? (bytes[i + 1] & 0xff) << 8 : 0) |
+            (available > 2 ? bytes[i + 2] & 0xff : 0);
+        final int value = (bits >>> (18 - k * 6)) & 0x3f;
+        final char[] alphabet = this.alphabet;
+        return this.constantTime ?
+            (char) Base64.Encoder.constantTimeChar(value, alphabet[62], alphabet[63]) :
+            alphabet[value];
+    }
+
+    @Override
+    public CharSequence subSequence(final int start,
+                                    final int end) {
+        final int length = this.length();
+        if (start < 0 || start > end || end > length) {
+            throw new StringIndexOutOfBoundsException("Invalid range " + start + ".." + end + " not within 0.." + length);
+        }
+
+        return 0 == start && length == end ?
+            this :
+            new Base64EncoderCharSequence(
+                this.bytes,
+                this.alphabet,
+                this.pad,
+                this.maxLineLength,
+                this.separator,
+                this.start + start,
+                this.start + end,
+                this.constantTime
+            );
+    }
+
+    private final byte[] bytes;
+    private final char[] alphabet;
+    private final byte pad;
+    private final int maxLineLength;
+    private final byte[] separator;
+    private final int start;
+    private final int end;
+
+    /**
+     * When true characters are computed by {@link Base64.Encoder#constantTimeChar(int, int, int)} instead of read from
+     * the alphabet.
+     */
+    private final boolean constantTime;
+
+    @Override
+    public String toString() {
+        if (null == this.toString) {
+            final int length = this.length();
+            final char[] chars = new char[length];
+
+            for (int i = 0; i < length; i++) {
+                chars[i] = this.charAt(i);
+            }
+            this.toString = new String(chars);
+        }
+        return this.toString;
+    }
+
+    /**
+     * Lazily computed and cached.
+     */
+    private String toString;
+}
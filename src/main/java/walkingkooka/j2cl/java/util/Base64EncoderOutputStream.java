@@ -0,0 +1,204 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.j2cl.java.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * An {@link OutputStream} that encodes the bytes written to it, writing the characters to a {@link Writer}. Bytes
+ * are collected in a fixed buffer holding whole lines, which is encoded into a fixed char buffer when full, with a
+ * line separator written before each following chunk. The last partial chunk and any padding are only written by
+ * {@link #close()}, so memory is constant however many bytes are written.
+ */
+final class Base64EncoderOutputStream extends OutputStream {
+
+    /**
+     * The approximate number of bytes encoded at a time, rounded down to whole lines.
+     */
+    private final static int BUFFER_LENGTH = 3 * 1024;
+
+    /**
+     * Line bytes is the number of bytes that fill a line or 0 when the encoder has no lines.
+     */
+    static Base64EncoderOutputStream with(final Base64.Encoder encoder,
+                                          final int lineBytes,
+                                          final byte[] separator,
+                                          final Writer writer) {
+        final int bufferLength = lineBytes > 0 ?
+            Math.max(1, BUFFER_LENGTH / lineBytes) * lineBytes :
+            BUFFER_LENGTH;
+
+        return new Base64EncoderOutputStream(
+            encoder,
+            new byte[bufferLength],
+            new char[(int) encoder.encodedLength(bufferLength) + separator.length],
+            lineBytes > 0 ?
+                separator :
+                new byte[0],
+            writer
+        );
+    }
+
+    private Base64EncoderOutputStream(final Base64.Encoder encoder,
+                                      final byte[] bytes,
+                                      final char[] chars,
+                                      final byte[] separator,
+                                      final Writer writer) {
+        super();
+        this.encoder = encoder;
+        this.bytes = bytes;
+        this.chars = chars;
+        this.separator = separator;
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(final int value) throws IOException {
+        this.checkOpen();
+
+        this.bytes[this.count++] = (byte) value;
+        if (this.bytes.length == this.count) {
+            this.encode(this.bytes, 0, this.count);
+            this.count = 0;
+        }
+    }
+
+    @Override
+    public void write(final byte[] from,
+                      final int offset,
+                      final int length) throws IOException {
+        Base64.checkSlice(offset, length, from.length);
+        this.checkOpen();
+
+        final byte[] bytes = this.bytes;
+        final int bufferLength = bytes.length;
+
+        int i = offset;
+        int remaining = length;
+
+        // top up a partly filled buffer first, whole buffers are then encoded without being copied.
+        if (this.count > 0) {
+            final int copy = Math.min(remaining, bufferLength - this.count);
+            System.arraycopy(from, i, bytes, this.count, copy);
+            this.count += copy;
+            i += copy;
+            remaining -= copy;
+
+            if (bufferLength == this.count) {
+                this.encode(bytes, 0, bufferLength);
+                this.count = 0;
+            }
+        }
+
+        while (remaining >= bufferLength) {
+            this.encode(from, i, bufferLength);
+            i += bufferLength;
+            remaining -= bufferLength;
+        }
+
+        System.arraycopy(from, i, bytes, this.count, remaining);
+        this.count += remaining;
+    }
+
+    /**
+     * Encodes a full buffer or the last partial buffer, writing a separator first when a chunk was already written.
+     */
+    private void encode(final byte[] from,
+                        final int offset,
+                        final int length) throws IOException {
+        final char[] chars = this.chars;
+        int count = 0;
+
+        if (this.written) {
+            final byte[] separator = this.separator;
+            final int separatorLength = separator.length;
+            for (int i = 0; i < separatorLength; i++) {
+                chars[i] = (char) separator[i];
+            }
+            count = separatorLength;
+        }
+
+        count += this.encoder.encode(from, offset, length, chars, count);
+        this.writer.write(chars, 0, count);
+        this.written = true;
+    }
+
+    /**
+     * Flushes the {@link Writer}, bytes that do not complete a chunk remain buffered until more are written or the
+     * stream is closed.
+     */
+    @Override
+    public void flush() throws IOException {
+        this.checkOpen();
+        this.writer.flush();
+    }
+
+    /**
+     * Encodes any remaining bytes with padding and closes the {@link Writer}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (false == this.closed) {
+            this.closed = true;
+
+            if (this.count > 0) {
+                this.encode(this.bytes, 0, this.count);
+                this.count = 0;
+            }
+            this.writer.close();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream is closed");
+        }
+    }
+
+    private final Base64.Encoder encoder;
+
+    private final byte[] bytes;
+
+    /**
+     * The number of bytes waiting in {@link #bytes}.
+     */
+    private int count;
+
+    private final char[] chars;
+
+    /**
+     * The separator written between lines, which is empty without lines.
+     */
+    private final byte[] separator;
+
+    /**
+     * True once any characters were written, after which each chunk starts a new line.
+     */
+    private boolean written;
+
+    private boolean closed;
+
+    private final Writer writer;
+
+    @Override
+    public String toString() {
+        return this.encoder + " " + this.writer;
+    }
+}
@@ -17,27 +17,32 @@
 
 package walkingkooka.j2cl.java.util;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-
 enum Base64EncoderPadding {
     WITH {
         @Override
-        void writeSeparator(final ByteArrayOutputStream bytes,
-                            final byte[] separator) throws IOException {
-            bytes.write(separator);
+        int write1(final byte[] to,
+                   final int offset,
+                   final byte pad) {
+            to[offset] = pad;
+            to[offset + 1] = pad;
+            return 2;
+        }
+
+        @Override
+        int write2(final byte[] to,
+                   final int offset,
+                   final byte pad) {
+            to[offset] = pad;
+            return 1;
         }
 
         @Override
-        int write1(final ByteArrayOutputStream bytes) throws IOException {
-            bytes.write(Base64.PAD);
-            bytes.write(Base64.PAD);
+        int length1() {
             return 2;
         }
 
         @Override
-        int write2(final ByteArrayOutputStream bytes) throws IOException {
-            bytes.write(Base64.PAD);
+        int length2() {
             return 1;
         }
 
@@ -49,17 +54,26 @@ enum Base64EncoderPadding {
 
     WITHOUT {
         @Override
-        void writeSeparator(final ByteArrayOutputStream bytes,
-                            final byte[] separator) {
+        int write1(final byte[] to,
+                   final int offset,
+                   final byte pad) {
+            return 0;
+        }
+
+        @Override
+        int write2(final byte[] to,
+                   final int offset,
+                   final byte pad) {
+            return 0;
         }
 
         @Override
-        int write1(final ByteArrayOutputStream bytes) {
+        int length1() {
             return 0;
         }
 
         @Override
-        int write2(final ByteArrayOutputStream bytes) {
+        int length2() {
             return 0;
         }
 
@@ -69,10 +83,27 @@ enum Base64EncoderPadding {
         }
     };
 
-    abstract void writeSeparator(final ByteArrayOutputStream bytes,
-                                 final byte[] separator) throws IOException;
+    /**
+     * Writes the padding following a final single byte, returning the number of pad characters written.
+     */
+    abstract int write1(final byte[] to,
+                        final int offset,
+                        final byte pad);
+
+    /**
+     * Writes the padding following a final two bytes, returning the number of pad characters written.
+     */
+    abstract int write2(final byte[] to,
+                        final int offset,
+                        final byte pad);
 
-    abstract int write1(final ByteArrayOutputStream bytes) throws IOException;
+    /**
+     * The number of pad characters written by {@link #write1(byte[], int, byte)}.
+     */
+    abstract int length1();
 
-    abstract int write2(final ByteArrayOutputStream bytes) throws IOException;
+    /**
+     * The number of pad characters written by {@link #write2(byte[], int, byte)}.
+     */
+    abstract int length2();
 }
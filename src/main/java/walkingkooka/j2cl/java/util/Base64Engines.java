@@ -0,0 +1,288 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.j2cl.java.util;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * The input lengths at which each {@link Base64.Engine} becomes the fastest. Fixed defaults are used unless the
+ * properties file named by the {@link #THRESHOLDS_PROPERTY} system property gives any of the keys {@link #SWAR_KEY},
+ * {@link #ENCODE_PARALLEL_KEY} and {@link #DECODE_PARALLEL_KEY}. Such a file may be written by {@link #main(String[])},
+ * which times each engine on the machine it runs. The J2CL and GWT builds replace this with a version in the super
+ * source directory with fixed thresholds.
+ */
+final class Base64Engines {
+
+    /**
+     * Forces a single {@link Base64.Engine} for every call, useful for testing an engine.
+     */
+    final static String ENGINE_PROPERTY = "walkingkooka.j2cl.java.util.Base64.engine";
+
+    /**
+     * The path of a properties file holding the thresholds, which replace the defaults.
+     */
+    final static String THRESHOLDS_PROPERTY = "walkingkooka.j2cl.java.util.Base64.engineThresholds";
+
+    final static String SWAR_KEY = "swar";
+
+    final static String ENCODE_PARALLEL_KEY = "encodeParallel";
+
+    final static String DECODE_PARALLEL_KEY = "decodeParallel";
+
+    /**
+     * The engine given by {@link #ENGINE_PROPERTY} or null.
+     */
+    final static Base64.Engine FORCED = forced();
+
+    private static Base64.Engine forced() {
+        final String engine = System.getProperty(ENGINE_PROPERTY);
+        return null != engine ?
+            Base64.Engine.valueOf(engine) :
+            null;
+    }
+
+    private final static Properties THRESHOLDS = thresholds();
+
+    private static Properties thresholds() {
+        final String path = System.getProperty(THRESHOLDS_PROPERTY);
+        if (null == path) {
+            return null;
+        }
+
+        final Properties properties = new Properties();
+        try (final InputStream input = new FileInputStream(path)) {
+            properties.load(input);
+        } catch (final IOException cause) {
+            throw new IllegalStateException("Unable to read " + THRESHOLDS_PROPERTY + " " + path, cause);
+        }
+        return properties;
+    }
+
+    /**
+     * Inputs shorter than this are never given to {@link Base64.Engine#PARALLEL}.
+     */
+    final static int PARALLEL_MINIMUM = 64 * 1024;
+
+    /**
+     * The default for {@link #SWAR}, twice the length where {@link #calibrate()} found the SWAR decoder catching up
+     * with the table on JDK 17, leaving room for JVMs that are slower to optimise it.
+     */
+    final static int DEFAULT_SWAR = 16;
+
+    /**
+     * The default for both parallel thresholds, large enough that splitting the work pays for the fork join tasks.
+     */
+    final static int DEFAULT_PARALLEL = 1024 * 1024;
+
+    /**
+     * Inputs with at least this many characters are decoded with {@link Base64.Engine#SWAR}.
+     */
+    final static int SWAR = threshold(SWAR_KEY, DEFAULT_SWAR);
+
+    /**
+     * Holds the parallel thresholds, which are never used by most calls.
+     */
+    static final class Parallel {
+
+        /**
+         * Inputs with at least this many bytes are encoded with {@link Base64.Engine#PARALLEL}.
+         */
+        final static int ENCODE = threshold(ENCODE_PARALLEL_KEY, defaultParallel());
+
+        /**
+         * Inputs with at least this many characters are decoded with {@link Base64.Engine#PARALLEL}.
+         */
+        final static int DECODE = threshold(DECODE_PARALLEL_KEY, defaultParallel());
+
+        /**
+         * Stop creation
+         */
+        private Parallel() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * A single processor never gains from {@link Base64.Engine#PARALLEL}.
+     */
+    private static int defaultParallel() {
+        return Runtime.getRuntime().availableProcessors() < 2 ?
+            Integer.MAX_VALUE :
+            DEFAULT_PARALLEL;
+    }
+
+    private static int threshold(final String key,
+                                 final int defaultValue) {
+        final Properties thresholds = THRESHOLDS;
+        final String value = null != thresholds ?
+            thresholds.getProperty(key) :
+            null;
+
+        return null != value ?
+            Integer.parseInt(value.trim()) :
+            defaultValue;
+    }
+
+    /**
+     * Times each engine on this machine and writes the thresholds to the file given as the only argument, ready to be
+     * named by {@link #THRESHOLDS_PROPERTY}, or to the console when there is no argument.
+     */
+    public static void main(final String[] args) throws IOException {
+        final Properties thresholds = calibrate();
+
+        if (0 == args.length) {
+            thresholds.store(System.out, null);
+        } else {
+            try (final OutputStream output = new FileOutputStream(args[0])) {
+                thresholds.store(output, null);
+            }
+        }
+    }
+
+    /**
+     * Times each engine and returns the thresholds with the keys {@link #SWAR_KEY}, {@link #ENCODE_PARALLEL_KEY} and
+     * {@link #DECODE_PARALLEL_KEY}. This takes a few seconds and the results vary between runs, so it is never called
+     * unless asked for.
+     */
+    static Properties calibrate() {
+        final Properties thresholds = new Properties();
+        thresholds.setProperty(SWAR_KEY, String.valueOf(calibrateSwar()));
+        thresholds.setProperty(ENCODE_PARALLEL_KEY, String.valueOf(calibrateParallel(false)));
+        thresholds.setProperty(DECODE_PARALLEL_KEY, String.valueOf(calibrateParallel(true)));
+        return thresholds;
+    }
+
+    /**
+     * Returns the first length, doubling from 8 up to 1024, where {@link Base64.Engine#SWAR} decodes at least as fast
+     * as {@link Base64.Engine#TABLE}, or {@link Integer#MAX_VALUE} when it never does.
+     */
+    private static int calibrateSwar() {
+        for (int length = 8; length <= 1024; length *= 2) {
+            final int repeat = 1024 / length;
+            final Timing table = new Timing(length, Base64.Engine.TABLE, true);
+            final Timing swar = new Timing(length, Base64.Engine.SWAR, true);
+
+            if (swar.time(repeat) <= table.time(repeat)) {
+                return length;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the first length, growing by 4 times up to 4MB, where parallel beats sequential, or
+     * {@link Integer#MAX_VALUE} when it never does or there is a single processor.
+     */
+    private static int calibrateParallel(final boolean decode) {
+        if (Runtime.getRuntime().availableProcessors() < 2) {
+            return Integer.MAX_VALUE;
+        }
+
+        for (int length = PARALLEL_MINIMUM; length <= 4 * 1024 * 1024; length *= 4) {
+            final Timing sequential = new Timing(
+                length,
+                decode ?
+                    Base64.Engine.SWAR :
+                    Base64.Engine.TABLE,
+                decode
+            );
+            final Timing parallel = new Timing(length, Base64.Engine.PARALLEL, decode);
+
+            if (parallel.time(1) < sequential.time(1)) {
+                return length;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Times encoding or decoding an input of about the given length with an engine.
+     */
+    private static final class Timing {
+
+        /**
+         * The number of times the engine is timed, of which the fastest counts.
+         */
+        private final static int SAMPLES = 5;
+
+        Timing(final int length,
+               final Base64.Engine engine,
+               final boolean decode) {
+            super();
+
+            final byte[] bytes = new byte[length / 4 * 3];
+            new Random(length).nextBytes(bytes);
+
+            final byte[] encoded = new byte[length];
+            Base64.Encoder.RFC4648.encodeAll(bytes, encoded, Base64.Engine.TABLE);
+
+            this.from = decode ?
+                encoded :
+                bytes;
+            this.to = decode ?
+                bytes :
+                encoded;
+            this.engine = engine;
+            this.decode = decode;
+        }
+
+        /**
+         * Runs the engine once untimed, then returns the fastest time to run it repeat times.
+         */
+        long time(final int repeat) {
+            this.run();
+
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < SAMPLES; i++) {
+                final long start = System.nanoTime();
+                for (int j = 0; j < repeat; j++) {
+                    this.run();
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            return best;
+        }
+
+        private void run() {
+            if (this.decode) {
+                Base64.Decoder.RFC4648.decodeAll(this.from, null, this.from.length, this.to, this.engine);
+            } else {
+                Base64.Encoder.RFC4648.encodeAll(this.from, this.to, this.engine);
+            }
+        }
+
+        private final byte[] from;
+        private final byte[] to;
+        private final Base64.Engine engine;
+        private final boolean decode;
+    }
+
+    /**
+     * Stop creation
+     */
+    private Base64Engines() {
+        throw new UnsupportedOperationException();
+    }
+}
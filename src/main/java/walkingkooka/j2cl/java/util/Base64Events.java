@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.j2cl.java.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emits a Java Flight Recorder event for each encode or decode of at least {@link #THRESHOLD} bytes or characters, so
+ * a GC or latency spike may be matched to a large operation. The threshold defaults to 1MB and may be changed with
+ * the {@link #THRESHOLD_PROPERTY} system property. The J2CL and GWT builds replace this with a version in the super
+ * source directory that never emits events.
+ */
+final class Base64Events {
+
+    final static String THRESHOLD_PROPERTY = "walkingkooka.j2cl.java.util.Base64.eventThreshold";
+
+    /**
+     * Operations with a smaller input are not recorded.
+     */
+    final static int THRESHOLD = Integer.getInteger(THRESHOLD_PROPERTY, 1024 * 1024);
+
+    /**
+     * Returns a started event if the input is large enough and the event is enabled in a recording, otherwise null.
+     */
+    static Object begin(final int length) {
+        Event event = null;
+
+        if (length >= THRESHOLD) {
+            event = new Event();
+            if (event.isEnabled()) {
+                event.begin();
+            } else {
+                event = null;
+            }
+        }
+
+        return event;
+    }
+
+    /**
+     * Ends and commits an event returned by {@link #begin(int)}, ignoring null.
+     */
+    static void end(final Object event,
+                    final String operation,
+                    final Object variant,
+                    final int input,
+                    final int output,
+                    final String engine) {
+        if (null != event) {
+            final Event e = (Event) event;
+            e.end();
+
+            if (e.shouldCommit()) {
+                e.operation = operation;
+                e.variant = variant.toString();
+                e.input = input;
+                e.output = output;
+                e.engine = engine;
+                e.commit();
+            }
+        }
+    }
+
+    @Name("walkingkooka.j2cl.java.util.Base64")
+    @Label("Base64")
+    @Category("Base64")
+    @Description("A large base64 encode or decode")
+    static final class Event extends jdk.jfr.Event {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Variant")
+        String variant;
+
+        @Label("Input Size")
+        @DataAmount
+        int input;
+
+        @Label("Output Size")
+        @DataAmount
+        int output;
+
+        @Label("Engine")
+        String engine;
+    }
+
+    /**
+     * Stop creation
+     */
+    private Base64Events() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.j2cl.java.util;
+
+/**
+ * Hooks that let the JavaScript build hand whole standard padded encodes and decodes to the engine's native base64
+ * support. This JVM version always declines, the J2CL and GWT builds replace it with the version in the super source
+ * directory.
+ */
+final class Base64Platform {
+
+    /**
+     * Returns the standard padded encoding of the bytes or null if the platform declines.
+     */
+    static String encode(final byte[] from) {
+        return null;
+    }
+
+    /**
+     * Returns the decoded bytes of a standard padded encoding or null if the platform declines, which it also does
+     * for any invalid encoding so the portable decoder can report it.
+     */
+    static byte[] decode(final String encoded) {
+        return null;
+    }
+
+    /**
+     * Stop creation
+     */
+    private Base64Platform() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.j2cl.java.util;
+
+import java.util.Arrays;
+
+/**
+ * A SIMD within a register (SWAR) decoder, which validates and translates 8 encoded characters at a time, each held
+ * in one byte lane of a long. The alphabet is broken into runs of consecutive characters, each run is tested with
+ * two lane wise range comparisons and translated with a single lane wise add, so no table lookups or branches
+ * happen per character.
+ */
+final class Base64Swar {
+
+    /**
+     * Alphabets with more runs than this are left to the scalar table decoder.
+     */
+    private final static int MAX_RUNS = 8;
+
+    /**
+     * Returned by {@link #translate(long)} when any lane is not a member of the alphabet.
+     */
+    final static long INVALID = -1L;
+
+    private final static long LANES = 0x0101010101010101L;
+    private final static long HIGH = 0x8080808080808080L;
+    private final static long LOW = ~HIGH;
+
+    /**
+     * Factory that returns null if the alphabet is not ASCII or has too many runs.
+     */
+    static Base64Swar with(final char[] alphabet) {
+        final int[] lookup = new int[0x80];
+        Arrays.fill(lookup, -1);
+
+        for (int i = 0; i < alphabet.length; i++) {
+            final char c = alphabet[i];
+            if (c >= 0x80) {
+                return null;
+            }
+            lookup[c] = i;
+        }
+
+        return with(lookup);
+    }
+
+    /**
+     * Factory that accepts a lookup table giving the 6 bit value of each character or -1, which allows several
+     * characters to share a value. Returns null if any character that is not ASCII has a value or there are too many
+     * runs, where a run is consecutive characters with consecutive values.
+     */
+    static Base64Swar with(final int[] lookup) {
+        final long[] lows = new long[MAX_RUNS];
+        final long[] highs = new long[MAX_RUNS];
+        final long[] deltas = new long[MAX_RUNS];
+
+        final int length = lookup.length;
+        int runs = 0;
+        int c = 0;
+
+        while (c < length) {
+            final int value = lookup[c];
+            if (-1 == value) {
+                c++;
+                continue;
+            }
+            if (c >= 0x80 || runs == MAX_RUNS) {
+                return null;
+            }
+
+            int last = c;
+            while (last + 1 < 0x80 && last + 1 < length && lookup[last + 1] == lookup[last] + 1) {
+                last++;
+            }
+
+            // lane + (0x80 - lo) sets the high bit when lane >= lo
+            lows[runs] = (0x80 - c) * LANES;
+            // lane + (0x7f - hi) sets the high bit when lane > hi
+            highs[runs] = (0x7f - last) * LANES;
+            deltas[runs] = ((value - c) & 0xff) * LANES;
+
+            runs++;
+            c = last + 1;
+        }
+
+        return new Base64Swar(
+            copy(lows, runs),
+            copy(highs, runs),
+            copy(deltas, runs)
+        );
+    }
+
+    private static long[] copy(final long[] values,
+                               final int length) {
+        final long[] copy = new long[length];
+        System.arraycopy(values, 0, copy, 0, length);
+        return copy;
+    }
+
+    private Base64Swar(final long[] lows,
+                       final long[] highs,
+                       final long[] deltas) {
+        super();
+        this.lows = lows;
+        this.highs = highs;
+        this.deltas = deltas;
+    }
+
+    /**
+     * Loads 8 bytes starting at offset, with the first byte in the most significant lane.
+     */
+    static long load(final byte[] from,
+                     final int offset) {
+        return (from[offset] & 0xffL) << 56 |
+            (from[offset + 1] & 0xffL) << 48 |
+            (from[offset + 2] & 0xffL) << 40 |
+            (from[offset + 3] & 0xffL) << 32 |
+            (from[offset + 4] & 0xffL) << 24 |
+            (from[offset + 5] & 0xffL) << 16 |
+            (from[offset + 6] & 0xffL) << 8 |
+            (from[offset + 7] & 0xffL);
+    }
+
+    /**
+     * Loads 8 chars starting at offset, with the first char in the most significant lane. Chars that are not ASCII
+     * become 0x80 so they are never mistaken for alphabet members.
+     */
+    static long load(final CharSequence from,
+                     final int offset) {
+        return (long) lane(from.charAt(offset)) << 56 |
+            (long) lane(from.charAt(offset + 1)) << 48 |
+            (long) lane(from.charAt(offset + 2)) << 40 |
+            (long) lane(from.charAt(offset + 3)) << 32 |
+            (long) lane(from.charAt(offset + 4)) << 24 |
+            (long) lane(from.charAt(offset + 5)) << 16 |
+            (long) lane(from.charAt(offset + 6)) << 8 |
+            (long) lane(from.charAt(offset + 7));
+    }
+
+    private static int lane(final char c) {
+        return c < 0x80 ?
+            c :
+            0x80;
+    }
+
+    /**
+     * Tests if all 8 characters are members of the alphabet without translating them.
+     */
+    boolean isValid(final long word) {
+        if (0 != (word & HIGH)) {
+            return false;
+        }
+
+        final long[] lows = this.lows;
+        final long[] highs = this.highs;
+        final int count = lows.length;
+
+        long valid = 0;
+        for (int i = 0; i < count; i++) {
+            valid |= (word + lows[i]) & ~(word + highs[i]);
+        }
+
+        return HIGH == (valid & HIGH);
+    }
+
+    /**
+     * Translates each of the 8 characters into its 6 bit value, returning {@link #INVALID} if any character including
+     * pad, separators or non ASCII is not part of the alphabet.
+     */
+    long translate(final long word) {
+        if (0 != (word & HIGH)) {
+            return INVALID;
+        }
+
+        final long[] lows = this.lows;
+        final long[] highs = this.highs;
+        final long[] deltas = this.deltas;
+        final int count = lows.length;
+
+        long valid = 0;
+        long sextets = 0;
+
+        for (int i = 0; i < count; i++) {
+            final long in = (word + lows[i]) & ~(word + highs[i]) & HIGH;
+            final long delta = deltas[i];
+
+            // lane wise add without carries between lanes.
+            final long sum = ((word & LOW) + (delta & LOW)) ^ ((word ^ delta) & HIGH);
+
+            sextets |= sum & ((in >>> 7) * 0xff);
+            valid |= in;
+        }
+
+        return HIGH == valid ?
+            sextets :
+            INVALID;
+    }
+
+    private final long[] lows;
+    private final long[] highs;
+    private final long[] deltas;
+
+    /**
+     * Returns a word with the high bit set in each lane equal to the given byte value and all other bits clear.
+     */
+    static long matches(final long word,
+                        final int value) {
+        final long zeros = word ^ (value & 0xff) * LANES;
+        // the high bit of each lane is set unless the lane is zero, without borrows crossing lanes.
+        return ~(((zeros & LOW) + LOW) | zeros) & HIGH;
+    }
+
+    /**
+     * Packs the 8 sextets in the lanes into a 48 bit value, first sextet in the most significant bits.
+     */
+    static long pack(final long sextets) {
+        final long pairs = (sextets & 0x3f003f003f003f00L) >>> 2 | (sextets & 0x003f003f003f003fL);
+        final long quads = (pairs & 0x0fff00000fff0000L) >>> 4 | (pairs & 0x00000fff00000fffL);
+        return (quads >>> 32) << 24 | (quads & 0xffffffL);
+    }
+
+    /**
+     * Writes the 6 bytes of a 48 bit value returned by {@link #pack(long)}.
+     */
+    static void store(final long bits,
+                      final byte[] to,
+                      final int offset) {
+        to[offset] = (byte) (bits >>> 40);
+        to[offset + 1] = (byte) (bits >>> 32);
+        to[offset + 2] = (byte) (bits >>> 24);
+        to[offset + 3] = (byte) (bits >>> 16);
+        to[offset + 4] = (byte) (bits >>> 8);
+        to[offset + 5] = (byte) bits;
+    }
+}
@@ -28,6 +28,7 @@ import java.util.Base64;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
 
 @J2clTestInput(JavaUtilBase64TestJ2cl.class)
 public class JavaUtilBase64TestJ2cl {
@@ -60,6 +61,55 @@ public class JavaUtilBase64TestJ2cl {
         assertArrayEquals(rawBytes, Base64.getDecoder().decode(encoded));
     }
 
+    @Test
+    public void testEncodeDecodeAllBytesRoundtrip() {
+        for (int length = 0; length < 260; length++) {
+            final byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte) (i * 7 - 128);
+            }
+
+            final String encoded = Base64.getEncoder().encodeToString(bytes);
+            assertEquals("encodeToString " + length,
+                new String(Base64.getEncoder().encode(bytes), StandardCharsets.US_ASCII),
+                encoded);
+            assertArrayEquals("decode " + CharSequences.quoteAndEscape(encoded),
+                bytes,
+                Base64.getDecoder().decode(encoded));
+        }
+    }
+
+    @Test
+    public void testDecodeWithoutPadding() {
+        assertArrayEquals("abc12".getBytes(utf8()),
+            Base64.getDecoder().decode("YWJjMTI"));
+    }
+
+    @Test
+    public void testDecodeNonZeroTrailingBits() {
+        assertArrayEquals(new byte[]{'A'},
+            Base64.getDecoder().decode("QR=="));
+    }
+
+    @Test
+    public void testDecodeWhitespaceFails() {
+        this.decodeFails("YWJj MTIz");
+        this.decodeFails("YWJj\nMTIz");
+    }
+
+    @Test
+    public void testDecodeUrlSafeFails() {
+        this.decodeFails("-_8=");
+    }
+
+    private void decodeFails(final String encoded) {
+        try {
+            Base64.getDecoder().decode(encoded);
+            fail("decode " + CharSequences.quoteAndEscape(encoded) + " should have failed");
+        } catch (final IllegalArgumentException expected) {
+        }
+    }
+
     private static Charset utf8() {
         return StandardCharsets.UTF_8;
     }
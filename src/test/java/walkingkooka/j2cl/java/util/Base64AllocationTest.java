@@ -0,0 +1,481 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.j2cl.java.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Guards the allocation budget of every encode and decode entry point, using the bytes the current thread has
+ * allocated, along with a coarse throughput floor against {@link java.util.Base64}, so a regression fails the build.
+ */
+public final class Base64AllocationTest {
+
+    /**
+     * Large enough that the streaming methods go through many chunks, and that any extra copy of the input or
+     * output is far larger than {@link #SLACK}.
+     */
+    private final static int LENGTH = 48 * 1024 + 1;
+
+    /**
+     * Array headers, the odd small object and any bytes counted by the measurement itself.
+     */
+    private final static long SLACK = 256;
+
+    private final static int WARMUP = 200;
+
+    private final static int RUNS = 10;
+
+    private final static Base64.Updater IGNORE = (bytes, offset, length) -> {
+    };
+
+    /**
+     * Each measured result is written here, so it escapes and cannot be optimized away.
+     */
+    private static Object sink;
+
+    private final byte[] decoded = random(LENGTH);
+
+    // encoder..........................................................................................................
+
+    @Test
+    public void testEncodeIntoArrayRfc4648() {
+        this.encodeIntoArrayAndCheck(Base64.getEncoder());
+    }
+
+    @Test
+    public void testEncodeIntoArrayUrlSafe() {
+        this.encodeIntoArrayAndCheck(Base64.getUrlEncoder());
+    }
+
+    @Test
+    public void testEncodeIntoArrayMime() {
+        this.encodeIntoArrayAndCheck(Base64.getMimeEncoder());
+    }
+
+    private void encodeIntoArrayAndCheck(final Base64.Encoder encoder) {
+        final byte[] decoded = this.decoded;
+        final byte[] to = new byte[encoder.encode(decoded).length];
+
+        this.allocatedAndCheck(
+            "encode(byte[], byte[])",
+            0,
+            () -> sink = encoder.encode(decoded, to)
+        );
+    }
+
+    @Test
+    public void testEncodeIntoCharsRfc4648() {
+        this.encodeIntoCharsAndCheck(Base64.getEncoder());
+    }
+
+    @Test
+    public void testEncodeIntoCharsUrlSafe() {
+        this.encodeIntoCharsAndCheck(Base64.getUrlEncoder());
+    }
+
+    @Test
+    public void testEncodeIntoCharsMime() {
+        this.encodeIntoCharsAndCheck(Base64.getMimeEncoder());
+    }
+
+    private void encodeIntoCharsAndCheck(final Base64.Encoder encoder) {
+        final byte[] decoded = this.decoded;
+        final String expected = encoder.encodeToString(decoded);
+        final char[] to = new char[expected.length()];
+
+        this.allocatedAndCheck(
+            "encode(byte[], int, int, char[], int)",
+            0,
+            () -> sink = encoder.encode(decoded, 0, decoded.length, to, 0)
+        );
+        assertEquals(expected, new String(to));
+    }
+
+    @Test
+    public void testEncodeInPlaceRfc4648() {
+        this.encodeInPlaceAndCheck(Base64.getEncoder());
+    }
+
+    @Test
+    public void testEncodeInPlaceUrlSafe() {
+        this.encodeInPlaceAndCheck(Base64.getUrlEncoder());
+    }
+
+    @Test
+    public void testEncodeInPlaceMime() {
+        this.encodeInPlaceAndCheck(Base64.getMimeEncoder());
+    }
+
+    @Test
+    public void testEncodeInPlaceConstantTimeRfc4648() {
+        this.encodeInPlaceAndCheck(Base64.getEncoder().constantTime());
+    }
+
+    @Test
+    public void testEncodeInPlaceConstantTimeMime() {
+        this.encodeInPlaceAndCheck(Base64.getMimeEncoder().constantTime());
+    }
+
+    private void encodeInPlaceAndCheck(final Base64.Encoder encoder) {
+        final byte[] decoded = this.decoded;
+        final byte[] buffer = new byte[encoder.encode(decoded).length];
+
+        this.allocatedAndCheck(
+            "encodeInPlace",
+            0,
+            () -> {
+                System.arraycopy(decoded, 0, buffer, 0, decoded.length);
+                sink = encoder.encodeInPlace(buffer, 0, decoded.length);
+            }
+        );
+    }
+
+    @Test
+    public void testEncodeExactRfc4648() {
+        this.encodeExactAndCheck(Base64.getEncoder());
+    }
+
+    @Test
+    public void testEncodeExactUrlSafe() {
+        this.encodeExactAndCheck(Base64.getUrlEncoder());
+    }
+
+    @Test
+    public void testEncodeExactMime() {
+        this.encodeExactAndCheck(Base64.getMimeEncoder());
+    }
+
+    @Test
+    public void testEncodeExactWithoutPadding() {
+        this.encodeExactAndCheck(Base64.getEncoder().withoutPadding());
+    }
+
+    private void encodeExactAndCheck(final Base64.Encoder encoder) {
+        final byte[] decoded = this.decoded;
+        final int length = Math.toIntExact(encoder.encodedLength(decoded.length));
+
+        assertEquals(length, encoder.encode(decoded).length, "encode(byte[]) length");
+        this.allocatedAndCheck(
+            "encode(byte[])",
+            length,
+            () -> sink = encoder.encode(decoded)
+        );
+        // the String holds its own copy of the encoded bytes
+        this.allocatedAndCheck(
+            "encodeToString",
+            2 * length,
+            () -> sink = encoder.encodeToString(decoded)
+        );
+    }
+
+    @Test
+    public void testEncodeAndUpdateRfc4648() {
+        this.encodeAndUpdateAndCheck(Base64.getEncoder());
+    }
+
+    @Test
+    public void testEncodeAndUpdateMime() {
+        this.encodeAndUpdateAndCheck(Base64.getMimeEncoder());
+    }
+
+    private void encodeAndUpdateAndCheck(final Base64.Encoder encoder) {
+        final byte[] decoded = this.decoded;
+
+        this.allocatedAndCheck(
+            "encodeAndUpdate",
+            Math.toIntExact(encoder.encodedLength(decoded.length)),
+            () -> sink = encoder.encodeAndUpdate(decoded, IGNORE)
+        );
+    }
+
+    // decoder..........................................................................................................
+
+    @Test
+    public void testDecodeIntoArrayRfc4648() {
+        this.decodeIntoArrayAndCheck(Base64.getEncoder(), Base64.getDecoder());
+    }
+
+    @Test
+    public void testDecodeIntoArrayUrlSafe() {
+        this.decodeIntoArrayAndCheck(Base64.getUrlEncoder(), Base64.getUrlDecoder());
+    }
+
+    @Test
+    public void testDecodeIntoArrayMime() {
+        this.decodeIntoArrayAndCheck(Base64.getMimeEncoder(), Base64.getMimeDecoder());
+    }
+
+    private void decodeIntoArrayAndCheck(final Base64.Encoder encoder,
+                                         final Base64.Decoder decoder) {
+        final byte[] encoded = encoder.encode(this.decoded);
+        final byte[] to = new byte[LENGTH];
+
+        this.allocatedAndCheck(
+            "decode(byte[], byte[])",
+            0,
+            () -> sink = decoder.decode(encoded, to)
+        );
+        assertTrue(Arrays.equals(this.decoded, to), "decoded");
+    }
+
+    @Test
+    public void testDecodeInPlaceRfc4648() {
+        this.decodeInPlaceAndCheck(Base64.getEncoder(), Base64.getDecoder());
+    }
+
+    @Test
+    public void testDecodeInPlaceUrlSafe() {
+        this.decodeInPlaceAndCheck(Base64.getUrlEncoder(), Base64.getUrlDecoder());
+    }
+
+    @Test
+    public void testDecodeInPlaceMime() {
+        this.decodeInPlaceAndCheck(Base64.getMimeEncoder(), Base64.getMimeDecoder());
+    }
+
+    private void decodeInPlaceAndCheck(final Base64.Encoder encoder,
+                                       final Base64.Decoder decoder) {
+        final byte[] encoded = encoder.encode(this.decoded);
+        final byte[] buffer = new byte[encoded.length];
+
+        this.allocatedAndCheck(
+            "decodeInPlace",
+            0,
+            () -> {
+                System.arraycopy(encoded, 0, buffer, 0, encoded.length);
+                sink = decoder.decodeInPlace(buffer, 0, encoded.length);
+            }
+        );
+    }
+
+    @Test
+    public void testDecodeExactRfc4648() {
+        this.decodeExactAndCheck(Base64.getEncoder(), Base64.getDecoder());
+    }
+
+    @Test
+    public void testDecodeExactUrlSafe() {
+        this.decodeExactAndCheck(Base64.getUrlEncoder(), Base64.getUrlDecoder());
+    }
+
+    @Test
+    public void testDecodeExactMime() {
+        this.decodeExactAndCheck(Base64.getMimeEncoder(), Base64.getMimeDecoder());
+    }
+
+    @Test
+    public void testDecodeExactWithoutPadding() {
+        this.decodeExactAndCheck(Base64.getEncoder().withoutPadding(), Base64.getDecoder());
+    }
+
+    private void decodeExactAndCheck(final Base64.Encoder encoder,
+                                     final Base64.Decoder decoder) {
+        final byte[] encoded = encoder.encode(this.decoded);
+        final String encodedString = new String(encoded, StandardCharsets.US_ASCII);
+
+        assertEquals(LENGTH, decoder.decode(encoded).length, "decode(byte[]) length");
+        this.allocatedAndCheck(
+            "decode(byte[])",
+            LENGTH,
+            () -> sink = decoder.decode(encoded)
+        );
+        this.allocatedAndCheck(
+            "decode(String)",
+            LENGTH,
+            () -> sink = decoder.decode(encodedString)
+        );
+    }
+
+    @Test
+    public void testDecodeAndUpdateRfc4648() {
+        this.decodeAndUpdateAndCheck(Base64.getEncoder(), Base64.getDecoder());
+    }
+
+    @Test
+    public void testDecodeAndUpdateMime() {
+        this.decodeAndUpdateAndCheck(Base64.getMimeEncoder(), Base64.getMimeDecoder());
+    }
+
+    private void decodeAndUpdateAndCheck(final Base64.Encoder encoder,
+                                         final Base64.Decoder decoder) {
+        final byte[] encoded = encoder.encode(this.decoded);
+        final String encodedString = new String(encoded, StandardCharsets.US_ASCII);
+
+        this.allocatedAndCheck(
+            "decodeAndUpdate(byte[])",
+            LENGTH,
+            () -> sink = decoder.decodeAndUpdate(encoded, IGNORE)
+        );
+        this.allocatedAndCheck(
+            "decodeAndUpdate(String)",
+            LENGTH,
+            () -> sink = decoder.decodeAndUpdate(encodedString, IGNORE)
+        );
+    }
+
+    // cache............................................................................................................
+
+    /**
+     * Many hits are measured together, so even a small key allocated by each lookup is far larger than {@link #SLACK}.
+     */
+    @Test
+    public void testEncoderCacheHit() {
+        final Base64.EncoderCache cache = Base64.getEncoder().cache(LENGTH);
+        final byte[] decoded = Arrays.copyOf(this.decoded, 48);
+        final String expected = cache.encodeToString(decoded);
+
+        this.allocatedAndCheck(
+            "EncoderCache.encodeToString(byte[])",
+            0,
+            () -> {
+                for (int i = 0; i < 100; i++) {
+                    sink = cache.encodeToString(decoded);
+                }
+            }
+        );
+        assertEquals(expected, sink);
+    }
+
+    /**
+     * Runs the task enough times to be compiled, then checks the fewest bytes allocated by a single run is within
+     * the expected bytes plus {@link #SLACK}.
+     */
+    private void allocatedAndCheck(final String label,
+                                   final long expected,
+                                   final Runnable task) {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(
+            threads instanceof com.sun.management.ThreadMXBean &&
+                ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported(),
+            "thread allocated bytes not supported"
+        );
+        final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        allocations.setThreadAllocatedMemoryEnabled(true);
+
+        final long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            final long before = allocations.getThreadAllocatedBytes(thread);
+            task.run();
+            least = Math.min(least, allocations.getThreadAllocatedBytes(thread) - before);
+        }
+
+        final long allocated = least;
+        assertTrue(
+            allocated <= expected + SLACK,
+            () -> label + " allocated " + allocated + " bytes, expected " + expected + " + " + SLACK
+        );
+    }
+
+    // throughput.......................................................................................................
+
+    /**
+     * The fraction of the throughput of {@link java.util.Base64} that must be reached, which is deliberately low so
+     * only a real regression such as an accidental copy per group or a lost fast path fails on a noisy machine.
+     */
+    private final static double THROUGHPUT_FLOOR = 0.1;
+
+    private final static long THROUGHPUT_NANOS = 200_000_000L;
+
+    @Test
+    public void testEncodeThroughput() {
+        final byte[] decoded = this.decoded;
+        final Base64.Encoder encoder = Base64.getEncoder();
+        final java.util.Base64.Encoder jdk = java.util.Base64.getEncoder();
+
+        this.throughputAndCheck(
+            "encode",
+            () -> sink = encoder.encode(decoded),
+            () -> sink = jdk.encode(decoded)
+        );
+    }
+
+    @Test
+    public void testDecodeThroughput() {
+        final byte[] encoded = java.util.Base64.getEncoder().encode(this.decoded);
+        final Base64.Decoder decoder = Base64.getDecoder();
+        final java.util.Base64.Decoder jdk = java.util.Base64.getDecoder();
+
+        this.throughputAndCheck(
+            "decode",
+            () -> sink = decoder.decode(encoded),
+            () -> sink = jdk.decode(encoded)
+        );
+    }
+
+    @Test
+    public void testMimeDecodeThroughput() {
+        final byte[] encoded = java.util.Base64.getMimeEncoder().encode(this.decoded);
+        final Base64.Decoder decoder = Base64.getMimeDecoder();
+        final java.util.Base64.Decoder jdk = java.util.Base64.getMimeDecoder();
+
+        this.throughputAndCheck(
+            "mime decode",
+            () -> sink = decoder.decode(encoded),
+            () -> sink = jdk.decode(encoded)
+        );
+    }
+
+    private void throughputAndCheck(final String label,
+                                    final Runnable task,
+                                    final Runnable jdk) {
+        // interleaved so both see the same machine load
+        long best = Long.MAX_VALUE;
+        long jdkBest = Long.MAX_VALUE;
+        final long end = System.nanoTime() + THROUGHPUT_NANOS;
+
+        do {
+            best = Math.min(best, time(task));
+            jdkBest = Math.min(jdkBest, time(jdk));
+        } while (System.nanoTime() < end);
+
+        final double ratio = (double) jdkBest / best;
+        assertTrue(
+            ratio >= THROUGHPUT_FLOOR,
+            label + " " + best + "ns is " + ratio + " of java.util.Base64 " + jdkBest + "ns, floor " + THROUGHPUT_FLOOR
+        );
+    }
+
+    private static long time(final Runnable task) {
+        final long start = System.nanoTime();
+        task.run();
+        return System.nanoTime() - start;
+    }
+
+    private static byte[] random(final int length) {
+        final byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
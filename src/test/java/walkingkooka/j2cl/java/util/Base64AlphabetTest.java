@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.j2cl.java.util;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class Base64AlphabetTest implements ClassTesting2<Base64Alphabet> {
+
+    private final static String BCRYPT = "./ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    @Test
+    public void testWithNullAlphabetFails() {
+        assertThrows(NullPointerException.class, () -> Base64Alphabet.with(null, '='));
+    }
+
+    @Test
+    public void testWithInvalidLengthFails() {
+        this.withFails("ABC", '=', "Invalid alphabet length 3 expected 64");
+    }
+
+    @Test
+    public void testWithNonAsciiFails() {
+        this.withFails(BCRYPT.replace('.', (char) 0xe9), '=', "Invalid alphabet character 0xe9 at 0 not printable ASCII");
+    }
+
+    @Test
+    public void testWithControlCharacterFails() {
+        this.withFails(BCRYPT.replace('/', '\n'), '=', "Invalid alphabet character 0xa at 1 not printable ASCII");
+    }
+
+    @Test
+    public void testWithDuplicateFails() {
+        this.withFails(BCRYPT.replace('9', 'A'), '=', "Invalid alphabet character 'A' at 63 duplicate");
+    }
+
+    @Test
+    public void testWithPadInAlphabetFails() {
+        this.withFails(BCRYPT, '.', "Invalid alphabet character '.' at 0 is pad");
+    }
+
+    @Test
+    public void testWithInvalidPadFails() {
+        this.withFails(BCRYPT, ' ', "Invalid pad 0x20 not printable ASCII");
+    }
+
+    private void withFails(final String alphabet,
+                           final char pad,
+                           final String message) {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64Alphabet.with(alphabet, pad)
+        );
+        this.checkEquals(message, thrown.getMessage());
+    }
+
+    @Test
+    public void testWith() {
+        final Base64Alphabet tables = Base64Alphabet.with(BCRYPT, '$');
+
+        this.checkEquals(BCRYPT, new String(tables.chars));
+        this.checkEquals((byte) '$', tables.pad);
+        this.checkEquals(0, tables.lookup['.']);
+        this.checkEquals(63, tables.lookup['9']);
+        this.checkEquals(-1, tables.lookup['+']);
+        assertNotNull(tables.swar);
+    }
+
+    @Test
+    public void testWithCached() {
+        assertSame(
+            Base64Alphabet.with(BCRYPT, '$'),
+            Base64Alphabet.with(BCRYPT, '$')
+        );
+    }
+
+    @Test
+    public void testBuiltInSameAsWith() {
+        final Base64Alphabet with = Base64Alphabet.with(BCRYPT, '$');
+        final Base64Alphabet builtIn = Base64Alphabet.builtIn(BCRYPT.toCharArray(), (byte) '$');
+
+        assertArrayEquals(with.chars, builtIn.chars);
+        assertArrayEquals(with.lookup, builtIn.lookup);
+        this.checkEquals(with.toString(), builtIn.toString());
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(BCRYPT + " '$'", Base64Alphabet.with(BCRYPT, '$').toString());
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<Base64Alphabet> type() {
+        return Base64Alphabet.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.j2cl.java.util;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+public final class Base64CharsetDecoderTest implements ClassTesting2<Base64CharsetDecoder> {
+
+    @Test
+    public void testEmpty() {
+        this.readAndCheck(new byte[0], StandardCharsets.UTF_8, 3);
+    }
+
+    @Test
+    public void testUtf8SplitSequences() {
+        this.readAndCheck("caf\u00e9 \ud83d\ude00 \u4e2d\u6587".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, 3);
+    }
+
+    @Test
+    public void testUtf8Malformed() {
+        this.readAndCheck(new byte[]{'A', (byte) 0xe2, (byte) 0x82, 'B', (byte) 0xf0, (byte) 0x9f}, StandardCharsets.UTF_8, 2);
+    }
+
+    @Test
+    public void testUtf16() {
+        this.readAndCheck("A\ud83d\ude00B".getBytes(StandardCharsets.UTF_16), StandardCharsets.UTF_16, 3);
+    }
+
+    @Test
+    public void testIso2022Jp() {
+        final Charset charset = Charset.forName("ISO-2022-JP");
+        this.readAndCheck("A\u65e5\u672cB".getBytes(charset), charset, 3);
+    }
+
+    @Test
+    public void testLongerThanBuffer() {
+        final byte[] bytes = new byte[2000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ('A' + i % 26);
+        }
+        this.readAndCheck(bytes, StandardCharsets.ISO_8859_1, 700);
+    }
+
+    /**
+     * Gives the decoder the bytes a few at a time, after any bytes it carried from the previous chunk.
+     */
+    private void readAndCheck(final byte[] bytes,
+                              final Charset charset,
+                              final int step) {
+        final byte[] chunk = new byte[64 + step];
+        final Base64CharsetDecoder decoder = Base64CharsetDecoder.with(charset, bytes.length, chunk);
+
+        int carry = 0;
+        int i = 0;
+        do {
+            final int length = Math.min(step, bytes.length - i);
+            System.arraycopy(bytes, i, chunk, carry, length);
+            i += length;
+
+            carry = decoder.read(carry + length, i == bytes.length);
+        } while (i < bytes.length);
+
+        this.checkEquals(new String(bytes, charset), decoder.toString(), charset::toString);
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<Base64CharsetDecoder> type() {
+        return Base64CharsetDecoder.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
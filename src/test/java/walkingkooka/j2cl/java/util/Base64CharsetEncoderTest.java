@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.j2cl.java.util;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public final class Base64CharsetEncoderTest implements ClassTesting2<Base64CharsetEncoder> {
+
+    @Test
+    public void testEmpty() {
+        this.readAndCheck("", StandardCharsets.UTF_8, 8);
+    }
+
+    @Test
+    public void testUtf8() {
+        this.readAndCheck("caf\u00e9 \ud83d\ude00 \u4e2d\u6587", StandardCharsets.UTF_8, 8);
+    }
+
+    @Test
+    public void testUtf16ByteOrderMark() {
+        this.readAndCheck("ABC", StandardCharsets.UTF_16, 8);
+    }
+
+    @Test
+    public void testIso2022JpFlush() {
+        // the last bytes switch back to ASCII, written when the encoder is flushed
+        this.readAndCheck("\u65e5\u672c", Charset.forName("ISO-2022-JP"), 8);
+    }
+
+    @Test
+    public void testUnmappableReplaced() {
+        this.readAndCheck("A\u0141B", StandardCharsets.ISO_8859_1, 8);
+    }
+
+    @Test
+    public void testLoneSurrogateReplaced() {
+        this.readAndCheck("A\ud83dB", StandardCharsets.UTF_8, 8);
+    }
+
+    private void readAndCheck(final String text,
+                              final Charset charset,
+                              final int chunkLength) {
+        final byte[] chunk = new byte[chunkLength];
+        final Base64CharsetEncoder encoder = Base64CharsetEncoder.with(text, charset, chunk);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        do {
+            // keeps a byte, like the partial group the encoder carries to the next chunk
+            final int end = encoder.read(1);
+            bytes.write(chunk, 1, end - 1);
+        } while (false == encoder.isDone());
+
+        assertArrayEquals(text.getBytes(charset), bytes.toByteArray(), () -> text + " " + charset);
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<Base64CharsetEncoder> type() {
+        return Base64CharsetEncoder.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
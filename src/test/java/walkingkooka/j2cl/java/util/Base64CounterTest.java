@@ -0,0 +1,56 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.j2cl.java.util;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.ToStringTesting;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+public final class Base64CounterTest implements ClassTesting2<Base64Counter>,
+    ToStringTesting<Base64Counter> {
+
+    @Test
+    public void testIncrementAndAdd() {
+        final Base64Counter counter = Base64Counter.with();
+        counter.increment();
+        counter.add(10);
+        counter.increment();
+
+        this.checkEquals(12L, counter.sum());
+    }
+
+    @Test
+    public void testToString() {
+        final Base64Counter counter = Base64Counter.with();
+        counter.add(123);
+
+        this.toStringAndCheck(counter, "123");
+    }
+
+    @Override
+    public Class<Base64Counter> type() {
+        return Base64Counter.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
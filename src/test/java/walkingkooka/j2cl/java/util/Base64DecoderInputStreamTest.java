@@ -0,0 +1,332 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.j2cl.java.util;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.text.CharSequences;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class Base64DecoderInputStreamTest implements ClassTesting2<Base64DecoderInputStream> {
+
+    private final static int[] LENGTHS = new int[]{
+        0, 1, 2, 3, 4, 56, 57, 58, 3 * 1024 - 1, 3 * 1024, 3 * 1024 + 1, 57 * 53 + 2, 20000
+    };
+
+    @Test
+    public void testWrapNullReaderFails() {
+        assertThrows(NullPointerException.class, () -> Base64.getDecoder().wrap(null));
+    }
+
+    @Test
+    public void testJdkRfc4648() throws IOException {
+        this.wrapAndCheck(java.util.Base64.getEncoder(), Base64.getDecoder());
+    }
+
+    @Test
+    public void testJdkRfc4648WithoutPadding() throws IOException {
+        this.wrapAndCheck(java.util.Base64.getEncoder().withoutPadding(), Base64.getDecoder());
+    }
+
+    @Test
+    public void testJdkUrlSafe() throws IOException {
+        this.wrapAndCheck(java.util.Base64.getUrlEncoder(), Base64.getUrlDecoder());
+    }
+
+    @Test
+    public void testJdkMime() throws IOException {
+        this.wrapAndCheck(java.util.Base64.getMimeEncoder(), Base64.getMimeDecoder());
+    }
+
+    @Test
+    public void testJdkMimeCustomSeparator() throws IOException {
+        this.wrapAndCheck(java.util.Base64.getMimeEncoder(8, new byte[]{'\n', '\n', '\n'}), Base64.getMimeDecoder());
+    }
+
+    @Test
+    public void testJdkWithoutMixing() throws IOException {
+        this.wrapAndCheck(java.util.Base64.getUrlEncoder(), Base64.getStandardOrUrlDecoder().withoutMixing());
+    }
+
+    @Test
+    public void testJdkConstantTime() throws IOException {
+        this.wrapAndCheck(java.util.Base64.getMimeEncoder(), Base64.getMimeDecoder().constantTime());
+    }
+
+    private void wrapAndCheck(final java.util.Base64.Encoder jdk,
+                              final Base64.Decoder emul) throws IOException {
+        for (final int length : LENGTHS) {
+            final byte[] values = new byte[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = (byte) (i * 13 + length);
+            }
+            final String encoded = jdk.encodeToString(values);
+
+            for (final int read : new int[]{1, 7, 1000, Integer.MAX_VALUE}) {
+                assertArrayEquals(
+                    values,
+                    readAll(emul.wrap(reader(encoded, read)), read),
+                    () -> emul + " length " + length + " read " + read
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidCharacterAfterFirstChunk() {
+        this.wrapFailsAndCheck(Base64.getDecoder(), repeat('A', 10000) + "*AAA");
+    }
+
+    @Test
+    public void testPadAtEndOfChunkFollowedByCharacters() {
+        this.wrapFailsAndCheck(Base64.getDecoder(), repeat('A', 4094) + "==AA");
+    }
+
+    @Test
+    public void testMimePadFollowedByCharactersAfterSeparators() {
+        this.wrapFailsAndCheck(Base64.getMimeDecoder(), "QQ==" + repeat('\n', 10000) + "QQ==");
+    }
+
+    @Test
+    public void testMimeGroupSplitBySeparators() throws IOException {
+        final String encoded = "QU" + repeat('\n', 10000) + "JD";
+        assertArrayEquals(
+            Base64.getMimeDecoder().decode(encoded),
+            readAll(Base64.getMimeDecoder().wrap(new StringReader(encoded)), 1)
+        );
+    }
+
+    @Test
+    public void testTruncated() {
+        this.wrapFailsAndCheck(Base64.getDecoder(), repeat('A', 10001));
+    }
+
+    @Test
+    public void testMixedAlphabetsAfterFirstChunk() {
+        this.wrapFailsAndCheck(Base64.getStandardOrUrlDecoder().withoutMixing(), "++++" + repeat('A', 10000) + "-AAA");
+    }
+
+    @Test
+    public void testMixedAlphabetsReportedAfterInvalidCharacter() {
+        this.wrapFailsAndCheck(Base64.getStandardOrUrlDecoder().withoutMixing(), "_AAA/AAA" + repeat('A', 10000) + "*AAA");
+    }
+
+    @Test
+    public void testMixedAlphabetsReportedAfterTruncated() {
+        this.wrapFailsAndCheck(Base64.getStandardOrUrlDecoder().withoutMixing(), "_AAA/AAA" + repeat('A', 10001));
+    }
+
+    private void wrapFailsAndCheck(final Base64.Decoder decoder,
+                                   final String encoded) {
+        final IllegalArgumentException expected = assertThrows(IllegalArgumentException.class, () -> decoder.decode(encoded));
+
+        for (final int read : new int[]{1, 7, 1000, Integer.MAX_VALUE}) {
+            final IOException thrown = assertThrows(
+                IOException.class,
+                () -> readAll(decoder.wrap(reader(encoded, read)), read)
+            );
+            this.checkEquals(expected.getMessage(), thrown.getMessage(), () -> "read " + read);
+        }
+    }
+
+    @Test
+    public void testSameAsDecodeRfc4648() {
+        this.sameAsDecodeAndCheck(Base64.getDecoder(), Base64.RFC4648_ALPHABET + "\r\n*-_");
+    }
+
+    @Test
+    public void testSameAsDecodeMime() {
+        this.sameAsDecodeAndCheck(Base64.getMimeDecoder(), Base64.RFC4648_ALPHABET + "\r\n*-_");
+    }
+
+    @Test
+    public void testSameAsDecodeWithoutMixing() {
+        this.sameAsDecodeAndCheck(Base64.getStandardOrUrlDecoder().withoutMixing(), Base64.RFC4648_ALPHABET + "-_*");
+    }
+
+    /**
+     * Decodes random strings long enough to span several chunks, which are mostly the alphabet with a few pads and
+     * other characters, checking the stream returns the same bytes or fails with the same message.
+     */
+    private void sameAsDecodeAndCheck(final Base64.Decoder decoder,
+                                      final String characters) {
+        final Random random = new Random(1);
+
+        for (int i = 0; i < 300; i++) {
+            final int length = random.nextInt(12000);
+            final int rare = 1 + random.nextInt(20000);
+
+            final StringBuilder b = new StringBuilder();
+            for (int j = 0; j < length; j++) {
+                b.append(
+                    0 == random.nextInt(rare) ?
+                        0 == random.nextInt(2) ? '=' : characters.charAt(64 + random.nextInt(characters.length() - 64)) :
+                        characters.charAt(random.nextInt(64))
+                );
+            }
+            final String encoded = b.toString();
+
+            String expected;
+            try {
+                expected = Arrays.toString(decoder.decode(encoded));
+            } catch (final IllegalArgumentException cause) {
+                expected = cause.getMessage();
+            }
+
+            String actual;
+            try {
+                actual = Arrays.toString(readAll(decoder.wrap(reader(encoded, 1 + random.nextInt(5000))), 4096));
+            } catch (final IOException cause) {
+                actual = cause.getMessage();
+            }
+
+            this.checkEquals(
+                expected,
+                actual,
+                () -> CharSequences.quoteAndEscape(encoded).toString()
+            );
+        }
+    }
+
+    @Test
+    public void testReadEmptySlice() throws IOException {
+        this.checkEquals(0, Base64.getDecoder().wrap(new StringReader("QQ==")).read(new byte[1], 0, 0));
+    }
+
+    @Test
+    public void testReadInvalidSliceFails() {
+        final InputStream input = Base64.getDecoder().wrap(new StringReader("QQ=="));
+        assertThrows(IndexOutOfBoundsException.class, () -> input.read(new byte[2], 1, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> input.read(new byte[2], -1, 1));
+    }
+
+    @Test
+    public void testReadAndAvailable() throws IOException {
+        final InputStream input = Base64.getDecoder().wrap(new StringReader("QUJD"));
+        this.checkEquals(0, input.available());
+        this.checkEquals((int) 'A', input.read());
+        this.checkEquals(2, input.available());
+        this.checkEquals((int) 'B', input.read());
+        this.checkEquals((int) 'C', input.read());
+        this.checkEquals(-1, input.read());
+        this.checkEquals(-1, input.read(new byte[1]));
+    }
+
+    @Test
+    public void testReadAfterCloseFails() throws IOException {
+        final InputStream input = Base64.getDecoder().wrap(new StringReader("QQ=="));
+        input.close();
+        input.close();
+
+        final IOException thrown = assertThrows(IOException.class, input::read);
+        this.checkEquals("Stream is closed", thrown.getMessage());
+        assertThrows(IOException.class, () -> input.read(new byte[1]));
+        assertThrows(IOException.class, input::available);
+    }
+
+    @Test
+    public void testCloseClosesReader() throws IOException {
+        final boolean[] closed = new boolean[1];
+        final Reader reader = new StringReader("") {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        Base64.getDecoder().wrap(reader).close();
+        this.checkEquals(true, closed[0]);
+    }
+
+    @Test
+    public void testToString() {
+        final Reader reader = new StringReader("");
+        this.checkEquals(
+            Base64.getDecoder() + " " + reader,
+            Base64.getDecoder().wrap(reader).toString()
+        );
+    }
+
+    /**
+     * Returns a {@link Reader} that returns at most the given number of characters from each read.
+     */
+    private static Reader reader(final String text,
+                                 final int max) {
+        return new StringReader(text) {
+            @Override
+            public int read(final char[] chars,
+                            final int offset,
+                            final int length) throws IOException {
+                return super.read(chars, offset, Math.min(length, max));
+            }
+        };
+    }
+
+    private static byte[] readAll(final InputStream input,
+                                  final int read) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[Math.min(read, 8192)];
+
+        try (final InputStream closing = input) {
+            for (; ; ) {
+                final int count = 1 == read ?
+                    closing.read() :
+                    closing.read(buffer, 0, buffer.length);
+                if (-1 == count) {
+                    break;
+                }
+                if (1 == read) {
+                    bytes.write(count);
+                } else {
+                    bytes.write(buffer, 0, count);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String repeat(final char c,
+                                 final int count) {
+        final char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<Base64DecoderInputStream> type() {
+        return Base64DecoderInputStream.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
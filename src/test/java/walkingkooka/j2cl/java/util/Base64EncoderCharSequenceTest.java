@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.j2cl.java.util;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class Base64EncoderCharSequenceTest implements ClassTesting2<Base64EncoderCharSequence> {
+
+    @Test
+    public void testCharAtInvalidIndexFails() {
+        final CharSequence chars = Base64.getEncoder().encodeToCharSequence(new byte[3]);
+        assertThrows(StringIndexOutOfBoundsException.class, () -> chars.charAt(4));
+        assertThrows(StringIndexOutOfBoundsException.class, () -> chars.charAt(-1));
+    }
+
+    @Test
+    public void testSubSequenceInvalidFails() {
+        final CharSequence chars = Base64.getEncoder().encodeToCharSequence(new byte[3]);
+        assertThrows(StringIndexOutOfBoundsException.class, () -> chars.subSequence(2, 1));
+        assertThrows(StringIndexOutOfBoundsException.class, () -> chars.subSequence(0, 5));
+    }
+
+    @Test
+    public void testSubSequenceAll() {
+        final CharSequence chars = Base64.getEncoder().encodeToCharSequence(new byte[3]);
+        assertSame(chars, chars.subSequence(0, 4));
+    }
+
+    @Test
+    public void testToStringCached() {
+        final CharSequence chars = Base64.getEncoder().encodeToCharSequence(new byte[]{1, 2, 3, 4});
+        assertSame(chars.toString(), chars.toString());
+    }
+
+    @Test
+    public void testJdk() {
+        this.charSequenceAndCheck(java.util.Base64.getEncoder(), Base64.getEncoder());
+        this.charSequenceAndCheck(java.util.Base64.getEncoder().withoutPadding(), Base64.getEncoder().withoutPadding());
+        this.charSequenceAndCheck(java.util.Base64.getUrlEncoder(), Base64.getUrlEncoder());
+        this.charSequenceAndCheck(java.util.Base64.getMimeEncoder(), Base64.getMimeEncoder());
+        this.charSequenceAndCheck(java.util.Base64.getMimeEncoder().withoutPadding(), Base64.getMimeEncoder().withoutPadding());
+
+        final byte[] separator = new byte[]{'\n', '\n', '\n'};
+        this.charSequenceAndCheck(
+            java.util.Base64.getMimeEncoder(8, separator),
+            Base64.getMimeEncoder(8, separator)
+        );
+    }
+
+    private void charSequenceAndCheck(final java.util.Base64.Encoder jdk,
+                                      final Base64.Encoder emul) {
+        for (int length = 0; length < 130; length++) {
+            final byte[] values = new byte[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = (byte) (i * 13 + length);
+            }
+
+            final String expected = jdk.encodeToString(values);
+            final CharSequence chars = emul.encodeToCharSequence(values);
+
+            this.checkEquals(expected.length(), chars.length(), () -> emul + " length " + expected);
+            this.checkEquals(expected, chars.toString(), () -> emul + " toString");
+
+            for (int start = 0; start < expected.length(); start += 3) {
+                for (int end = start; end <= expected.length(); end += 5) {
+                    this.checkEquals(
+                        expected.substring(start, end),
+                        chars.subSequence(start, end).toString(),
+                        emul + " subSequence " + start + ".." + end + " " + expected
+                    );
+                }
+            }
+        }
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<Base64EncoderCharSequence> type() {
+        return Base64EncoderCharSequence.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
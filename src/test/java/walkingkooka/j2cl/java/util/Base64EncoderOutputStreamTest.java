@@ -0,0 +1,189 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.j2cl.java.util;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class Base64EncoderOutputStreamTest implements ClassTesting2<Base64EncoderOutputStream> {
+
+    private final static int[] LENGTHS = new int[]{
+        0, 1, 2, 3, 4, 56, 57, 58, 75, 76, 77, 3 * 1024 - 1, 3 * 1024, 3 * 1024 + 1, 57 * 53, 57 * 53 + 2, 20000
+    };
+
+    @Test
+    public void testWrapNullWriterFails() {
+        assertThrows(NullPointerException.class, () -> Base64.getEncoder().wrap(null));
+    }
+
+    @Test
+    public void testJdkRfc4648() throws IOException {
+        this.wrapAndCheck(java.util.Base64.getEncoder(), Base64.getEncoder());
+    }
+
+    @Test
+    public void testJdkRfc4648WithoutPadding() throws IOException {
+        this.wrapAndCheck(java.util.Base64.getEncoder().withoutPadding(), Base64.getEncoder().withoutPadding());
+    }
+
+    @Test
+    public void testJdkUrlSafe() throws IOException {
+        this.wrapAndCheck(java.util.Base64.getUrlEncoder(), Base64.getUrlEncoder());
+    }
+
+    @Test
+    public void testJdkMime() throws IOException {
+        this.wrapAndCheck(java.util.Base64.getMimeEncoder(), Base64.getMimeEncoder());
+    }
+
+    @Test
+    public void testJdkMimeWithoutPadding() throws IOException {
+        this.wrapAndCheck(java.util.Base64.getMimeEncoder().withoutPadding(), Base64.getMimeEncoder().withoutPadding());
+    }
+
+    @Test
+    public void testJdkMimeCustomSeparator() throws IOException {
+        final byte[] separator = new byte[]{'\n', '\n', '\n'};
+        this.wrapAndCheck(java.util.Base64.getMimeEncoder(8, separator), Base64.getMimeEncoder(8, separator));
+    }
+
+    @Test
+    public void testJdkConstantTime() throws IOException {
+        this.wrapAndCheck(java.util.Base64.getMimeEncoder(), Base64.getMimeEncoder().constantTime());
+    }
+
+    private void wrapAndCheck(final java.util.Base64.Encoder jdk,
+                              final Base64.Encoder emul) throws IOException {
+        for (final int length : LENGTHS) {
+            final byte[] values = new byte[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = (byte) (i * 13 + length);
+            }
+            final String expected = jdk.encodeToString(values);
+
+            for (final int write : new int[]{1, 7, 1000, Integer.MAX_VALUE}) {
+                final StringWriter writer = new StringWriter();
+
+                try (final OutputStream output = emul.wrap(writer)) {
+                    int i = 0;
+                    while (i < length) {
+                        final int count = Math.min(write, length - i);
+                        if (1 == count) {
+                            output.write(values[i]);
+                        } else {
+                            output.write(values, i, count);
+                        }
+                        i += count;
+                    }
+                }
+
+                this.checkEquals(
+                    expected,
+                    writer.toString(),
+                    () -> emul + " length " + length + " write " + write
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testFlushKeepsPartialChunk() throws IOException {
+        final StringWriter writer = new StringWriter();
+        final OutputStream output = Base64.getEncoder().wrap(writer);
+
+        output.write(new byte[]{1, 2, 3, 4});
+        output.flush();
+        this.checkEquals("", writer.toString());
+
+        output.close();
+        this.checkEquals("AQIDBA==", writer.toString());
+    }
+
+    @Test
+    public void testWriteInvalidSliceFails() {
+        final OutputStream output = Base64.getEncoder().wrap(new StringWriter());
+        assertThrows(IndexOutOfBoundsException.class, () -> output.write(new byte[2], 1, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> output.write(new byte[2], -1, 1));
+    }
+
+    @Test
+    public void testWriteAfterCloseFails() throws IOException {
+        final OutputStream output = Base64.getEncoder().wrap(new StringWriter());
+        output.close();
+
+        final IOException thrown = assertThrows(IOException.class, () -> output.write(1));
+        this.checkEquals("Stream is closed", thrown.getMessage());
+        assertThrows(IOException.class, () -> output.write(new byte[1]));
+        assertThrows(IOException.class, output::flush);
+    }
+
+    @Test
+    public void testCloseTwice() throws IOException {
+        final StringWriter writer = new StringWriter();
+        final OutputStream output = Base64.getEncoder().wrap(writer);
+        output.write(1);
+        output.close();
+        output.close();
+
+        this.checkEquals("AQ==", writer.toString());
+    }
+
+    @Test
+    public void testCloseClosesWriter() throws IOException {
+        final boolean[] closed = new boolean[1];
+        final Writer writer = new StringWriter() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        Base64.getEncoder().wrap(writer).close();
+        this.checkEquals(true, closed[0]);
+    }
+
+    @Test
+    public void testToString() {
+        final StringWriter writer = new StringWriter();
+        writer.write("abc");
+        this.checkEquals(
+            Base64.getEncoder() + " abc",
+            Base64.getEncoder().wrap(writer).toString()
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<Base64EncoderOutputStream> type() {
+        return Base64EncoderOutputStream.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.j2cl.java.util;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class Base64EnginesTest implements ClassTesting2<Base64Engines> {
+
+    @Test
+    public void testNotForced() {
+        assertNull(Base64Engines.FORCED);
+    }
+
+    @Test
+    public void testSwar() {
+        this.checkEquals(Base64Engines.DEFAULT_SWAR, Base64Engines.SWAR);
+    }
+
+    @Test
+    public void testParallel() {
+        final int expected = Runtime.getRuntime().availableProcessors() < 2 ?
+            Integer.MAX_VALUE :
+            Base64Engines.DEFAULT_PARALLEL;
+
+        this.checkEquals(expected, Base64Engines.Parallel.ENCODE, "encode");
+        this.checkEquals(expected, Base64Engines.Parallel.DECODE, "decode");
+    }
+
+    @Test
+    public void testDefaultParallelAtLeastMinimum() {
+        assertTrue(Base64Engines.DEFAULT_PARALLEL >= Base64Engines.PARALLEL_MINIMUM);
+    }
+
+    @Test
+    public void testCalibrate() {
+        final Properties thresholds = Base64Engines.calibrate();
+
+        final int swar = Integer.parseInt(thresholds.getProperty(Base64Engines.SWAR_KEY));
+        final int encode = Integer.parseInt(thresholds.getProperty(Base64Engines.ENCODE_PARALLEL_KEY));
+        final int decode = Integer.parseInt(thresholds.getProperty(Base64Engines.DECODE_PARALLEL_KEY));
+
+        assertTrue(swar >= 8, () -> "swar " + swar);
+        assertTrue(encode >= Base64Engines.PARALLEL_MINIMUM, () -> "encode " + encode);
+        assertTrue(decode >= Base64Engines.PARALLEL_MINIMUM, () -> "decode " + decode);
+    }
+
+    @Test
+    public void testEngineMatchesThresholds() {
+        final Base64.Decoder decoder = Base64.getDecoder();
+        final int swar = Base64Engines.SWAR;
+
+        this.checkEquals(Base64.Engine.TABLE, decoder.engine(swar - 1));
+        this.checkEquals(Base64.Engine.SWAR, decoder.engine(swar));
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<Base64Engines> type() {
+        return Base64Engines.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
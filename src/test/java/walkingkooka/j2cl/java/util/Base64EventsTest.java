@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.j2cl.java.util;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public final class Base64EventsTest implements ClassTesting2<Base64Events> {
+
+    @Test
+    public void testRecording() throws IOException {
+        final int length = Base64Events.THRESHOLD;
+        final Path file = Files.createTempFile(Base64EventsTest.class.getSimpleName(), ".jfr");
+
+        try {
+            try (final Recording recording = new Recording()) {
+                recording.enable(Base64Events.Event.class);
+                recording.start();
+
+                final byte[] encoded = Base64.getEncoder().encode(new byte[length]);
+                Base64.getDecoder().decode(encoded);
+
+                // too small to be recorded
+                Base64.getEncoder().encode(new byte[length - 1]);
+
+                recording.stop();
+                recording.dump(file);
+            }
+
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file)
+                .stream()
+                .filter(e -> e.getEventType().getName().equals("walkingkooka.j2cl.java.util.Base64"))
+                .collect(Collectors.toList());
+            this.checkEquals(2, events.size(), () -> events.toString());
+
+            final int encodedLength = (length + 2) / 3 * 4;
+            this.checkEvent(
+                events.get(0),
+                "encode",
+                "RFC4648 WITH PADDING",
+                length,
+                encodedLength,
+                Base64.getEncoder().engine(length).name()
+            );
+            this.checkEvent(
+                events.get(1),
+                "decode",
+                "RFC4648",
+                encodedLength,
+                length,
+                Base64.getDecoder().engine(encodedLength).name()
+            );
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private void checkEvent(final RecordedEvent event,
+                            final String operation,
+                            final String variant,
+                            final int input,
+                            final int output,
+                            final String engine) {
+        this.checkEquals(operation, event.getString("operation"), "operation");
+        this.checkEquals(variant, event.getString("variant"), "variant");
+        this.checkEquals(input, event.getInt("input"), "input");
+        this.checkEquals(output, event.getInt("output"), "output");
+        this.checkEquals(engine, event.getString("engine"), "engine");
+    }
+
+    @Override
+    public Class<Base64Events> type() {
+        return Base64Events.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package walkingkooka.j2cl.java.util;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public final class Base64PlatformTest implements ClassTesting2<Base64Platform> {
+
+    @Test
+    public void testEncodeDeclines() {
+        assertNull(Base64Platform.encode(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    public void testDecodeDeclines() {
+        assertNull(Base64Platform.decode("AQID"));
+    }
+
+    @Override
+    public Class<Base64Platform> type() {
+        return Base64Platform.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.j2cl.java.util;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public final class Base64SwarTest implements ClassTesting2<Base64Swar> {
+
+    private final static String URLSAFE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+    @Test
+    public void testWithNonAsciiAlphabet() {
+        final char[] alphabet = Base64.RFC4648_ALPHABET.toCharArray();
+        alphabet[63] = (char) 0xff;
+        assertNull(Base64Swar.with(alphabet));
+    }
+
+    @Test
+    public void testWithTooManyRuns() {
+        final char[] alphabet = new char[64];
+
+        // descending so every character is a run by itself
+        for (int i = 0; i < alphabet.length; i++) {
+            alphabet[i] = (char) (0x7f - i);
+        }
+        assertNull(Base64Swar.with(alphabet));
+    }
+
+    @Test
+    public void testTranslateAllRfc4648() {
+        this.translateAllAndCheck(Base64.RFC4648_ALPHABET);
+    }
+
+    @Test
+    public void testTranslateAllRfc4648UrlSafe() {
+        this.translateAllAndCheck(URLSAFE);
+    }
+
+    private void translateAllAndCheck(final String alphabet) {
+        final Base64Swar swar = Base64Swar.with(alphabet.toCharArray());
+
+        for (int i = 0; i < 64; i++) {
+            final byte[] chars = new byte[8];
+            for (int j = 0; j < 8; j++) {
+                chars[j] = (byte) alphabet.charAt((i + j * 7) % 64);
+            }
+
+            final long sextets = swar.translate(Base64Swar.load(chars, 0));
+
+            for (int j = 0; j < 8; j++) {
+                final int expected = (i + j * 7) % 64;
+                this.checkEquals(
+                    expected,
+                    (int) (sextets >>> (56 - j * 8)) & 0xff,
+                    "lane " + j + " of " + new String(chars, StandardCharsets.US_ASCII)
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testWithLookupSharedValues() {
+        final int[] lookup = new int[256];
+        Arrays.fill(lookup, -1);
+        for (int i = 0; i < 64; i++) {
+            lookup[Base64.RFC4648_ALPHABET.charAt(i)] = i;
+            lookup[URLSAFE.charAt(i)] = i;
+        }
+
+        final Base64Swar swar = Base64Swar.with(lookup);
+        final byte[] chars = "+/-_AZaz".getBytes(StandardCharsets.US_ASCII);
+
+        this.checkEquals(
+            0x3e3f3e3f00191a33L,
+            swar.translate(Base64Swar.load(chars, 0))
+        );
+    }
+
+    @Test
+    public void testWithLookupNonAscii() {
+        final int[] lookup = new int[256];
+        Arrays.fill(lookup, -1);
+        lookup[0xc0] = 0;
+        assertNull(Base64Swar.with(lookup));
+    }
+
+    @Test
+    public void testTranslateInvalid() {
+        final Base64Swar swar = Base64Swar.with(Base64.RFC4648_ALPHABET.toCharArray());
+
+        for (int c = 0; c < 256; c++) {
+            if (-1 != Base64.RFC4648_ALPHABET.indexOf(c)) {
+                continue;
+            }
+
+            for (int lane = 0; lane < 8; lane++) {
+                final byte[] chars = "ABCDEFGH".getBytes(StandardCharsets.US_ASCII);
+                chars[lane] = (byte) c;
+
+                this.checkEquals(
+                    Base64Swar.INVALID,
+                    swar.translate(Base64Swar.load(chars, 0)),
+                    "0x" + Integer.toHexString(c) + " at " + lane
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testPackAndStore() {
+        final byte[] encoded = "QUJDREVG".getBytes(StandardCharsets.US_ASCII);
+        final Base64Swar swar = Base64Swar.with(Base64.RFC4648_ALPHABET.toCharArray());
+
+        final byte[] decoded = new byte[6];
+        Base64Swar.store(
+            Base64Swar.pack(swar.translate(Base64Swar.load(encoded, 0))),
+            decoded,
+            0
+        );
+
+        assertArrayEquals("ABCDEF".getBytes(StandardCharsets.US_ASCII), decoded);
+    }
+
+    @Test
+    public void testMatches() {
+        final byte[] bytes = "A\nBC\n\nD\u00ff".getBytes(StandardCharsets.ISO_8859_1);
+
+        this.checkEquals(
+            0x0080000080800000L,
+            Base64Swar.matches(Base64Swar.load(bytes, 0), '\n')
+        );
+        this.checkEquals(
+            0x80L,
+            Base64Swar.matches(Base64Swar.load(bytes, 0), 0xff)
+        );
+        this.checkEquals(
+            0L,
+            Base64Swar.matches(Base64Swar.load(bytes, 0), 0)
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<Base64Swar> type() {
+        return Base64Swar.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -25,13 +25,38 @@ import walkingkooka.reflect.JavaVisibility;
 import walkingkooka.reflect.PublicStaticHelperTesting;
 import walkingkooka.text.CharSequences;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public final class Base64Test implements PublicStaticHelperTesting<Base64>, ToStringTesting<Base64> {
 
@@ -92,6 +117,40 @@ public final class Base64Test implements PublicStaticHelperTesting<Base64>, ToSt
         }
     }
 
+    @Test
+    public void testGetMimeEncoderCached() {
+        assertSame(
+            Base64.getMimeEncoder(50, new byte[]{'\r', '\n'}),
+            Base64.getMimeEncoder(50, new byte[]{'\r', '\n'})
+        );
+    }
+
+    @Test
+    public void testGetMimeEncoderCachedNormalisedLineLength() {
+        assertSame(
+            Base64.getMimeEncoder(48, new byte[]{'\n'}),
+            Base64.getMimeEncoder(51, new byte[]{'\n'})
+        );
+    }
+
+    @Test
+    public void testGetMimeEncoderDifferentSeparator() {
+        final Base64.Encoder encoder = Base64.getMimeEncoder(4, new byte[]{'\n'});
+        final Base64.Encoder different = Base64.getMimeEncoder(4, new byte[]{'\r'});
+
+        assertNotSame(encoder, different);
+        this.checkEquals("QUJD\rREVG", different.encodeToString("ABCDEF".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void testGetMimeEncoderSeparatorCopied() {
+        final byte[] separator = new byte[]{'\n'};
+        final Base64.Encoder encoder = Base64.getMimeEncoder(4, separator);
+        separator[0] = '.';
+
+        this.checkEquals("QUJD\nREVG", encoder.encodeToString("ABCDEF".getBytes(StandardCharsets.US_ASCII)));
+    }
+
     @Test
     public void testEncodeByteEmpty() {
         this.encodeAndCheck(0);
@@ -211,6 +270,10 @@ public final class Base64Test implements PublicStaticHelperTesting<Base64>, ToSt
         this.encodeAndCheck(java.util.Base64.getMimeEncoder(),
             Base64.getMimeEncoder(),
             values);
+
+        this.encodeAndCheck(java.util.Base64.getMimeEncoder().withoutPadding(),
+            Base64.getMimeEncoder().withoutPadding(),
+            values);
     }
 
     private void encodeAndCheck(final java.util.Base64.Encoder jdk,
@@ -241,6 +304,395 @@ public final class Base64Test implements PublicStaticHelperTesting<Base64>, ToSt
             emul.encodeToString(values),
             () -> emul + " encodeToString " + Arrays.toString(values)
         );
+
+        this.checkEquals(
+            (long) jdk.encode(values).length,
+            emul.encodedLength(values.length),
+            () -> emul + " encodedLength " + values.length
+        );
+
+        this.encodeInPlaceAndCheck(jdk, emul, values);
+    }
+
+    private void encodeInPlaceAndCheck(final java.util.Base64.Encoder jdk,
+                                       final Base64.Encoder emul,
+                                       final byte[] values) {
+        final byte[] expected = jdk.encode(values);
+
+        final int offset = 3;
+        final byte[] buffer = new byte[offset + expected.length + 2];
+        System.arraycopy(values, 0, buffer, offset, values.length);
+
+        final int length = emul.encodeInPlace(buffer, offset, values.length);
+
+        assertArrayEquals(
+            expected,
+            Arrays.copyOfRange(buffer, offset, offset + length),
+            () -> emul + " encodeInPlace " + Arrays.toString(values)
+        );
+    }
+
+    @Test
+    public void testEncodeInPlaceBufferTooSmallFails() {
+        final byte[] buffer = new byte[5];
+        assertThrows(IllegalArgumentException.class, () -> Base64.getEncoder().encodeInPlace(buffer, 0, 5));
+    }
+
+    @Test
+    public void testEncodeInPlaceInvalidSliceFails() {
+        final byte[] buffer = new byte[5];
+        assertThrows(IndexOutOfBoundsException.class, () -> Base64.getEncoder().encodeInPlace(buffer, 3, 3));
+    }
+
+    // encode char[]....................................................................................................
+
+    @Test
+    public void testEncodeCharArray() {
+        final byte[] separator = new byte[]{'\n'};
+
+        for (int length = 0; length < 100; length++) {
+            final byte[] values = values(length);
+
+            this.encodeCharArrayAndCheck(java.util.Base64.getEncoder(), Base64.getEncoder(), values);
+            this.encodeCharArrayAndCheck(java.util.Base64.getEncoder().withoutPadding(), Base64.getEncoder().withoutPadding(), values);
+            this.encodeCharArrayAndCheck(java.util.Base64.getUrlEncoder(), Base64.getUrlEncoder(), values);
+            this.encodeCharArrayAndCheck(java.util.Base64.getMimeEncoder(), Base64.getMimeEncoder(), values);
+            this.encodeCharArrayAndCheck(java.util.Base64.getMimeEncoder(8, separator), Base64.getMimeEncoder(8, separator), values);
+        }
+    }
+
+    private void encodeCharArrayAndCheck(final java.util.Base64.Encoder jdk,
+                                         final Base64.Encoder emul,
+                                         final byte[] values) {
+        final String expected = jdk.encodeToString(values);
+
+        final byte[] from = new byte[values.length + 3];
+        System.arraycopy(values, 0, from, 1, values.length);
+
+        final char[] to = new char[expected.length() + 2];
+        final int length = emul.encode(from, 1, values.length, to, 1);
+
+        this.checkEquals(
+            expected,
+            new String(to, 1, length),
+            () -> emul + " encode(byte[], int, int, char[], int) " + Arrays.toString(values)
+        );
+    }
+
+    @Test
+    public void testEncodeCharArrayTooSmallFails() {
+        assertThrows(IndexOutOfBoundsException.class, () -> Base64.getEncoder().encode(new byte[3], 0, 3, new char[3], 0));
+    }
+
+    // primitive arrays.................................................................................................
+
+    @Test
+    public void testEncodeDecodeIntArray() {
+        for (int length = 0; length < 300; length += 7) {
+            final int[] values = new int[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = i * 0x01234567;
+            }
+
+            for (final boolean bigEndian : new boolean[]{true, false}) {
+                final ByteBuffer buffer = ByteBuffer.allocate(length * 4)
+                    .order(byteOrder(bigEndian));
+                buffer.asIntBuffer().put(values);
+
+                this.encodeDecodeArrayAndCheck(
+                    buffer.array(),
+                    (e) -> e.encode(values, bigEndian),
+                    (e) -> e.encodeToString(values, bigEndian),
+                    (d, b) -> assertArrayEquals(values, d.decodeIntArray(b, bigEndian)),
+                    (d, s) -> assertArrayEquals(values, d.decodeIntArray(s, bigEndian))
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testEncodeDecodeLongArray() {
+        for (int length = 0; length < 150; length += 7) {
+            final long[] values = new long[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = i * 0x0123456789abcdefL;
+            }
+
+            for (final boolean bigEndian : new boolean[]{true, false}) {
+                final ByteBuffer buffer = ByteBuffer.allocate(length * 8)
+                    .order(byteOrder(bigEndian));
+                buffer.asLongBuffer().put(values);
+
+                this.encodeDecodeArrayAndCheck(
+                    buffer.array(),
+                    (e) -> e.encode(values, bigEndian),
+                    (e) -> e.encodeToString(values, bigEndian),
+                    (d, b) -> assertArrayEquals(values, d.decodeLongArray(b, bigEndian)),
+                    (d, s) -> assertArrayEquals(values, d.decodeLongArray(s, bigEndian))
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testEncodeDecodeFloatArray() {
+        for (int length = 0; length < 300; length += 7) {
+            final float[] values = new float[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = i * 1.25f - 100;
+            }
+
+            for (final boolean bigEndian : new boolean[]{true, false}) {
+                final ByteBuffer buffer = ByteBuffer.allocate(length * 4)
+                    .order(byteOrder(bigEndian));
+                buffer.asFloatBuffer().put(values);
+
+                this.encodeDecodeArrayAndCheck(
+                    buffer.array(),
+                    (e) -> e.encode(values, bigEndian),
+                    (e) -> e.encodeToString(values, bigEndian),
+                    (d, b) -> assertArrayEquals(values, d.decodeFloatArray(b, bigEndian)),
+                    (d, s) -> assertArrayEquals(values, d.decodeFloatArray(s, bigEndian))
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testEncodeDecodeDoubleArray() {
+        for (int length = 0; length < 150; length += 7) {
+            final double[] values = new double[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = i * Math.PI - 100;
+            }
+
+            for (final boolean bigEndian : new boolean[]{true, false}) {
+                final ByteBuffer buffer = ByteBuffer.allocate(length * 8)
+                    .order(byteOrder(bigEndian));
+                buffer.asDoubleBuffer().put(values);
+
+                this.encodeDecodeArrayAndCheck(
+                    buffer.array(),
+                    (e) -> e.encode(values, bigEndian),
+                    (e) -> e.encodeToString(values, bigEndian),
+                    (d, b) -> assertArrayEquals(values, d.decodeDoubleArray(b, bigEndian)),
+                    (d, s) -> assertArrayEquals(values, d.decodeDoubleArray(s, bigEndian))
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testDecodeIntArrayInvalidLengthFails() {
+        assertThrows(IllegalArgumentException.class, () -> Base64.getDecoder().decodeIntArray("QUJD", true));
+    }
+
+    @Test
+    public void testDecodeIntArrayInvalidFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getDecoder().decodeIntArray("QUJD!UJD", true)
+        );
+        this.checkEquals("Invalid encoding got 0x21 at 4", thrown.getMessage());
+    }
+
+    private static ByteOrder byteOrder(final boolean bigEndian) {
+        return bigEndian ?
+            ByteOrder.BIG_ENDIAN :
+            ByteOrder.LITTLE_ENDIAN;
+    }
+
+    private void encodeDecodeArrayAndCheck(final byte[] bytes,
+                                           final Function<Base64.Encoder, byte[]> encode,
+                                           final Function<Base64.Encoder, String> encodeToString,
+                                           final BiConsumer<Base64.Decoder, byte[]> decode,
+                                           final BiConsumer<Base64.Decoder, String> decodeString) {
+        final byte[] separator = new byte[]{'\n'};
+
+        this.encodeDecodeArrayAndCheck(java.util.Base64.getEncoder(), Base64.getEncoder(), Base64.getDecoder(), bytes, encode, encodeToString, decode, decodeString);
+        this.encodeDecodeArrayAndCheck(java.util.Base64.getEncoder().withoutPadding(), Base64.getEncoder().withoutPadding(), Base64.getDecoder(), bytes, encode, encodeToString, decode, decodeString);
+        this.encodeDecodeArrayAndCheck(java.util.Base64.getUrlEncoder(), Base64.getUrlEncoder(), Base64.getUrlDecoder(), bytes, encode, encodeToString, decode, decodeString);
+        this.encodeDecodeArrayAndCheck(java.util.Base64.getMimeEncoder(), Base64.getMimeEncoder(), Base64.getMimeDecoder(), bytes, encode, encodeToString, decode, decodeString);
+        this.encodeDecodeArrayAndCheck(java.util.Base64.getMimeEncoder(12, separator), Base64.getMimeEncoder(12, separator), Base64.getMimeDecoder(), bytes, encode, encodeToString, decode, decodeString);
+    }
+
+    private void encodeDecodeArrayAndCheck(final java.util.Base64.Encoder jdk,
+                                           final Base64.Encoder emul,
+                                           final Base64.Decoder decoder,
+                                           final byte[] bytes,
+                                           final Function<Base64.Encoder, byte[]> encode,
+                                           final Function<Base64.Encoder, String> encodeToString,
+                                           final BiConsumer<Base64.Decoder, byte[]> decode,
+                                           final BiConsumer<Base64.Decoder, String> decodeString) {
+        final byte[] expected = jdk.encode(bytes);
+
+        assertArrayEquals(
+            expected,
+            encode.apply(emul),
+            () -> emul + " encode " + bytes.length
+        );
+        this.checkEquals(
+            new String(expected, StandardCharsets.US_ASCII),
+            encodeToString.apply(emul),
+            () -> emul + " encodeToString " + bytes.length
+        );
+
+        decode.accept(decoder, expected);
+        decodeString.accept(decoder, new String(expected, StandardCharsets.US_ASCII));
+    }
+
+    // encodeLong.......................................................................................................
+
+    @Test
+    public void testEncodeLongDecodeLong() {
+        final long[] values = new long[]{0, 1, -1, Long.MAX_VALUE, Long.MIN_VALUE, 0x0123456789abcdefL, 0xfedcba9876543210L};
+
+        for (final long value : values) {
+            final byte[] bytes = ByteBuffer.allocate(8)
+                .putLong(value)
+                .array();
+
+            this.encodeLongAndCheck(java.util.Base64.getEncoder(), Base64.getEncoder(), Base64.getDecoder(), value, bytes);
+            this.encodeLongAndCheck(java.util.Base64.getEncoder().withoutPadding(), Base64.getEncoder().withoutPadding(), Base64.getDecoder(), value, bytes);
+            this.encodeLongAndCheck(java.util.Base64.getUrlEncoder(), Base64.getUrlEncoder(), Base64.getUrlDecoder(), value, bytes);
+            this.encodeLongAndCheck(java.util.Base64.getUrlEncoder().withoutPadding(), Base64.getUrlEncoder().withoutPadding(), Base64.getUrlDecoder(), value, bytes);
+            this.encodeLongAndCheck(java.util.Base64.getMimeEncoder(), Base64.getMimeEncoder(), Base64.getMimeDecoder(), value, bytes);
+        }
+    }
+
+    private void encodeLongAndCheck(final java.util.Base64.Encoder jdk,
+                                    final Base64.Encoder emul,
+                                    final Base64.Decoder decoder,
+                                    final long value,
+                                    final byte[] bytes) {
+        final String encoded = jdk.encodeToString(bytes);
+        this.checkEquals(
+            encoded,
+            emul.encodeLong(value),
+            () -> emul + " encodeLong " + value
+        );
+        this.checkEquals(
+            value,
+            decoder.decodeLong(encoded),
+            () -> decoder + " decodeLong " + encoded
+        );
+    }
+
+    @Test
+    public void testEncodeLongsDecodeLongs() {
+        final UUID[] uuids = new UUID[]{
+            new UUID(0, 0),
+            new UUID(-1, -1),
+            UUID.fromString("123e4567-e89b-12d3-a456-426614174000"),
+            UUID.fromString("f81d4fae-7dec-11d0-a765-00a0c91e6bf6")
+        };
+
+        for (final UUID uuid : uuids) {
+            final long high = uuid.getMostSignificantBits();
+            final long low = uuid.getLeastSignificantBits();
+            final byte[] bytes = ByteBuffer.allocate(16)
+                .putLong(high)
+                .putLong(low)
+                .array();
+
+            this.encodeLongsAndCheck(java.util.Base64.getEncoder(), Base64.getEncoder(), Base64.getDecoder(), high, low, bytes);
+            this.encodeLongsAndCheck(java.util.Base64.getUrlEncoder().withoutPadding(), Base64.getUrlEncoder().withoutPadding(), Base64.getUrlDecoder(), high, low, bytes);
+            this.encodeLongsAndCheck(java.util.Base64.getMimeEncoder(), Base64.getMimeEncoder(), Base64.getMimeDecoder(), high, low, bytes);
+
+            final byte[] separator = new byte[]{'\n'};
+            this.checkEquals(
+                java.util.Base64.getMimeEncoder(8, separator).encodeToString(bytes),
+                Base64.getMimeEncoder(8, separator).encodeLongs(high, low)
+            );
+        }
+    }
+
+    private void encodeLongsAndCheck(final java.util.Base64.Encoder jdk,
+                                     final Base64.Encoder emul,
+                                     final Base64.Decoder decoder,
+                                     final long high,
+                                     final long low,
+                                     final byte[] bytes) {
+        final String encoded = jdk.encodeToString(bytes);
+        this.checkEquals(
+            encoded,
+            emul.encodeLongs(high, low),
+            () -> emul + " encodeLongs " + high + " " + low
+        );
+
+        final char[] chars = new char[encoded.length() + 1];
+        this.checkEquals(
+            encoded.length(),
+            emul.encodeLongs(high, low, chars, 1)
+        );
+        this.checkEquals(
+            encoded,
+            new String(chars, 1, encoded.length())
+        );
+
+        final long[] decoded = decoder.decodeLongs(encoded);
+        this.checkEquals(high, decoded[0], () -> decoder + " decodeLongs high " + encoded);
+        this.checkEquals(low, decoded[1], () -> decoder + " decodeLongs low " + encoded);
+    }
+
+    @Test
+    public void testDecodeLongInvalidLengthFails() {
+        assertThrows(IllegalArgumentException.class, () -> Base64.getDecoder().decodeLong("AAAAAAAAAA"));
+        assertThrows(IllegalArgumentException.class, () -> Base64.getDecoder().decodeLong("AAAAAAAAAAAA"));
+    }
+
+    @Test
+    public void testDecodeLongInvalidCharacterFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getDecoder().decodeLong("AAAAA!AAAAA")
+        );
+        this.checkEquals("Invalid encoding got 0x21 at 5", thrown.getMessage());
+    }
+
+    @Test
+    public void testDecodeLongsInvalidCharacterFails() {
+        assertThrows(IllegalArgumentException.class, () -> Base64.getUrlDecoder().decodeLongs("AAAAAAAAAAAAAAAAAAAA+A=="));
+    }
+
+    // encodedLength....................................................................................................
+
+    @Test
+    public void testEncodedLengthNegativeFails() {
+        assertThrows(IllegalArgumentException.class, () -> Base64.getEncoder().encodedLength(-1));
+    }
+
+    @Test
+    public void testEncodedLengthMimeLineLengthLineSeparator() {
+        for (int lineLength = 0; lineLength < 100; lineLength++) {
+            final byte[] separator = new byte[]{(byte) '\n', (byte) '\n', (byte) '\n'};
+
+            final java.util.Base64.Encoder jdk = java.util.Base64.getMimeEncoder(lineLength, separator);
+            final Base64.Encoder emul = Base64.getMimeEncoder(lineLength, separator);
+
+            for (int i = 0; i < 255; i++) {
+                final int length = i;
+
+                this.checkEquals(
+                    (long) jdk.encode(new byte[length]).length,
+                    emul.encodedLength(length),
+                    () -> emul + " encodedLength " + length
+                );
+                this.checkEquals(
+                    (long) jdk.withoutPadding().encode(new byte[length]).length,
+                    emul.withoutPadding().encodedLength(length),
+                    () -> emul.withoutPadding() + " encodedLength " + length
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testEncodedLengthLarge() {
+        this.checkEquals(
+            4L * 1024 * 1024 * 1024,
+            Base64.getEncoder().encodedLength(3L * 1024 * 1024 * 1024)
+        );
     }
 
     // decode...........................................................................................................
@@ -286,6 +738,58 @@ public final class Base64Test implements PublicStaticHelperTesting<Base64>, ToSt
         );
     }
 
+    @Test
+    public void testDecodeInvalidWithinWordFails() {
+        final String encoded = "QUJDREVGR0hJ!KLM";
+
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getDecoder().decode(encoded)
+        );
+        this.checkEquals(
+            "Invalid encoding got 0x21 at 12",
+            thrown.getMessage(),
+            () -> "decode " + CharSequences.quoteIfChars(encoded)
+        );
+    }
+
+    @Test
+    public void testDecodeInvalidPadWithinWordFails() {
+        final String encoded = "QUJDREVGR0g=SUpL";
+
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getDecoder().decode(encoded)
+        );
+        this.checkEquals(
+            "Expected pad but got 'S' at 12",
+            thrown.getMessage(),
+            () -> "decode " + CharSequences.quoteIfChars(encoded)
+        );
+    }
+
+    @Test
+    public void testDecodeMimeNonAsciiIgnored() {
+        final byte[] encoded = new byte[]{'Q', 'U', (byte) 0x80, 'J', 'D', 'R', 'E', 'V', 'G', (byte) 0xff};
+
+        assertArrayEquals(
+            java.util.Base64.getMimeDecoder().decode(encoded),
+            Base64.getMimeDecoder().decode(encoded)
+        );
+    }
+
+    @Test
+    public void testDecodeLarge() {
+        final byte[] values = new byte[64 * 1024 + 5];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (byte) (i * 31);
+        }
+
+        this.decodeAndCheck(values);
+        this.decodeUrlAndCheck(values);
+        this.decodeMimeAndCheck(values);
+    }
+
     @Test
     public void testDecodeEmpty() {
         this.decodeAndCheck(0);
@@ -538,86 +1042,1971 @@ public final class Base64Test implements PublicStaticHelperTesting<Base64>, ToSt
         assertArrayEquals(jdk.decode(string),
             emul.decode(string),
             () -> emul + " decode(String) " + CharSequences.quoteAndEscape(string));
-    }
 
-    @Test
-    public void testRfc2045_EncodeAndDecodeRoundtrip() {
-        this.encodeAndDecodeRoundtrip(
-            Encoder.RFC2045,
-            Decoder.RFC2045
+        {
+            final int offset = 2;
+            final byte[] buffer = new byte[offset + values.length];
+            System.arraycopy(values, 0, buffer, offset, values.length);
+
+            final int length = emul.decodeInPlace(buffer, offset, values.length);
+            assertArrayEquals(jdk.decode(values),
+                Arrays.copyOfRange(buffer, offset, offset + length),
+                () -> emul + " decodeInPlace " + Arrays.toString(values));
+        }
+
+        assertTrue(
+            emul.isValid(values),
+            () -> emul + " isValid " + CharSequences.quoteAndEscape(string)
         );
-    }
 
-    @Test
-    public void testRfc4648_EncodeAndDecodeRoundtrip() {
-        this.encodeAndDecodeRoundtrip(
-            Encoder.RFC4648,
-            Decoder.RFC4648
+        final int decodedLength = jdk.decode(values).length;
+        this.checkEquals(
+            decodedLength,
+            emul.decodedLength(values),
+            () -> emul + " decodedLength(byte[]) " + CharSequences.quoteAndEscape(string)
+        );
+        this.checkEquals(
+            decodedLength,
+            emul.decodedLength(string),
+            () -> emul + " decodedLength(CharSequence) " + CharSequences.quoteAndEscape(string)
         );
     }
 
     @Test
-    public void testRfc4648UrlSafe_EncodeAndDecodeRoundtrip() {
-        this.encodeAndDecodeRoundtrip(
-            Encoder.RFC4648_URLSAFE,
-            Decoder.RFC4648_URLSAFE
+    public void testDecodeInPlaceInvalidFails() {
+        final byte[] buffer = "QUJDREVGR0hJ!KLM".getBytes(StandardCharsets.US_ASCII);
+
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getDecoder().decodeInPlace(buffer, 0, buffer.length)
+        );
+        this.checkEquals(
+            "Invalid encoding got 0x21 at 12",
+            thrown.getMessage()
         );
     }
 
-    private void encodeAndDecodeRoundtrip(final Encoder encoder,
-                                          final Decoder decoder) {
-        final Charset charset = Charset.defaultCharset();
+    // decodeRange......................................................................................................
 
-        for (int i = 0; i < 100; i++) {
-            final StringBuilder b = new StringBuilder();
-            for (int j = 0; j < i; j++) {
-                final int c = 'A' + j;
-                b.append((char) c);
-            }
-            final String string = b.toString();
-            final String encoded = encoder.encodeToString(string.getBytes(charset));
-            this.checkEquals(
-                string,
-                new String(decoder.decode(encoded), charset),
-                () -> "encode and decode roundtrip " + CharSequences.quoteIfChars(string)
-            );
-        }
+    @Test
+    public void testDecodeRangeInvalidRangeFails() {
+        assertThrows(IndexOutOfBoundsException.class, () -> Base64.getDecoder().decodeRange("QUJD", 2, 1));
     }
 
-    // toString.........................................................................................................
-
-    @Override
-    public void testCheckToStringOverridden() {
+    @Test
+    public void testDecodeRangePastEndFails() {
+        assertThrows(IndexOutOfBoundsException.class, () -> Base64.getDecoder().decodeRange("QUJD", 2, 4));
     }
 
     @Test
-    public void testEncoderBasicToString() {
-        this.toStringAndCheck(Base64.getEncoder(), "RFC4648 WITH PADDING");
+    public void testDecodeRangeInvalidLineLengthFails() {
+        assertThrows(IllegalArgumentException.class, () -> Base64.getMimeDecoder().decodeRange("QUJD", 0, 1, 75, 2));
     }
 
     @Test
-    public void testEncoderBasicWithoutPaddingToString() {
-        this.toStringAndCheck(Base64.getEncoder().withoutPadding(), "RFC4648");
+    public void testDecodeRangeEmpty() {
+        this.checkEquals(0, Base64.getDecoder().decodeRange("QUJD", 1, 1).length);
     }
 
     @Test
-    public void testEncoderUrlSafeToString() {
-        this.toStringAndCheck(Base64.getUrlEncoder(), "RFC4648 URLSAFE WITH PADDING");
+    public void testDecodeRange() {
+        this.decodeRangeAndCheck(
+            java.util.Base64.getEncoder(),
+            Base64.getDecoder()
+        );
     }
 
     @Test
-    public void testEncoderUrlSafeWithoutPaddingToString() {
-        this.toStringAndCheck(Base64.getUrlEncoder().withoutPadding(), "RFC4648 URLSAFE");
+    public void testDecodeRangeWithoutPadding() {
+        this.decodeRangeAndCheck(
+            java.util.Base64.getEncoder().withoutPadding(),
+            Base64.getDecoder()
+        );
     }
 
     @Test
-    public void testEncoderMimeToString() {
-        this.toStringAndCheck(Base64.getMimeEncoder(), "RFC2045 WITH PADDING lineWidth=76");
+    public void testDecodeRangeUrl() {
+        this.decodeRangeAndCheck(
+            java.util.Base64.getUrlEncoder(),
+            Base64.getUrlDecoder()
+        );
     }
 
     @Test
-    public void testEncoderMimeLineWidthZeroToString() {
-        this.toStringAndCheck(Base64.getMimeEncoder(0, new byte[]{'\r'}), "RFC4648 WITH PADDING");
+    public void testDecodeRangeMime() {
+        this.decodeRangeAndCheck(
+            java.util.Base64.getMimeEncoder(),
+            Base64.getMimeDecoder()
+        );
+    }
+
+    private void decodeRangeAndCheck(final java.util.Base64.Encoder encoder,
+                                     final Base64.Decoder decoder) {
+        for (int length = 0; length < 200; length += 7) {
+            final byte[] values = values(length);
+            final byte[] encoded = encoder.encode(values);
+            final String string = new String(encoded, StandardCharsets.US_ASCII);
+
+            for (int from = 0; from <= length; from++) {
+                for (int to = from; to <= length; to += 5) {
+                    final byte[] expected = Arrays.copyOfRange(values, from, to);
+                    final int f = from;
+                    final int t = to;
+
+                    assertArrayEquals(
+                        expected,
+                        decoder.decodeRange(encoded, from, to),
+                        () -> decoder + " decodeRange(byte[]) " + f + ".." + t + " " + string
+                    );
+                    assertArrayEquals(
+                        expected,
+                        decoder.decodeRange(string, from, to),
+                        () -> decoder + " decodeRange(CharSequence) " + f + ".." + t + " " + string
+                    );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDecodeRangeMimeLineLength() {
+        this.decodeRangeLineLengthAndCheck(
+            java.util.Base64.getMimeEncoder(),
+            76,
+            2
+        );
+    }
+
+    @Test
+    public void testDecodeRangeMimeLineLength2() {
+        this.decodeRangeLineLengthAndCheck(
+            java.util.Base64.getMimeEncoder(20, new byte[]{'\n'}),
+            20,
+            1
+        );
+    }
+
+    private void decodeRangeLineLengthAndCheck(final java.util.Base64.Encoder encoder,
+                                               final int lineLength,
+                                               final int separatorLength) {
+        final Base64.Decoder decoder = Base64.getMimeDecoder();
+
+        for (int length = 0; length < 200; length += 7) {
+            final byte[] values = values(length);
+            final byte[] encoded = encoder.encode(values);
+            final String string = new String(encoded, StandardCharsets.US_ASCII);
+
+            for (int from = 0; from <= length; from++) {
+                for (int to = from; to <= length; to += 5) {
+                    final byte[] expected = Arrays.copyOfRange(values, from, to);
+                    final int f = from;
+                    final int t = to;
+
+                    assertArrayEquals(
+                        expected,
+                        decoder.decodeRange(encoded, from, to, lineLength, separatorLength),
+                        () -> decoder + " decodeRange(byte[]) " + f + ".." + t + " " + string
+                    );
+                    assertArrayEquals(
+                        expected,
+                        decoder.decodeRange(string, from, to, lineLength, separatorLength),
+                        () -> decoder + " decodeRange(CharSequence) " + f + ".." + t + " " + string
+                    );
+                }
+            }
+        }
+    }
+
+    private static byte[] values(final int length) {
+        final byte[] values = new byte[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (byte) (i * 7 + 3);
+        }
+        return values;
+    }
+
+    // custom alphabet...................................................................................................
+
+    private final static String BCRYPT = "./ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    private final static String IMAP = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+,";
+
+    @Test
+    public void testCustomAlphabetBcrypt() {
+        this.customAlphabetAndCheck(BCRYPT, '$');
+    }
+
+    @Test
+    public void testCustomAlphabetImap() {
+        this.customAlphabetAndCheck(IMAP, '=');
+    }
+
+    private void customAlphabetAndCheck(final String alphabet,
+                                        final char pad) {
+        final Encoder encoder = Base64.getEncoder(alphabet, pad);
+        final Decoder decoder = Base64.getDecoder(alphabet, pad);
+
+        for (int length = 0; length < 100; length++) {
+            final byte[] values = values(length);
+            final String expected = translate(java.util.Base64.getEncoder().encodeToString(values), alphabet, pad);
+
+            this.checkEquals(expected, encoder.encodeToString(values), () -> "encode " + values.length);
+            this.checkEquals(expected, encoder.encodeToCharSequence(values).toString(), () -> "encodeToCharSequence " + values.length);
+            this.checkEquals(
+                expected.replace(String.valueOf(pad), ""),
+                encoder.withoutPadding().encodeToString(values),
+                () -> "encode withoutPadding " + values.length
+            );
+
+            assertArrayEquals(values, decoder.decode(expected), () -> "decode " + expected);
+            assertArrayEquals(values, decoder.decode(expected.replace(String.valueOf(pad), "")), () -> "decode without padding " + expected);
+            this.checkEquals(values.length, decoder.decodedLength(expected), () -> "decodedLength " + expected);
+        }
+    }
+
+    /**
+     * Translates characters from the standard alphabet and pad to the given alphabet and pad.
+     */
+    private static String translate(final String encoded,
+                                    final String alphabet,
+                                    final char pad) {
+        final StringBuilder b = new StringBuilder();
+        for (final char c : encoded.toCharArray()) {
+            b.append(
+                '=' == c ?
+                    pad :
+                    alphabet.charAt(Base64.RFC4648_ALPHABET.indexOf(c))
+            );
+        }
+        return b.toString();
+    }
+
+    @Test
+    public void testCustomAlphabetEncodeLong() {
+        final long value = 0x0123456789abcdefL;
+        final String encoded = Base64.getEncoder(BCRYPT, '$').encodeLong(value);
+
+        this.checkEquals(
+            translate(java.util.Base64.getEncoder().encodeToString(ByteBuffer.allocate(8).putLong(value).array()), BCRYPT, '$'),
+            encoded
+        );
+        this.checkEquals(value, Base64.getDecoder(BCRYPT, '$').decodeLong(encoded));
+    }
+
+    @Test
+    public void testCustomAlphabetDecodeInvalidFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getDecoder(BCRYPT, '$').decode("QU+D")
+        );
+        this.checkEquals("Invalid encoding got 0x2b at 2", thrown.getMessage());
+    }
+
+    @Test
+    public void testCustomAlphabetDecodeStandardPadFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getDecoder(BCRYPT, '$').decode("QQ==")
+        );
+        this.checkEquals("Invalid encoding got 0x3d at 2", thrown.getMessage());
+    }
+
+    @Test
+    public void testCustomAlphabetInvalidFails() {
+        assertThrows(IllegalArgumentException.class, () -> Base64.getEncoder("ABC", '='));
+        assertThrows(IllegalArgumentException.class, () -> Base64.getDecoder(BCRYPT, '/'));
+    }
+
+    @Test
+    public void testCustomAlphabetStandard() {
+        this.checkEquals(Base64.getEncoder().toString(), Base64.getEncoder(Base64.RFC4648_ALPHABET, '=').toString());
+    }
+
+    @Test
+    public void testCustomAlphabetEncoderToString() {
+        this.toStringAndCheck(Base64.getEncoder(BCRYPT, '$'), BCRYPT + " '$' WITH PADDING");
+    }
+
+    @Test
+    public void testCustomAlphabetEncoderWithoutPaddingToString() {
+        this.toStringAndCheck(Base64.getEncoder(BCRYPT, '$').withoutPadding(), BCRYPT + " '$'");
+    }
+
+    @Test
+    public void testCustomAlphabetDecoderToString() {
+        this.toStringAndCheck(Base64.getDecoder(BCRYPT, '$'), BCRYPT + " '$'");
+    }
+
+    // metrics..........................................................................................................
+
+    @Test
+    public void testMetricsEncode() {
+        final Base64.Counters counters = Base64.counters();
+
+        Base64.getEncoder().withMetrics(counters).encode(new byte[3]);
+        Base64.getEncoder().withMetrics(counters).encodeToString(new byte[5]);
+        Base64.getMimeEncoder().withMetrics(counters).encode(new byte[0], new byte[0]);
+
+        this.checkEquals(3L, counters.encodeCalls(), "calls");
+        this.checkEquals(8L, counters.encodeBytes(), "bytes");
+        this.checkEquals(12L, counters.encodeEncoded(), "encoded");
+        this.checkEquals(true, counters.encodeNanos() >= 0, "nanos");
+
+        final long[] sizes = new long[Base64.Counters.BUCKETS];
+        sizes[0] = 1;
+        sizes[2] = 1;
+        sizes[3] = 1;
+        assertArrayEquals(sizes, counters.encodeSizes());
+        this.checkEquals(0L, counters.decodeCalls(), "decode calls");
+    }
+
+    @Test
+    public void testMetricsDecode() {
+        final Base64.Counters counters = Base64.counters();
+
+        Base64.getDecoder().withMetrics(counters).decode("QUJD");
+        Base64.getUrlDecoder().withMetrics(counters).decode("QUI=".getBytes(StandardCharsets.US_ASCII));
+        Base64.getMimeDecoder().withMetrics(counters).decode("QQ==".getBytes(StandardCharsets.US_ASCII), new byte[1]);
+
+        this.checkEquals(3L, counters.decodeCalls(), "calls");
+        this.checkEquals(12L, counters.decodeEncoded(), "encoded");
+        this.checkEquals(6L, counters.decodeBytes(), "bytes");
+
+        final long[] sizes = new long[Base64.Counters.BUCKETS];
+        sizes[3] = 3;
+        assertArrayEquals(sizes, counters.decodeSizes());
+        this.checkEquals(0L, counters.encodeCalls(), "encode calls");
+    }
+
+    @Test
+    public void testMetricsFailures() {
+        final Base64.Counters counters = Base64.counters();
+        final Base64.Decoder decoder = Base64.getDecoder().withMetrics(counters);
+
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode("Q!=="));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode("QQ=A"));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode("QUJDQ"));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode("QUJDQ".getBytes(StandardCharsets.US_ASCII)));
+        assertThrows(IllegalArgumentException.class, () -> Base64.getStandardOrUrlDecoder().withMetrics(counters).withoutMixing().decode("+-AA"));
+
+        this.checkEquals(1L, counters.failures(Base64.DecodeFailure.INVALID_CHARACTER), "invalid");
+        this.checkEquals(1L, counters.failures(Base64.DecodeFailure.BAD_PADDING), "padding");
+        this.checkEquals(2L, counters.failures(Base64.DecodeFailure.TRUNCATED_GROUP), "truncated");
+        this.checkEquals(1L, counters.failures(Base64.DecodeFailure.MIXED_ALPHABETS), "mixed");
+        this.checkEquals(0L, counters.decodeCalls(), "calls");
+    }
+
+    @Test
+    public void testMetricsConstantTimeFailure() {
+        final Base64.Counters counters = Base64.counters();
+
+        assertThrows(IllegalArgumentException.class, () -> Base64.getDecoder().withMetrics(counters).constantTime().decode("Q!=="));
+        this.checkEquals(1L, counters.failures(Base64.DecodeFailure.INVALID_CHARACTER), "invalid");
+    }
+
+    @Test
+    public void testMetricsOnlyGivenToCopy() {
+        final Base64.Counters counters = Base64.counters();
+        Base64.getEncoder().withMetrics(counters);
+        Base64.getDecoder().withMetrics(counters);
+
+        Base64.getEncoder().encode(new byte[3]);
+        Base64.getDecoder().decode("QUJD");
+        this.checkEquals(0L, counters.encodeCalls(), "encode");
+        this.checkEquals(0L, counters.decodeCalls(), "decode");
+    }
+
+    @Test
+    public void testMetricsKeptByCopies() {
+        final Base64.Counters counters = Base64.counters();
+
+        Base64.getEncoder().withMetrics(counters).withoutPadding().encode(new byte[1]);
+        Base64.getEncoder().withMetrics(counters).constantTime().encode(new byte[1]);
+        Base64.getDecoder().withMetrics(counters).constantTime().decode("QUJD");
+
+        this.checkEquals(2L, counters.encodeCalls(), "encode");
+        this.checkEquals(1L, counters.decodeCalls(), "decode");
+    }
+
+    @Test
+    public void testMetricsRemoved() {
+        final Base64.Counters counters = Base64.counters();
+
+        Base64.getEncoder().withMetrics(counters).withMetrics(null).encode(new byte[3]);
+        this.checkEquals(0L, counters.encodeCalls());
+    }
+
+    @Test
+    public void testEncoderWithMetricsSame() {
+        final Base64.Encoder encoder = Base64.getEncoder();
+        assertSame(encoder, encoder.withMetrics(null));
+    }
+
+    @Test
+    public void testDecoderWithMetricsNullReturnsOriginal() {
+        final Base64.Decoder decoder = Base64.getMimeDecoder();
+        assertSame(decoder, decoder.withMetrics(Base64.counters()).withMetrics(null));
+    }
+
+    @Test
+    public void testMetricsMimeDecoder() {
+        // the copy must still skip line separators like the original
+        final Base64.Decoder decoder = Base64.getMimeDecoder().withMetrics(Base64.counters());
+        assertArrayEquals(new byte[]{'A', 'B', 'C'}, decoder.decode("QU\r\nJD"));
+    }
+
+    @Test
+    public void testMetricsToString() {
+        final Base64.Counters counters = Base64.counters();
+
+        this.toStringAndCheck(Base64.getMimeEncoder().withMetrics(counters), Base64.getMimeEncoder().toString());
+        this.toStringAndCheck(Base64.getUrlDecoder().withMetrics(counters), Base64.getUrlDecoder().toString());
+    }
+
+    @Test
+    public void testNullFromMessage() {
+        this.nullFromMessageAndCheck(Base64.getEncoder(), Base64.getDecoder());
+    }
+
+    @Test
+    public void testNullFromMessageWithMetrics() {
+        final Base64.Counters counters = Base64.counters();
+        this.nullFromMessageAndCheck(Base64.getEncoder().withMetrics(counters), Base64.getDecoder().withMetrics(counters));
+    }
+
+    private void nullFromMessageAndCheck(final Base64.Encoder encoder,
+                                         final Base64.Decoder decoder) {
+        this.checkEquals("from", assertThrows(NullPointerException.class, () -> encoder.encode(null)).getMessage(), "encode(byte[])");
+        this.checkEquals("from", assertThrows(NullPointerException.class, () -> encoder.encode(null, new byte[4])).getMessage(), "encode(byte[], byte[])");
+        this.checkEquals("from", assertThrows(NullPointerException.class, () -> encoder.encodeToString(null)).getMessage(), "encodeToString");
+        this.checkEquals("from", assertThrows(NullPointerException.class, () -> decoder.decode((byte[]) null)).getMessage(), "decode(byte[])");
+        this.checkEquals("from", assertThrows(NullPointerException.class, () -> decoder.decode(null, new byte[3])).getMessage(), "decode(byte[], byte[])");
+        this.checkEquals("encoded", assertThrows(NullPointerException.class, () -> decoder.decode((String) null)).getMessage(), "decode(String)");
+    }
+
+    @Test
+    public void testCountersBucket() {
+        this.checkEquals(0, Base64.Counters.bucket(0));
+        this.checkEquals(1, Base64.Counters.bucket(1));
+        this.checkEquals(2, Base64.Counters.bucket(2));
+        this.checkEquals(2, Base64.Counters.bucket(3));
+        this.checkEquals(3, Base64.Counters.bucket(4));
+        this.checkEquals(31, Base64.Counters.bucket(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testCountersToString() {
+        final Base64.Counters counters = Base64.counters();
+        counters.encoded(3, 4, 10);
+        counters.decoded(4, 3, 20);
+        counters.failed(Base64.DecodeFailure.BAD_PADDING);
+
+        this.toStringAndCheck(
+            counters,
+            "encode 1 calls 3 bytes 10ns, decode 1 calls 3 bytes 20ns, INVALID_CHARACTER=0, BAD_PADDING=1, TRUNCATED_GROUP=0, MIXED_ALPHABETS=0"
+        );
+    }
+
+    // standardOrUrl....................................................................................................
+
+    @Test
+    public void testStandardOrUrlDecode() {
+        for (int length = 0; length < 100; length++) {
+            final byte[] values = new byte[length];
+            for (int i = 0; i < length; i++) {
+                // favour bytes encoding to 62 and 63
+                values[i] = (byte) (0 == i % 2 ? 0xfb : 0xff);
+            }
+
+            this.standardOrUrlDecodeAndCheck(java.util.Base64.getEncoder(), values);
+            this.standardOrUrlDecodeAndCheck(java.util.Base64.getEncoder().withoutPadding(), values);
+            this.standardOrUrlDecodeAndCheck(java.util.Base64.getUrlEncoder(), values);
+            this.standardOrUrlDecodeAndCheck(java.util.Base64.getUrlEncoder().withoutPadding(), values);
+        }
+    }
+
+    private void standardOrUrlDecodeAndCheck(final java.util.Base64.Encoder jdk,
+                                             final byte[] values) {
+        final byte[] encoded = jdk.encode(values);
+        final String encodedString = new String(encoded, StandardCharsets.US_ASCII);
+
+        for (final Decoder decoder : new Decoder[]{Base64.getStandardOrUrlDecoder(), Base64.getStandardOrUrlDecoder().withoutMixing()}) {
+            assertArrayEquals(values, decoder.decode(encoded), () -> decoder + " " + encodedString);
+            assertArrayEquals(values, decoder.decode(encodedString), () -> decoder + " " + encodedString);
+        }
+    }
+
+    @Test
+    public void testStandardOrUrlDecodeMixed() {
+        assertArrayEquals(
+            new byte[]{(byte) 0xfb, (byte) 0xff, (byte) 0xbf},
+            Base64.getStandardOrUrlDecoder().decode("+_-/")
+        );
+    }
+
+    @Test
+    public void testStandardOrUrlDecodeWithoutMixingMixedFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getStandardOrUrlDecoder().withoutMixing().decode("QUJDQUJDQUJD+_-/")
+        );
+        this.checkEquals("Mixed alphabets got '_' at 13", thrown.getMessage());
+    }
+
+    @Test
+    public void testStandardOrUrlDecodeWithoutMixingExpectedPadFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getStandardOrUrlDecoder().withoutMixing().decode("QQ==QUJD")
+        );
+        this.checkEquals("Expected pad but got 'Q' at 4", thrown.getMessage());
+    }
+
+    @Test
+    public void testStandardOrUrlValidateWithoutMixing() {
+        final byte[] encoded = "QUJDQUJDQUJDQUJD-A-A/A".getBytes(StandardCharsets.US_ASCII);
+
+        this.checkEquals(-1, Base64.getStandardOrUrlDecoder().validate(encoded));
+        this.checkEquals(20, Base64.getStandardOrUrlDecoder().withoutMixing().validate(encoded));
+    }
+
+    @Test
+    public void testStandardOrUrlWithoutMixingOtherDecoders() {
+        for (final Decoder decoder : new Decoder[]{Base64.getDecoder(), Base64.getUrlDecoder(), Base64.getMimeDecoder()}) {
+            assertSame(decoder, decoder.withoutMixing());
+        }
+    }
+
+    @Test
+    public void testStandardOrUrlInvalidFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getStandardOrUrlDecoder().decode("QU!D")
+        );
+        this.checkEquals("Invalid encoding got 0x21 at 2", thrown.getMessage());
+    }
+
+    // validate.........................................................................................................
+
+    @Test
+    public void testIsValidInvalid() {
+        assertFalse(Base64.getDecoder().isValid(new byte[]{'A', 0}));
+    }
+
+    @Test
+    public void testIsValidMimeSeparators() {
+        assertTrue(Base64.getMimeDecoder().isValid("QUJD\r\nREVG".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void testValidateInvalidWithinWord() {
+        this.validateAndCheck(
+            Base64.getDecoder(),
+            "QUJDREVGR0hJ!KLM",
+            12
+        );
+    }
+
+    @Test
+    public void testValidateInvalidPad() {
+        this.validateAndCheck(
+            Base64.getDecoder(),
+            "QUJDREVGR0g=SUpL",
+            12
+        );
+    }
+
+    @Test
+    public void testValidateIncompleteGroup() {
+        this.validateAndCheck(
+            Base64.getDecoder(),
+            "QUJDR",
+            5
+        );
+    }
+
+    @Test
+    public void testValidateUrlSafeStandardAlphabet() {
+        this.validateAndCheck(
+            Base64.getUrlDecoder(),
+            "QUJD+EVG",
+            4
+        );
+    }
+
+    @Test
+    public void testValidateValid() {
+        this.validateAndCheck(
+            Base64.getDecoder(),
+            "QUJDREVGR0hJSktM",
+            -1
+        );
+    }
+
+    @Test
+    public void testValidateSlice() {
+        final byte[] encoded = "!!QUJD!!".getBytes(StandardCharsets.US_ASCII);
+        this.checkEquals(-1, Base64.getDecoder().validate(encoded, 2, 4));
+        this.checkEquals(6, Base64.getDecoder().validate(encoded, 2, 5));
+    }
+
+    private void validateAndCheck(final Base64.Decoder decoder,
+                                  final String encoded,
+                                  final int expected) {
+        this.checkEquals(
+            expected,
+            decoder.validate(encoded.getBytes(StandardCharsets.US_ASCII)),
+            () -> decoder + " validate " + CharSequences.quoteAndEscape(encoded)
+        );
+    }
+
+    // decodedLength....................................................................................................
+
+    @Test
+    public void testDecodedLengthByteArraySlice() {
+        final byte[] encoded = "!!QUJD!!".getBytes(StandardCharsets.US_ASCII);
+        this.checkEquals(3, Base64.getDecoder().decodedLength(encoded, 2, 4));
+    }
+
+    @Test
+    public void testDecodedLengthByteArraySliceInvalidFails() {
+        final byte[] encoded = new byte[4];
+        assertThrows(IndexOutOfBoundsException.class, () -> Base64.getDecoder().decodedLength(encoded, 2, 3));
+    }
+
+    @Test
+    public void testDecodedLengthCharSequenceSlice() {
+        this.checkEquals(2, Base64.getDecoder().decodedLength("!!QUI=!!", 2, 6));
+    }
+
+    @Test
+    public void testDecodedLengthCharSequenceSliceInvalidFails() {
+        assertThrows(IndexOutOfBoundsException.class, () -> Base64.getDecoder().decodedLength("QUJD", 3, 2));
+    }
+
+    @Test
+    public void testDecodedLengthMimeNonAscii() {
+        this.checkEquals(3, Base64.getMimeDecoder().decodedLength("QU\u0141JD\r\n"));
+    }
+
+    // encodeString & decodeToString....................................................................................
+
+    private final static String[] TEXT = {
+        "",
+        "A",
+        "AB",
+        "ABC",
+        "Hello world",
+        "caf\u00e9 \u00ff",
+        "\u0141\u00f3d\u017a \u20ac \u4e2d\u6587",
+        "emoji \ud83d\ude00\ud83c\udf0d",
+        "lone \ud83d surrogate \ude00",
+        "end \ud83d",
+    };
+
+    @Test
+    public void testEncodeStringUtf8() {
+        this.encodeStringAndCheck(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testEncodeStringIso88591() {
+        this.encodeStringAndCheck(StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void testEncodeStringUtf16() {
+        this.encodeStringAndCheck(StandardCharsets.UTF_16);
+    }
+
+    @Test
+    public void testEncodeStringUtf16Le() {
+        this.encodeStringAndCheck(StandardCharsets.UTF_16LE);
+    }
+
+    @Test
+    public void testEncodeStringShiftJis() {
+        this.encodeStringAndCheck(Charset.forName("Shift_JIS"));
+    }
+
+    @Test
+    public void testEncodeStringIso2022Jp() {
+        // stateful, the encoder ends by switching back to ASCII
+        this.encodeStringAndCheck(Charset.forName("ISO-2022-JP"));
+    }
+
+    @Test
+    public void testEncodeStringLong() {
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            b.append((char) (i % 3 == 0 ? 'A' + i % 26 : 0x80 + i * 7));
+            if (0 == i % 101) {
+                b.append("\ud83d\ude00");
+            }
+        }
+
+        final String text = b.toString();
+        for (final Charset charset : CHARSETS) {
+            this.encodeStringAndCheck(java.util.Base64.getEncoder(), Base64.getEncoder(), text, charset);
+            this.encodeStringAndCheck(java.util.Base64.getMimeEncoder(), Base64.getMimeEncoder(), text, charset);
+            this.encodeStringAndCheck(java.util.Base64.getMimeEncoder().withoutPadding(), Base64.getMimeEncoder().withoutPadding(), text, charset);
+        }
+    }
+
+    /**
+     * Lengths around the chunks of chars and bytes, so the last code point or group of a chunk is split in every way.
+     */
+    @Test
+    public void testEncodeStringChunkBoundaries() {
+        for (int length = 1900; length < 1940; length++) {
+            final StringBuilder b = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                b.append(0 == i % 5 ? "\ud83d\ude00" : String.valueOf((char) ('a' + i % 26)));
+            }
+
+            final String text = b.toString();
+            for (final Charset charset : CHARSETS) {
+                this.encodeStringAndCheck(java.util.Base64.getEncoder(), Base64.getEncoder(), text, charset);
+                this.encodeStringAndCheck(java.util.Base64.getMimeEncoder(), Base64.getMimeEncoder(), text, charset);
+            }
+        }
+    }
+
+    /**
+     * The conversion used by J2CL and GWT, which have no {@link java.nio.charset.CharsetEncoder}.
+     */
+    @Test
+    public void testEncodeCodePoints() {
+        for (final Charset charset : CHARSETS) {
+            for (final String text : TEXT) {
+                this.checkEquals(
+                    java.util.Base64.getMimeEncoder(4, CRLF).encodeToString(text.getBytes(charset)),
+                    Base64.getMimeEncoder(4, CRLF).encodeCodePoints(text, charset),
+                    () -> "encodeCodePoints " + CharSequences.quoteIfChars(text) + " " + charset
+                );
+            }
+        }
+    }
+
+    private final static Charset[] CHARSETS = {
+        StandardCharsets.UTF_8,
+        StandardCharsets.ISO_8859_1,
+        StandardCharsets.UTF_16,
+        Charset.forName("GB18030"),
+        Charset.forName("ISO-2022-JP"),
+    };
+
+    @Test
+    public void testEncodeStringNullFails() {
+        assertThrows(NullPointerException.class, () -> Base64.getEncoder().encodeString(null, StandardCharsets.UTF_8));
+        assertThrows(NullPointerException.class, () -> Base64.getEncoder().encodeString("", null));
+    }
+
+    private void encodeStringAndCheck(final Charset charset) {
+        for (final String text : TEXT) {
+            this.encodeStringAndCheck(java.util.Base64.getEncoder(), Base64.getEncoder(), text, charset);
+            this.encodeStringAndCheck(java.util.Base64.getEncoder().withoutPadding(), Base64.getEncoder().withoutPadding(), text, charset);
+            this.encodeStringAndCheck(java.util.Base64.getUrlEncoder(), Base64.getUrlEncoder(), text, charset);
+            this.encodeStringAndCheck(java.util.Base64.getMimeEncoder(4, CRLF), Base64.getMimeEncoder(4, CRLF), text, charset);
+        }
+    }
+
+    private final static byte[] CRLF = {'\r', '\n'};
+
+    private void encodeStringAndCheck(final java.util.Base64.Encoder jdk,
+                                      final Encoder encoder,
+                                      final String text,
+                                      final Charset charset) {
+        final String encoded = jdk.encodeToString(text.getBytes(charset));
+        this.checkEquals(
+            encoded,
+            encoder.encodeString(text, charset),
+            () -> encoder + " encodeString " + CharSequences.quoteIfChars(text) + " " + charset
+        );
+    }
+
+    @Test
+    public void testDecodeToStringUtf8() {
+        this.decodeToStringAndCheck(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testDecodeToStringIso88591() {
+        this.decodeToStringAndCheck(StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void testDecodeToStringUtf16() {
+        this.decodeToStringAndCheck(StandardCharsets.UTF_16);
+    }
+
+    @Test
+    public void testDecodeToStringUtf16Le() {
+        this.decodeToStringAndCheck(StandardCharsets.UTF_16LE);
+    }
+
+    @Test
+    public void testDecodeToStringShiftJis() {
+        this.decodeToStringAndCheck(Charset.forName("Shift_JIS"));
+    }
+
+    @Test
+    public void testDecodeToStringIso2022Jp() {
+        this.decodeToStringAndCheck(Charset.forName("ISO-2022-JP"));
+    }
+
+    @Test
+    public void testDecodeToStringMalformedUtf8() {
+        final byte[][] malformed = {
+            {(byte) 0x80},
+            {(byte) 0xc0, (byte) 0xaf},
+            {'A', (byte) 0xe0, (byte) 0x80, (byte) 0xaf},
+            {(byte) 0xed, (byte) 0xa0, (byte) 0x80},
+            {(byte) 0xf4, (byte) 0x90, (byte) 0x80, (byte) 0x80},
+            {(byte) 0xf0, (byte) 0x9f, (byte) 0x98},
+            {'A', 'B', (byte) 0xe2, (byte) 0x82},
+            {(byte) 0xff, 'A'},
+        };
+
+        for (final byte[] bytes : malformed) {
+            this.decodeToStringAndCheck(java.util.Base64.getEncoder(), Base64.getDecoder(), bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testDecodeToStringLong() {
+        final byte[] utf8 = new byte[4000];
+        for (int i = 0; i < utf8.length; ) {
+            // a 4 byte sequence that keeps straddling chunk boundaries
+            utf8[i++] = (byte) 0xf0;
+            utf8[i++] = (byte) 0x9f;
+            utf8[i++] = (byte) 0x98;
+            utf8[i++] = (byte) (0x80 + i % 64);
+            if (i < utf8.length) {
+                utf8[i++] = (byte) ('A' + i % 26);
+            }
+        }
+
+        for (final Charset charset : CHARSETS) {
+            this.decodeToStringAndCheck(java.util.Base64.getEncoder(), Base64.getDecoder(), Arrays.copyOf(utf8, 3997), charset);
+            this.decodeToStringAndCheck(java.util.Base64.getMimeEncoder(), Base64.getMimeDecoder(), Arrays.copyOf(utf8, 3997), charset);
+        }
+    }
+
+    /**
+     * The conversion used by J2CL and GWT, which have no {@link java.nio.charset.CharsetDecoder}.
+     */
+    @Test
+    public void testDecodeCodePoints() {
+        for (final Charset charset : CHARSETS) {
+            for (final String text : TEXT) {
+                final byte[] bytes = text.getBytes(charset);
+                final String encoded = java.util.Base64.getMimeEncoder(4, CRLF).encodeToString(bytes);
+
+                this.checkEquals(
+                    new String(bytes, charset),
+                    Base64.getMimeDecoder().decodeCodePoints(encoded, bytes.length, charset),
+                    () -> "decodeCodePoints " + CharSequences.quoteIfChars(encoded) + " " + charset
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testDecodeToStringInvalidFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getDecoder().decodeToString("QU!D", StandardCharsets.UTF_8)
+        );
+        this.checkEquals("Invalid encoding got 0x21 at 2", thrown.getMessage());
+    }
+
+    @Test
+    public void testDecodeToStringNonLatin1Fails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getDecoder().decodeToString("QU\u0141D", StandardCharsets.UTF_8)
+        );
+        this.checkEquals("Invalid encoding got 0x3f at 2", thrown.getMessage());
+    }
+
+    @Test
+    public void testDecodeToStringNullFails() {
+        assertThrows(NullPointerException.class, () -> Base64.getDecoder().decodeToString(null, StandardCharsets.UTF_8));
+        assertThrows(NullPointerException.class, () -> Base64.getDecoder().decodeToString("", null));
+    }
+
+    private void decodeToStringAndCheck(final Charset charset) {
+        for (final String text : TEXT) {
+            final byte[] bytes = text.getBytes(charset);
+            this.decodeToStringAndCheck(java.util.Base64.getEncoder(), Base64.getDecoder(), bytes, charset);
+            this.decodeToStringAndCheck(java.util.Base64.getEncoder().withoutPadding(), Base64.getDecoder(), bytes, charset);
+            this.decodeToStringAndCheck(java.util.Base64.getUrlEncoder(), Base64.getUrlDecoder(), bytes, charset);
+            this.decodeToStringAndCheck(java.util.Base64.getMimeEncoder(4, CRLF), Base64.getMimeDecoder(), bytes, charset);
+        }
+    }
+
+    private void decodeToStringAndCheck(final java.util.Base64.Encoder jdk,
+                                        final Decoder decoder,
+                                        final byte[] bytes,
+                                        final Charset charset) {
+        final String encoded = jdk.encodeToString(bytes);
+        this.checkEquals(
+            new String(bytes, charset),
+            decoder.decodeToString(encoded, charset),
+            () -> decoder + " decodeToString " + CharSequences.quoteIfChars(encoded) + " " + charset
+        );
+    }
+
+    @Test
+    public void testDecodeStringNonLatin1Fails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getDecoder().decode("QUJD\u0141")
+        );
+        this.checkEquals("Invalid encoding got 0x3f at 4", thrown.getMessage());
+    }
+
+    // encodeAndUpdate & decodeAndUpdate................................................................................
+
+    @Test
+    public void testEncodeAndUpdateCrc32() {
+        for (final int length : new int[]{0, 1, 2, 3, 383, 384, 385, 1000}) {
+            final byte[] values = values(length);
+
+            this.encodeAndUpdateAndCheck(java.util.Base64.getEncoder(), Base64.getEncoder(), values);
+            this.encodeAndUpdateAndCheck(java.util.Base64.getEncoder().withoutPadding(), Base64.getEncoder().withoutPadding(), values);
+            this.encodeAndUpdateAndCheck(java.util.Base64.getMimeEncoder(), Base64.getMimeEncoder(), values);
+            this.encodeAndUpdateAndCheck(java.util.Base64.getMimeEncoder(8, CRLF), Base64.getMimeEncoder(8, CRLF), values);
+        }
+    }
+
+    private void encodeAndUpdateAndCheck(final java.util.Base64.Encoder jdk,
+                                         final Encoder encoder,
+                                         final byte[] values) {
+        final CRC32 crc32 = new CRC32();
+
+        assertArrayEquals(
+            jdk.encode(values),
+            encoder.encodeAndUpdate(values, crc32::update),
+            () -> encoder + " encodeAndUpdate " + values.length
+        );
+        this.checkEquals(crc32(values), crc32.getValue(), () -> encoder + " crc32 " + values.length);
+    }
+
+    @Test
+    public void testEncodeAndUpdateMessageDigest() throws Exception {
+        final byte[] values = values(1000);
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        Base64.getEncoder().encodeAndUpdate(values, digest::update);
+
+        assertArrayEquals(
+            MessageDigest.getInstance("SHA-256").digest(values),
+            digest.digest()
+        );
+    }
+
+    @Test
+    public void testDecodeAndUpdateCrc32() {
+        for (final int length : new int[]{0, 1, 2, 3, 383, 384, 385, 1000}) {
+            final byte[] values = values(length);
+
+            this.decodeAndUpdateAndCheck(java.util.Base64.getEncoder(), Base64.getDecoder(), values);
+            this.decodeAndUpdateAndCheck(java.util.Base64.getEncoder().withoutPadding(), Base64.getDecoder(), values);
+            this.decodeAndUpdateAndCheck(java.util.Base64.getUrlEncoder(), Base64.getUrlDecoder(), values);
+            this.decodeAndUpdateAndCheck(java.util.Base64.getMimeEncoder(), Base64.getMimeDecoder(), values);
+            this.decodeAndUpdateAndCheck(java.util.Base64.getMimeEncoder(8, CRLF), Base64.getMimeDecoder(), values);
+        }
+    }
+
+    private void decodeAndUpdateAndCheck(final java.util.Base64.Encoder jdk,
+                                         final Decoder decoder,
+                                         final byte[] values) {
+        final byte[] encoded = jdk.encode(values);
+
+        final CRC32 crc32 = new CRC32();
+        assertArrayEquals(
+            values,
+            decoder.decodeAndUpdate(encoded, crc32::update),
+            () -> decoder + " decodeAndUpdate " + values.length
+        );
+        this.checkEquals(crc32(values), crc32.getValue(), () -> decoder + " crc32 " + values.length);
+
+        final CRC32 crc32String = new CRC32();
+        assertArrayEquals(
+            values,
+            decoder.decodeAndUpdate(new String(encoded, StandardCharsets.ISO_8859_1), crc32String::update),
+            () -> decoder + " decodeAndUpdate String " + values.length
+        );
+        this.checkEquals(crc32(values), crc32String.getValue(), () -> decoder + " crc32 String " + values.length);
+    }
+
+    @Test
+    public void testDecodeAndUpdatePadBeforeEndFails() {
+        final StringBuilder b = new StringBuilder("QQ==");
+        for (int i = 0; i < 200; i++) {
+            b.append("QUJD");
+        }
+        final String encoded = b.toString();
+
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getDecoder().decodeAndUpdate(encoded, (bytes, offset, length) -> {
+            })
+        );
+        this.checkEquals(
+            assertThrows(IllegalArgumentException.class, () -> Base64.getDecoder().decode(encoded)).getMessage(),
+            thrown.getMessage()
+        );
+    }
+
+    // encodeBatch.....................................................................................................
+
+    @Test
+    public void testEncodeBatchEmpty() {
+        final int[] offsets = new int[1];
+        assertArrayEquals(new byte[0], Base64.getEncoder().encodeBatch(Collections.emptyList(), offsets, false));
+        assertArrayEquals(new int[]{0}, offsets);
+    }
+
+    @Test
+    public void testEncodeBatch() {
+        this.encodeBatchAndCheck(false);
+    }
+
+    @Test
+    public void testEncodeBatchParallel() {
+        this.encodeBatchAndCheck(true);
+    }
+
+    private void encodeBatchAndCheck(final boolean parallel) {
+        final List<byte[]> arrays = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            arrays.add(values(i % 100));
+        }
+
+        this.encodeBatchAndCheck(java.util.Base64.getEncoder(), Base64.getEncoder(), arrays, parallel);
+        this.encodeBatchAndCheck(java.util.Base64.getUrlEncoder().withoutPadding(), Base64.getUrlEncoder().withoutPadding(), arrays, parallel);
+        this.encodeBatchAndCheck(java.util.Base64.getMimeEncoder(8, CRLF), Base64.getMimeEncoder(8, CRLF), arrays, parallel);
+    }
+
+    private void encodeBatchAndCheck(final java.util.Base64.Encoder jdk,
+                                     final Encoder encoder,
+                                     final List<byte[]> arrays,
+                                     final boolean parallel) {
+        final int[] offsets = new int[arrays.size() + 1];
+        final byte[] encoded = encoder.encodeBatch(arrays, offsets, parallel);
+
+        for (int i = 0; i < arrays.size(); i++) {
+            assertArrayEquals(
+                jdk.encode(arrays.get(i)),
+                Arrays.copyOfRange(encoded, offsets[i], offsets[i + 1]),
+                encoder + " encodeBatch " + i
+            );
+        }
+        this.checkEquals(encoded.length, offsets[arrays.size()], "total");
+    }
+
+    @Test
+    public void testEncodeBatchOffsetsTooSmallFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getEncoder().encodeBatch(Arrays.asList(new byte[1], new byte[2]), new int[2], false)
+        );
+        this.checkEquals("Offsets 2 < required 3", thrown.getMessage());
+    }
+
+    @Test
+    public void testEncodeBatchNullArrayFails() {
+        final NullPointerException thrown = assertThrows(
+            NullPointerException.class,
+            () -> Base64.getEncoder().encodeBatch(Arrays.asList(new byte[1], null), new int[3], false)
+        );
+        this.checkEquals("from[1]", thrown.getMessage());
+    }
+
+    // decodeRecords...................................................................................................
+
+    @Test
+    public void testRecordCount() {
+        this.recordCountAndCheck("", 0);
+        this.recordCountAndCheck("\n", 1);
+        this.recordCountAndCheck("QUJD", 1);
+        this.recordCountAndCheck("QUJD\n", 1);
+        this.recordCountAndCheck("QUJD\nQQ==", 2);
+        this.recordCountAndCheck("QUJD\n\nQQ==\n", 3);
+        this.recordCountAndCheck("QUJDQUJD\nQUJDQUJD\nQQ==\r\n", 3);
+    }
+
+    private void recordCountAndCheck(final String encoded,
+                                     final int count) {
+        final byte[] bytes = ("!!" + encoded + "!!").getBytes(StandardCharsets.US_ASCII);
+        this.checkEquals(
+            count,
+            Base64.getDecoder().recordCount(bytes, 2, encoded.length()),
+            () -> "recordCount " + CharSequences.quoteIfChars(encoded)
+        );
+    }
+
+    @Test
+    public void testDecodeRecords() {
+        this.decodeRecordsAndCheck(false);
+    }
+
+    @Test
+    public void testDecodeRecordsParallel() {
+        this.decodeRecordsAndCheck(true);
+    }
+
+    private void decodeRecordsAndCheck(final boolean parallel) {
+        final java.util.Base64.Encoder jdk = java.util.Base64.getEncoder();
+        final List<byte[]> records = new ArrayList<>();
+        final StringBuilder encoded = new StringBuilder();
+
+        for (int i = 0; i < 2000; i++) {
+            final byte[] record = values(i % 50);
+            records.add(record);
+            encoded.append(jdk.encodeToString(record))
+                .append(0 == i % 3 ? "\r\n" : "\n");
+        }
+
+        final byte[] bytes = encoded.toString().getBytes(StandardCharsets.US_ASCII);
+        final Decoder decoder = Base64.getDecoder();
+        final int count = decoder.recordCount(bytes, 0, bytes.length);
+        this.checkEquals(records.size(), count, "recordCount");
+
+        final int[] offsets = new int[count + 1];
+        final byte[] decoded = decoder.decodeRecords(bytes, 0, bytes.length, offsets, parallel);
+
+        for (int i = 0; i < count; i++) {
+            assertArrayEquals(
+                records.get(i),
+                Arrays.copyOfRange(decoded, offsets[i], offsets[i + 1]),
+                "record " + i
+            );
+        }
+        this.checkEquals(decoded.length, offsets[count], "total");
+    }
+
+    @Test
+    public void testDecodeRecordsSlice() {
+        final byte[] bytes = "!!QUJD\nQQ==\n\nQUI!!".getBytes(StandardCharsets.US_ASCII);
+        final int[] offsets = new int[5];
+
+        assertArrayEquals(
+            "ABCAAB".getBytes(StandardCharsets.US_ASCII),
+            Base64.getDecoder().decodeRecords(bytes, 2, bytes.length - 4, offsets, false)
+        );
+        assertArrayEquals(new int[]{0, 3, 4, 4, 6}, offsets);
+    }
+
+    @Test
+    public void testDecodeRecordsInvalidFails() {
+        this.decodeRecordsInvalidAndCheck(false);
+    }
+
+    @Test
+    public void testDecodeRecordsInvalidParallelFails() {
+        this.decodeRecordsInvalidAndCheck(true);
+    }
+
+    private void decodeRecordsInvalidAndCheck(final boolean parallel) {
+        final StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            encoded.append(500 == i || 900 == i ? "QU!D" : "QUJD")
+                .append('\n');
+        }
+        final byte[] bytes = encoded.toString().getBytes(StandardCharsets.US_ASCII);
+
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getDecoder().decodeRecords(bytes, 0, bytes.length, new int[1001], parallel)
+        );
+        this.checkEquals("Invalid record 501 Invalid encoding got 0x21 at 2502", thrown.getMessage());
+    }
+
+    @Test
+    public void testDecodeRecordsOffsetsTooSmallFails() {
+        final byte[] bytes = "QUJD\nQUJD".getBytes(StandardCharsets.US_ASCII);
+
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> Base64.getDecoder().decodeRecords(bytes, 0, bytes.length, new int[2], false)
+        );
+        this.checkEquals("Offsets 2 < required 3", thrown.getMessage());
+    }
+
+    private static long crc32(final byte[] values) {
+        final CRC32 crc32 = new CRC32();
+        crc32.update(values, 0, values.length);
+        return crc32.getValue();
+    }
+
+    @Test
+    public void testRfc2045_EncodeAndDecodeRoundtrip() {
+        this.encodeAndDecodeRoundtrip(
+            Encoder.RFC2045,
+            Decoder.RFC2045
+        );
+    }
+
+    @Test
+    public void testRfc4648_EncodeAndDecodeRoundtrip() {
+        this.encodeAndDecodeRoundtrip(
+            Encoder.RFC4648,
+            Decoder.RFC4648
+        );
+    }
+
+    @Test
+    public void testRfc4648UrlSafe_EncodeAndDecodeRoundtrip() {
+        this.encodeAndDecodeRoundtrip(
+            Encoder.RFC4648_URLSAFE,
+            Base64.getUrlDecoder()
+        );
+    }
+
+    private void encodeAndDecodeRoundtrip(final Encoder encoder,
+                                          final Decoder decoder) {
+        final Charset charset = Charset.defaultCharset();
+
+        for (int i = 0; i < 100; i++) {
+            final StringBuilder b = new StringBuilder();
+            for (int j = 0; j < i; j++) {
+                final int c = 'A' + j;
+                b.append((char) c);
+            }
+            final String string = b.toString();
+            final String encoded = encoder.encodeToString(string.getBytes(charset));
+            this.checkEquals(
+                string,
+                new String(decoder.decode(encoded), charset),
+                () -> "encode and decode roundtrip " + CharSequences.quoteIfChars(string)
+            );
+        }
+    }
+
+    // cache............................................................................................................
+
+    @Test
+    public void testCacheInvalidMaxSizeFails() {
+        assertThrows(IllegalArgumentException.class, () -> Base64.getEncoder().cache(-1));
+    }
+
+    @Test
+    public void testCacheHit() {
+        final Base64.EncoderCache cache = Base64.getEncoder().cache(1000);
+        final byte[] bytes = values(10);
+
+        final String encoded = cache.encodeToString(bytes);
+        this.checkEquals(java.util.Base64.getEncoder().encodeToString(bytes), encoded);
+        assertSame(encoded, cache.encodeToString(bytes.clone()));
+
+        this.checkCache(cache, 1, 1, 0, 1, 10 + 16);
+    }
+
+    @Test
+    public void testCacheCopiesBytes() {
+        final Base64.EncoderCache cache = Base64.getEncoder().cache(1000);
+        final byte[] bytes = values(10);
+        final String encoded = cache.encodeToString(bytes);
+
+        bytes[0]++;
+        this.checkEquals(java.util.Base64.getEncoder().encodeToString(bytes), cache.encodeToString(bytes));
+        this.checkEquals(encoded, cache.encodeToString(values(10)));
+
+        this.checkCache(cache, 1, 2, 0, 2, 2 * (10 + 16));
+    }
+
+    @Test
+    public void testCacheHashCollision() {
+        final byte[] bytes = new byte[]{0, 31};
+        final byte[] bytes2 = new byte[]{1, 0};
+        this.checkEquals(Arrays.hashCode(bytes), Arrays.hashCode(bytes2), "hash");
+
+        final Base64.EncoderCache cache = Base64.getEncoder().cache(1000);
+        this.checkEquals("AB8=", cache.encodeToString(bytes));
+        this.checkEquals("AQA=", cache.encodeToString(bytes2));
+        this.checkEquals("AB8=", cache.encodeToString(bytes));
+
+        this.checkCache(cache, 1, 2, 0, 2, 2 * (2 + 4));
+    }
+
+    @Test
+    public void testCacheKey() {
+        final Base64.EncoderCache cache = Base64.getUrlEncoder().cache(1000);
+
+        this.checkEquals("AwoR", cache.encodeToString("icon", values(3)));
+        this.checkEquals("AwoR", cache.encodeToString("icon", new byte[0]));
+
+        this.checkCache(cache, 1, 1, 0, 1, 4);
+    }
+
+    @Test
+    public void testCacheTooLarge() {
+        final Base64.EncoderCache cache = Base64.getEncoder().cache(10);
+        final byte[] bytes = values(10);
+
+        cache.encodeToString(bytes);
+        cache.encodeToString(bytes);
+
+        this.checkCache(cache, 0, 2, 0, 0, 0);
+    }
+
+    @Test
+    public void testCacheEvictsUnused() {
+        // room for 2 entries of 3 bytes and 4 characters
+        final Base64.EncoderCache cache = Base64.getEncoder().cache(14);
+        final byte[] a = new byte[]{'a', 'a', 'a'};
+        final byte[] b = new byte[]{'b', 'b', 'b'};
+        final byte[] c = new byte[]{'c', 'c', 'c'};
+
+        cache.encodeToString(a);
+        cache.encodeToString(b);
+
+        // all entries start used, so the clock clears both then evicts a
+        cache.encodeToString(c);
+        this.checkCache(cache, 0, 3, 1, 2, 14);
+
+        // b is used again, so d evicts c instead of b
+        cache.encodeToString(b);
+        cache.encodeToString(new byte[]{'d', 'd', 'd'});
+        this.checkCache(cache, 1, 4, 2, 2, 14);
+
+        cache.encodeToString(b);
+        this.checkCache(cache, 2, 4, 2, 2, 14);
+    }
+
+    @Test
+    public void testCacheToString() {
+        final Base64.EncoderCache cache = Base64.getEncoder().cache(100);
+        cache.encodeToString(values(3));
+        cache.encodeToString(values(3));
+
+        this.toStringAndCheck(
+            cache,
+            "RFC4648 WITH PADDING hits 1 misses 1 evictions 0 entries 1 size 7/100"
+        );
+    }
+
+    private void checkCache(final Base64.EncoderCache cache,
+                            final long hits,
+                            final long misses,
+                            final long evictions,
+                            final int entries,
+                            final long size) {
+        this.checkEquals(hits, cache.hits(), "hits");
+        this.checkEquals(misses, cache.misses(), "misses");
+        this.checkEquals(evictions, cache.evictions(), "evictions");
+        this.checkEquals(entries, cache.entries(), "entries");
+        this.checkEquals(size, cache.size(), "size");
+    }
+
+    // constantTime.....................................................................................................
+
+    @Test
+    public void testConstantTimeCharRfc4648() {
+        this.constantTimeCharAndCheck(Base64.RFC4648_ALPHABET);
+    }
+
+    @Test
+    public void testConstantTimeCharUrlSafe() {
+        this.constantTimeCharAndCheck(URLSAFE_ALPHABET);
+    }
+
+    private void constantTimeCharAndCheck(final String alphabet) {
+        for (int value = 0; value < 64; value++) {
+            this.checkEquals(
+                (int) alphabet.charAt(value),
+                Encoder.constantTimeChar(value, alphabet.charAt(62), alphabet.charAt(63)),
+                "value " + value
+            );
+        }
+    }
+
+    @Test
+    public void testConstantTimeValueRfc4648() {
+        this.constantTimeValueAndCheck(Base64.RFC4648_ALPHABET);
+    }
+
+    @Test
+    public void testConstantTimeValueUrlSafe() {
+        this.constantTimeValueAndCheck(URLSAFE_ALPHABET);
+    }
+
+    private void constantTimeValueAndCheck(final String alphabet) {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            this.checkEquals(
+                alphabet.indexOf(c),
+                Decoder.constantTimeValue(c, alphabet.charAt(62), alphabet.charAt(63)),
+                "0x" + Integer.toHexString(c)
+            );
+        }
+    }
+
+    @Test
+    public void testConstantTimeCustomAlphabetFails() {
+        assertThrows(UnsupportedOperationException.class, () -> Base64.getEncoder(BCRYPT, '$').constantTime());
+        assertThrows(UnsupportedOperationException.class, () -> Base64.getDecoder(BCRYPT, '$').constantTime());
+        assertThrows(UnsupportedOperationException.class, () -> Base64.getStandardOrUrlDecoder().constantTime());
+    }
+
+    @Test
+    public void testConstantTimeTwice() {
+        final Encoder encoder = Base64.getEncoder().constantTime();
+        assertSame(encoder, encoder.constantTime());
+
+        final Decoder decoder = Base64.getDecoder().constantTime();
+        assertSame(decoder, decoder.constantTime());
+    }
+
+    @Test
+    public void testConstantTimeEngine() {
+        this.checkEquals(Base64.Engine.CONSTANT_TIME, Base64.getEncoder().constantTime().engine(Integer.MAX_VALUE));
+        this.checkEquals(Base64.Engine.CONSTANT_TIME, Base64.getMimeDecoder().constantTime().engine(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testConstantTimeToString() {
+        this.toStringAndCheck(Base64.getUrlEncoder().withoutPadding().constantTime(), "RFC4648 URLSAFE CONSTANT TIME");
+        this.toStringAndCheck(Base64.getMimeDecoder().constantTime(), "RFC2045 CONSTANT TIME");
+    }
+
+    @Test
+    public void testConstantTimeRfc4648() {
+        this.constantTimeAndCheck(Base64.getEncoder(), Base64.getDecoder());
+    }
+
+    @Test
+    public void testConstantTimeRfc4648WithoutPadding() {
+        this.constantTimeAndCheck(Base64.getEncoder().withoutPadding(), Base64.getDecoder());
+    }
+
+    @Test
+    public void testConstantTimeUrlSafe() {
+        this.constantTimeAndCheck(Base64.getUrlEncoder(), Base64.getUrlDecoder());
+    }
+
+    @Test
+    public void testConstantTimeMime() {
+        this.constantTimeAndCheck(Base64.getMimeEncoder(), Base64.getMimeDecoder());
+    }
+
+    @Test
+    public void testConstantTimeMimeCustomSeparator() {
+        this.constantTimeAndCheck(Base64.getMimeEncoder(8, new byte[]{'-'}), Base64.getMimeDecoder());
+    }
+
+    private void constantTimeAndCheck(final Encoder encoder,
+                                      final Decoder decoder) {
+        final Encoder constantTimeEncoder = encoder.constantTime();
+        final Decoder constantTimeDecoder = decoder.constantTime();
+
+        for (int length = 0; length < 300; length++) {
+            final byte[] values = values(length);
+            final byte[] encoded = encoder.encode(values);
+            final String encodedString = encoder.encodeToString(values);
+
+            assertArrayEquals(encoded, constantTimeEncoder.encode(values), "encode " + length);
+
+            final char[] chars = new char[encoded.length];
+            constantTimeEncoder.encode(values, 0, length, chars, 0);
+            this.checkEquals(encodedString, new String(chars), "encode chars " + length);
+
+            final byte[] buffer = Arrays.copyOf(values, encoded.length);
+            constantTimeEncoder.encodeInPlace(buffer, 0, length);
+            assertArrayEquals(encoded, buffer, "encodeInPlace " + length);
+
+            final byte[] offsetBuffer = new byte[2 + encoded.length];
+            System.arraycopy(values, 0, offsetBuffer, 2, length);
+            constantTimeEncoder.encodeInPlace(offsetBuffer, 2, length);
+            assertArrayEquals(encoded, Arrays.copyOfRange(offsetBuffer, 2, offsetBuffer.length), "encodeInPlace offset " + length);
+
+            assertArrayEquals(values, constantTimeDecoder.decode(encoded), "decode " + length);
+            assertArrayEquals(values, constantTimeDecoder.decode(encodedString), "decode String " + length);
+        }
+    }
+
+    @Test
+    public void testConstantTimeEncoderNeverReadsAlphabetRfc4648() throws Exception {
+        this.constantTimeEncoderNeverReadsAlphabetAndCheck(Base64.getEncoder());
+    }
+
+    @Test
+    public void testConstantTimeEncoderNeverReadsAlphabetWithoutPadding() throws Exception {
+        this.constantTimeEncoderNeverReadsAlphabetAndCheck(Base64.getEncoder().withoutPadding());
+    }
+
+    @Test
+    public void testConstantTimeEncoderNeverReadsAlphabetUrlSafe() throws Exception {
+        this.constantTimeEncoderNeverReadsAlphabetAndCheck(Base64.getUrlEncoder());
+    }
+
+    @Test
+    public void testConstantTimeEncoderNeverReadsAlphabetMime() throws Exception {
+        this.constantTimeEncoderNeverReadsAlphabetAndCheck(Base64.getMimeEncoder(8, new byte[]{'\n'}));
+    }
+
+    /**
+     * Copies the encoder making it constant time with every character but those for 62 and 63 replaced by '!', so
+     * any method that reads the alphabet returns a different encoding.
+     */
+    private void constantTimeEncoderNeverReadsAlphabetAndCheck(final Encoder encoder) throws Exception {
+        final char[] alphabet = field(encoder, "alphabet");
+        final char[] poisoned = alphabet.clone();
+        Arrays.fill(poisoned, 0, 62, '!');
+
+        final Constructor<Encoder> constructor = Encoder.class.getDeclaredConstructor(
+            char[].class,
+            byte.class,
+            int.class,
+            byte[].class,
+            Base64EncoderPadding.class,
+            boolean.class,
+            Base64.Metrics.class
+        );
+        constructor.setAccessible(true);
+        final Encoder constantTime = constructor.newInstance(
+            poisoned,
+            field(encoder, "pad"),
+            field(encoder, "maxLineLength"),
+            field(encoder, "separator"),
+            field(encoder, "padding"),
+            true,
+            null
+        );
+
+        for (int length = 0; length < 40; length++) {
+            final byte[] values = values(length);
+            final int finalLength = length;
+
+            this.constantTimeEncodeAndCheck(encoder, constantTime, length, e -> e.encode(values));
+            this.constantTimeEncodeAndCheck(encoder, constantTime, length, e -> {
+                final byte[] to = new byte[(int) e.encodedLength(finalLength)];
+                e.encode(values, to);
+                return to;
+            });
+            this.constantTimeEncodeAndCheck(encoder, constantTime, length, e -> e.encodeToString(values));
+            this.constantTimeEncodeAndCheck(encoder, constantTime, length, e -> {
+                final char[] to = new char[(int) e.encodedLength(finalLength)];
+                e.encode(values, 0, finalLength, to, 0);
+                return to;
+            });
+            this.constantTimeEncodeAndCheck(encoder, constantTime, length, e -> {
+                final byte[] buffer = Arrays.copyOf(values, (int) e.encodedLength(finalLength));
+                e.encodeInPlace(buffer, 0, finalLength);
+                return buffer;
+            });
+            this.constantTimeEncodeAndCheck(encoder, constantTime, length, e -> e.encodeAndUpdate(values, (b, o, l) -> {}));
+            this.constantTimeEncodeAndCheck(encoder, constantTime, length, e -> e.encodeToCharSequence(values).toString());
+            this.constantTimeEncodeAndCheck(encoder, constantTime, length, e -> {
+                final StringWriter writer = new StringWriter();
+                try (final OutputStream output = e.wrap(writer)) {
+                    output.write(values);
+                } catch (final IOException cause) {
+                    throw new AssertionError(cause);
+                }
+                return writer.toString();
+            });
+            this.constantTimeEncodeAndCheck(encoder, constantTime, length, e -> e.encodeBatch(Arrays.asList(values, values), new int[3], false));
+            this.constantTimeEncodeAndCheck(encoder, constantTime, length, e -> e.encodeString(new String(values, StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8));
+        }
+
+        this.constantTimeEncodeAndCheck(encoder, constantTime, 8, e -> e.encodeLong(0x123456789abcdefL));
+        this.constantTimeEncodeAndCheck(encoder, constantTime, 16, e -> e.encodeLongs(-1L, 0xfedcba987654321L));
+        this.constantTimeEncodeAndCheck(encoder, constantTime, 12, e -> e.encode(new int[]{1, -2, 3}, true));
+        this.constantTimeEncodeAndCheck(encoder, constantTime, 16, e -> e.encodeToString(new long[]{-1L, 2L}, false));
+    }
+
+    private void constantTimeEncodeAndCheck(final Encoder encoder,
+                                            final Encoder constantTime,
+                                            final int length,
+                                            final Function<Encoder, Object> encode) {
+        this.checkEquals(
+            outcome(() -> encode.apply(encoder)),
+            outcome(() -> encode.apply(constantTime)),
+            () -> encoder + " length " + length
+        );
+    }
+
+    @Test
+    public void testConstantTimeDecoderNeverReadsLookupRfc4648() {
+        this.constantTimeDecoderNeverReadsLookupAndCheck(Base64.getDecoder(), java.util.Base64.getEncoder());
+    }
+
+    @Test
+    public void testConstantTimeDecoderNeverReadsLookupUrlSafe() {
+        this.constantTimeDecoderNeverReadsLookupAndCheck(Base64.getUrlDecoder(), java.util.Base64.getUrlEncoder());
+    }
+
+    @Test
+    public void testConstantTimeDecoderNeverReadsLookupMime() {
+        this.constantTimeDecoderNeverReadsLookupAndCheck(Base64.getMimeDecoder(), java.util.Base64.getMimeEncoder(8, new byte[]{'\r', '\n'}));
+    }
+
+    /**
+     * The constant time decoders have no lookup table, so reading it throws {@link NullPointerException}. Every
+     * method is called with valid and invalid encodings, and must give the same result or failure as the table
+     * decoder.
+     */
+    private void constantTimeDecoderNeverReadsLookupAndCheck(final Decoder decoder,
+                                                             final java.util.Base64.Encoder jdk) {
+        final Decoder constantTime = decoder.constantTime();
+        assertSame(null, field(constantTime, "lookup"), "lookup");
+
+        final List<String> encodings = new ArrayList<>();
+        for (int length = 0; length < 40; length++) {
+            final String encoded = jdk.encodeToString(values(length));
+            encodings.add(encoded);
+            encodings.add(encoded + "*");
+            encodings.add("*" + encoded);
+            encodings.add(encoded + "==");
+            encodings.add(encoded + "Q");
+        }
+
+        for (final String encoded : encodings) {
+            final byte[] bytes = encoded.getBytes(StandardCharsets.ISO_8859_1);
+
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.decode(bytes));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.decode(encoded));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> {
+                final byte[] to = new byte[bytes.length];
+                return Arrays.copyOf(to, d.decode(bytes, to));
+            });
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> {
+                final byte[] buffer = bytes.clone();
+                return Arrays.copyOf(buffer, d.decodeInPlace(buffer, 0, buffer.length));
+            });
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.decodeRange(bytes, 1, 5));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.decodeRange(encoded, 2, 7));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.isValid(bytes));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.validate(bytes));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.decodedLength(bytes));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.decodedLength(encoded));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.decodeToString(encoded, StandardCharsets.UTF_8));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.decodeToString(encoded, StandardCharsets.ISO_8859_1));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.decodeToString(encoded, StandardCharsets.UTF_16BE));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.decodeAndUpdate(bytes, (b, o, l) -> {}));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.decodeAndUpdate(encoded, (b, o, l) -> {}));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.decodeIntArray(encoded, true));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> {
+                try (final InputStream input = d.wrap(new StringReader(encoded))) {
+                    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    for (int b = input.read(); -1 != b; b = input.read()) {
+                        output.write(b);
+                    }
+                    return output.toByteArray();
+                } catch (final IOException cause) {
+                    throw new IllegalArgumentException(cause.getMessage());
+                }
+            });
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> {
+                final byte[] records = (encoded + "\n" + encoded).getBytes(StandardCharsets.ISO_8859_1);
+                final int[] offsets = new int[d.recordCount(records, 0, records.length) + 1];
+                return d.decodeRecords(records, 0, records.length, offsets, false);
+            });
+        }
+
+        final Encoder encoder = Base64.getEncoder();
+        for (final String encoded : new String[]{
+            encoder.encodeLong(0x123456789abcdefL),
+            encoder.encodeLongs(-1L, 0xfedcba987654321L),
+            "AAAAAAAAAA*",
+            "AAAAAAAAAAAAAAAAAAAA*A"
+        }) {
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.decodeLong(encoded));
+            this.constantTimeDecodeAndCheck(decoder, constantTime, encoded, d -> d.decodeLongs(encoded));
+        }
+    }
+
+    private void constantTimeDecodeAndCheck(final Decoder decoder,
+                                            final Decoder constantTime,
+                                            final String encoded,
+                                            final Function<Decoder, Object> decode) {
+        this.checkEquals(
+            outcome(() -> decode.apply(decoder)),
+            outcome(() -> decode.apply(constantTime)),
+            () -> decoder + " " + CharSequences.quoteAndEscape(encoded)
+        );
+    }
+
+    /**
+     * Returns the result of the call as a String or the class and message of any {@link RuntimeException}.
+     */
+    private static String outcome(final Supplier<Object> call) {
+        try {
+            return Arrays.deepToString(new Object[]{call.get()});
+        } catch (final RuntimeException cause) {
+            return cause.getClass().getSimpleName() + " " + cause.getMessage();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T field(final Object instance,
+                               final String name) {
+        try {
+            final Field field = instance.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            return (T) field.get(instance);
+        } catch (final ReflectiveOperationException cause) {
+            throw new AssertionError(cause);
+        }
+    }
+
+    @Test
+    public void testConstantTimeDecodeSameAsTableRfc4648() {
+        this.constantTimeDecodeSameAsTableAndCheck(Base64.getDecoder(), "\r\n*-_");
+    }
+
+    @Test
+    public void testConstantTimeDecodeSameAsTableUrlSafe() {
+        this.constantTimeDecodeSameAsTableAndCheck(Base64.getUrlDecoder(), "\r\n*+/");
+    }
+
+    @Test
+    public void testConstantTimeDecodeSameAsTableMime() {
+        this.constantTimeDecodeSameAsTableAndCheck(Base64.getMimeDecoder(), "\r\n*-_");
+    }
+
+    /**
+     * Decodes random strings mostly of valid characters, with some padding and invalid characters, checking the
+     * constant time decoder returns the same bytes or fails with the same message as the table decoder.
+     */
+    private void constantTimeDecodeSameAsTableAndCheck(final Decoder decoder,
+                                                       final String invalid) {
+        final Decoder constantTime = decoder.constantTime();
+        final Random random = new Random(1);
+        final String alphabet = decoder.toString().contains("URLSAFE") ?
+            URLSAFE_ALPHABET :
+            Base64.RFC4648_ALPHABET;
+
+        for (int i = 0; i < 20000; i++) {
+            final StringBuilder b = new StringBuilder();
+            final int length = random.nextInt(13);
+            for (int j = 0; j < length; j++) {
+                final int kind = random.nextInt(10);
+                b.append(
+                    kind < 7 ?
+                        alphabet.charAt(random.nextInt(64)) :
+                        kind < 9 ?
+                            '=' :
+                            invalid.charAt(random.nextInt(invalid.length()))
+                );
+            }
+            final String encoded = b.toString();
+
+            this.checkEquals(
+                decodeOrMessage(decoder, encoded),
+                decodeOrMessage(constantTime, encoded),
+                () -> CharSequences.quoteAndEscape(encoded).toString()
+            );
+        }
+    }
+
+    private static String decodeOrMessage(final Decoder decoder,
+                                          final String encoded) {
+        try {
+            return Arrays.toString(decoder.decode(encoded));
+        } catch (final IllegalArgumentException cause) {
+            return cause.getMessage();
+        }
+    }
+
+    private final static String URLSAFE_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+    // engine...........................................................................................................
+
+    @Test
+    public void testEncoderEngineShort() {
+        this.checkEquals(Base64.Engine.TABLE, Base64.getEncoder().engine(0));
+    }
+
+    @Test
+    public void testDecoderEngineShort() {
+        this.checkEquals(Base64.Engine.TABLE, Base64.getDecoder().engine(0));
+    }
+
+    @Test
+    public void testDecoderEngineMimeNeverParallel() {
+        assertNotEquals(Base64.Engine.PARALLEL, Base64.getMimeDecoder().engine(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testDecoderEngineWithoutSwar() {
+        final String reversed = new StringBuilder(Base64.RFC4648_ALPHABET).reverse().toString();
+
+        this.checkEquals(Base64.Engine.TABLE, Base64.getDecoder(reversed, '=').engine(1024));
+    }
+
+    @Test
+    public void testEncodeParallelRfc4648() {
+        this.encodeParallelAndCheck(Base64.getEncoder());
+    }
+
+    @Test
+    public void testEncodeParallelUrlSafe() {
+        this.encodeParallelAndCheck(Base64.getUrlEncoder());
+    }
+
+    @Test
+    public void testEncodeParallelMime() {
+        this.encodeParallelAndCheck(Base64.getMimeEncoder());
+    }
+
+    @Test
+    public void testEncodeParallelMimeCustomSeparator() {
+        this.encodeParallelAndCheck(Base64.getMimeEncoder(64, new byte[]{'\n'}));
+    }
+
+    @Test
+    public void testEncodeParallelWithoutPadding() {
+        this.encodeParallelAndCheck(Base64.getEncoder().withoutPadding());
+    }
+
+    private void encodeParallelAndCheck(final Encoder encoder) {
+        for (final int length : PARALLEL_LENGTHS) {
+            final byte[] values = values(length);
+            final byte[] expected = encoder.encode(values);
+
+            final byte[] parallel = new byte[expected.length];
+            this.checkEquals(
+                expected.length,
+                encoder.encodeAll(values, parallel, Base64.Engine.PARALLEL),
+                () -> "encode length " + length
+            );
+            assertArrayEquals(expected, parallel, () -> "encode " + length);
+        }
+    }
+
+    @Test
+    public void testDecodeParallelRfc4648() {
+        this.decodeParallelAndCheck(Base64.getEncoder(), Base64.getDecoder());
+    }
+
+    @Test
+    public void testDecodeParallelUrlSafe() {
+        this.decodeParallelAndCheck(Base64.getUrlEncoder(), Base64.getUrlDecoder());
+    }
+
+    @Test
+    public void testDecodeParallelWithoutPadding() {
+        this.decodeParallelAndCheck(Base64.getEncoder().withoutPadding(), Base64.getDecoder());
+    }
+
+    private void decodeParallelAndCheck(final Encoder encoder,
+                                        final Decoder decoder) {
+        for (final int length : PARALLEL_LENGTHS) {
+            final byte[] values = values(length);
+            final byte[] encoded = encoder.encode(values);
+            final String encodedString = new String(encoded, StandardCharsets.US_ASCII);
+
+            for (final Base64.Engine engine : Base64.Engine.values()) {
+                final byte[] decoded = new byte[length];
+                this.checkEquals(
+                    length,
+                    decoder.decodeAll(encoded, null, encoded.length, decoded, engine),
+                    () -> engine + " decode length " + length
+                );
+                assertArrayEquals(values, decoded, () -> engine + " decode " + length);
+
+                final byte[] decodedChars = new byte[length];
+                decoder.decodeAll(null, encodedString, encoded.length, decodedChars, engine);
+                assertArrayEquals(values, decodedChars, () -> engine + " decode chars " + length);
+            }
+        }
+    }
+
+    @Test
+    public void testDecodeParallelInvalidCharacter() {
+        final byte[] encoded = Base64.getEncoder().encode(values(PARALLEL_LENGTH));
+        encoded[encoded.length / 2] = '*';
+
+        this.decodeParallelFailsAndCheck(encoded);
+    }
+
+    @Test
+    public void testDecodeParallelPaddingWithinChunk() {
+        final byte[] encoded = Base64.getEncoder().encode(values(PARALLEL_LENGTH));
+        final int middle = encoded.length / 2 / 4 * 4;
+        encoded[middle + 2] = '=';
+        encoded[middle + 3] = '=';
+
+        this.decodeParallelFailsAndCheck(encoded);
+    }
+
+    @Test
+    public void testDecodeParallelPaddingAtChunkEnd() {
+        final byte[] encoded = Base64.getEncoder().encode(values(PARALLEL_LENGTH));
+        final int chunkEnd = 64 * 1024 / 3 * 4;
+        encoded[chunkEnd - 1] = '=';
+
+        this.decodeParallelFailsAndCheck(encoded);
+    }
+
+    private void decodeParallelFailsAndCheck(final byte[] encoded) {
+        final Decoder decoder = Base64.getDecoder();
+        final int length = encoded.length;
+
+        final IllegalArgumentException sequential = assertThrows(
+            IllegalArgumentException.class,
+            () -> decoder.decodeAll(encoded, null, length, new byte[length], Base64.Engine.SWAR)
+        );
+        final IllegalArgumentException parallel = assertThrows(
+            IllegalArgumentException.class,
+            () -> decoder.decodeAll(encoded, null, length, new byte[length], Base64.Engine.PARALLEL)
+        );
+        this.checkEquals(sequential.getMessage(), parallel.getMessage());
+    }
+
+    /**
+     * Spans several parallel chunks, ending part way through a MIME line and a group.
+     */
+    private final static int PARALLEL_LENGTH = 5 * 64 * 1024 + 100;
+
+    private final static int[] PARALLEL_LENGTHS = {
+        0,
+        1,
+        64 * 1024 - 1,
+        64 * 1024,
+        64 * 1024 + 1,
+        PARALLEL_LENGTH
+    };
+
+    // toString.........................................................................................................
+
+    @Override
+    public void testCheckToStringOverridden() {
+    }
+
+    @Test
+    public void testEncoderBasicToString() {
+        this.toStringAndCheck(Base64.getEncoder(), "RFC4648 WITH PADDING");
+    }
+
+    @Test
+    public void testEncoderBasicWithoutPaddingToString() {
+        this.toStringAndCheck(Base64.getEncoder().withoutPadding(), "RFC4648");
+    }
+
+    @Test
+    public void testEncoderUrlSafeToString() {
+        this.toStringAndCheck(Base64.getUrlEncoder(), "RFC4648 URLSAFE WITH PADDING");
+    }
+
+    @Test
+    public void testEncoderUrlSafeWithoutPaddingToString() {
+        this.toStringAndCheck(Base64.getUrlEncoder().withoutPadding(), "RFC4648 URLSAFE");
+    }
+
+    @Test
+    public void testEncoderMimeToString() {
+        this.toStringAndCheck(Base64.getMimeEncoder(), "RFC2045 WITH PADDING lineWidth=76");
+    }
+
+    @Test
+    public void testEncoderMimeLineWidthZeroToString() {
+        this.toStringAndCheck(Base64.getMimeEncoder(0, new byte[]{'\r'}), "RFC4648 WITH PADDING");
     }
 
     @Test
@@ -645,6 +3034,16 @@ public final class Base64Test implements PublicStaticHelperTesting<Base64>, ToSt
         this.toStringAndCheck(Base64.getMimeDecoder(), "RFC2045");
     }
 
+    @Test
+    public void testDecoderStandardOrUrlToString() {
+        this.toStringAndCheck(Base64.getStandardOrUrlDecoder(), "RFC4648 or RFC4648 URLSAFE");
+    }
+
+    @Test
+    public void testDecoderStandardOrUrlWithoutMixingToString() {
+        this.toStringAndCheck(Base64.getStandardOrUrlDecoder().withoutMixing(), "RFC4648 or RFC4648 URLSAFE without mixing");
+    }
+
     // PublicStaticHelper...............................................................................................
 
     @Override
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package walkingkooka.j2cl.java.util;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.Cast;
+import walkingkooka.ToStringTesting;
+import walkingkooka.reflect.ClassTesting2;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public final class Base64ThreadLocalTest implements ClassTesting2<Base64ThreadLocal<?>>,
+    ToStringTesting<Base64ThreadLocal<?>> {
+
+    @Test
+    public void testGetSameValue() {
+        final Base64ThreadLocal<StringBuilder> threadLocal = Base64ThreadLocal.with(StringBuilder::new);
+
+        this.checkEquals(true, threadLocal.get() == threadLocal.get());
+    }
+
+    @Test
+    public void testGetOtherThread() throws Exception {
+        final Base64ThreadLocal<StringBuilder> threadLocal = Base64ThreadLocal.with(StringBuilder::new);
+        final StringBuilder value = threadLocal.get();
+
+        final AtomicReference<StringBuilder> other = new AtomicReference<>();
+        final Thread thread = new Thread(() -> other.set(threadLocal.get()));
+        thread.start();
+        thread.join();
+
+        this.checkEquals(false, value == other.get());
+    }
+
+    @Test
+    public void testToString() {
+        this.toStringAndCheck(Base64ThreadLocal.with(() -> "abc"), "abc");
+    }
+
+    @Override
+    public Class<Base64ThreadLocal<?>> type() {
+        return Cast.to(Base64ThreadLocal.class);
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}